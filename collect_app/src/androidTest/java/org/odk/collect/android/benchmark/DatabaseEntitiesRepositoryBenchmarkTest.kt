@@ -0,0 +1,185 @@
+package org.odk.collect.android.benchmark
+
+import android.app.Application
+import android.content.ContentValues
+import android.database.sqlite.SQLiteDatabase
+import androidx.test.core.app.ApplicationProvider
+import androidx.core.database.sqlite.transaction
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.lessThanOrEqualTo
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.odk.collect.android.benchmark.support.Benchmarker
+import org.odk.collect.android.database.entities.DatabaseEntitiesRepository
+import org.odk.collect.entities.storage.Entity
+import org.odk.collect.shared.Query
+import java.io.File
+import kotlin.concurrent.thread
+
+/**
+ * Benchmarks saving large numbers of entities with [DatabaseEntitiesRepository] (like we would
+ * when updating an entity list from the server). Both inserting new entities and updating
+ * existing ones are measured as they take different paths in the repository. Each save is
+ * compared against the same save done the way the repository used to (looking up each entity
+ * and then inserting or updating it with [ContentValues]). Querying while a large save is running
+ * in the background is also measured to check that reads (like a form's choice filter) aren't
+ * blocked by a long sync.
+ */
+
+@RunWith(AndroidJUnit4::class)
+class DatabaseEntitiesRepositoryBenchmarkTest {
+
+    @Test
+    fun run() {
+        val benchmarker = Benchmarker()
+
+        listOf(
+            Triple(10_000, 2L, 2L),
+            Triple(100_000, 15L, 20L),
+            Triple(500_000, 75L, 100L)
+        ).forEach { (count, insertTarget, updateTarget) ->
+            val repository = DatabaseEntitiesRepository(
+                ApplicationProvider.getApplicationContext(),
+                createDbDir(count).absolutePath
+            )
+
+            val entities = createEntities(count, 1)
+            benchmarker.benchmark("Saving $count new entities", insertTarget) {
+                repository.save("things", *entities)
+            }
+
+            val updatedEntities = createEntities(count, 2)
+            benchmarker.benchmark("Saving $count updated entities", updateTarget) {
+                repository.save("things", *updatedEntities)
+            }
+
+            // Create the table and columns for the baseline list without any entities
+            repository.save("baseline", entities.first())
+            repository.delete("baseline", entities.first().id)
+
+            openDatabase(count).use { database ->
+                benchmarker.benchmark("Saving $count new entities (baseline)", insertTarget * 10) {
+                    saveWithLookups(database, "baseline", entities)
+                }
+
+                benchmarker.benchmark("Saving $count updated entities (baseline)", updateTarget * 10) {
+                    saveWithLookups(database, "baseline", updatedEntities)
+                }
+            }
+        }
+
+        benchmarker.assertResults()
+
+        listOf(10_000, 100_000, 500_000).forEach { count ->
+            listOf("new", "updated").forEach { type ->
+                val time = benchmarker.getTime("Saving $count $type entities")
+                val baselineTime = benchmarker.getTime("Saving $count $type entities (baseline)")
+                assertThat(
+                    "Saving $count $type entities took ${time}s compared to ${baselineTime}s!",
+                    time,
+                    lessThanOrEqualTo(baselineTime)
+                )
+            }
+        }
+    }
+
+    @Test
+    fun runQueriesDuringSave() {
+        val benchmarker = Benchmarker()
+        val repository = DatabaseEntitiesRepository(
+            ApplicationProvider.getApplicationContext(),
+            createDbDir(0).absolutePath,
+            { it.run() }
+        )
+
+        repository.save("things", *createEntities(10_000, 1))
+        repository.query("things", Query.StringEq("prop2", "0")) // Create row numbers and the prop2 index
+
+        val entities = createEntities(500_000, 2)
+
+        val save = thread {
+            repository.save("things", *entities)
+        }
+
+        benchmarker.benchmark("Querying 1000 times during save", 2) {
+            repeat(1000) {
+                repository.query("things", Query.StringEq("prop2", (it % 1024).toString()))
+            }
+        }
+
+        save.join()
+        benchmarker.assertResults()
+    }
+}
+
+private fun createEntities(count: Int, version: Int): Array<Entity> {
+    return Array(count) {
+        Entity.New(
+            "id-$it",
+            "Thing $it",
+            version = version,
+            properties = listOf(
+                Pair("prop1", "value-$it-$version"),
+                Pair("prop2", (it % 1024).toString()),
+                Pair("prop3", "value-$version")
+            ),
+            state = Entity.State.ONLINE,
+            trunkVersion = version
+        )
+    }
+}
+
+private fun createDbDir(count: Int): File {
+    val application = ApplicationProvider.getApplicationContext<Application>()
+    return File(application.cacheDir, "entities-benchmark-$count").also {
+        it.deleteRecursively()
+        it.mkdir()
+    }
+}
+
+private fun openDatabase(count: Int): SQLiteDatabase {
+    val application = ApplicationProvider.getApplicationContext<Application>()
+    return SQLiteDatabase.openDatabase(
+        File(application.cacheDir, "entities-benchmark-$count/entities.db").absolutePath,
+        null,
+        SQLiteDatabase.OPEN_READWRITE
+    )
+}
+
+/**
+ * Saves entities the way [DatabaseEntitiesRepository] used to: looking up each entity to see if
+ * it exists and then inserting or updating it with [ContentValues].
+ */
+private fun saveWithLookups(database: SQLiteDatabase, list: String, entities: Array<Entity>) {
+    database.transaction {
+        entities.forEach { entity ->
+            val existing = rawQuery(
+                "SELECT label, state FROM \"$list\" WHERE id = ?",
+                arrayOf(entity.id)
+            ).use {
+                if (it.moveToFirst()) {
+                    Pair(it.getString(0), it.getInt(1))
+                } else {
+                    null
+                }
+            }
+
+            val contentValues = ContentValues().also {
+                it.put("id", entity.id)
+                it.put("label", entity.label ?: existing?.first)
+                it.put("version", entity.version)
+                it.put("trunk_version", entity.trunkVersion)
+                it.put("branch_id", entity.branchId)
+                it.put("state", if (existing?.second == 1 || entity.state == Entity.State.ONLINE) 1 else 0)
+                entity.properties.forEach { (name, value) -> it.put("\"p_$name\"", value) }
+            }
+
+            if (existing != null) {
+                update("\"$list\"", contentValues, "id = ?", arrayOf(entity.id))
+            } else {
+                insertOrThrow("\"$list\"", null, contentValues)
+            }
+        }
+    }
+}
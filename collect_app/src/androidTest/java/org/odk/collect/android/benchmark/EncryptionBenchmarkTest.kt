@@ -0,0 +1,153 @@
+package org.odk.collect.android.benchmark
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.containsString
+import org.hamcrest.Matchers.equalTo
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.odk.collect.android.benchmark.support.Benchmarker
+import org.odk.collect.android.javarosawrapper.InstanceMetadata
+import org.odk.collect.android.utilities.EncryptionUtils
+import org.odk.collect.android.utilities.EncryptionUtils.EncryptedFormInformation
+import org.odk.collect.shared.TempFiles
+import org.odk.collect.shared.strings.Md5.getMd5Hash
+import java.io.File
+import java.security.KeyPairGenerator
+import javax.crypto.Cipher
+import javax.crypto.spec.IvParameterSpec
+import kotlin.random.Random
+
+/**
+ * Benchmarks encrypting a large (200 MB) submission with [EncryptionUtils]. Also checks that
+ * encrypted files are exactly what encrypting the whole file in one go with the submission's
+ * key and IV would produce (which is what servers expect).
+ */
+
+@RunWith(AndroidJUnit4::class)
+class EncryptionBenchmarkTest {
+
+    private val rsaPublicKey = KeyPairGenerator.getInstance(EncryptionUtils.RSA_ALGORITHM)
+        .also { it.initialize(2048) }
+        .generateKeyPair()
+        .public
+
+    @Test
+    fun run() {
+        checkEncryptedFilesAreCorrect()
+
+        val benchmarker = Benchmarker()
+
+        val instanceDir = TempFiles.createTempDir()
+        val instanceFile = createFile(File(instanceDir, "instance.xml"), 1024)
+        val submissionFile = createFile(File(instanceDir, "submission.xml"), 1024)
+        (1..4).forEach {
+            createFile(File(instanceDir, "video-$it.mp4"), 50 * 1024 * 1024)
+        }
+
+        val formInfo = createFormInformation()
+        benchmarker.benchmark("Encrypting 200 MB submission", 15) {
+            EncryptionUtils.generateEncryptedSubmission(instanceFile, submissionFile, formInfo)
+        }
+
+        (1..4).forEach {
+            assertThat(File(instanceDir, "video-$it.mp4.enc").exists(), equalTo(true))
+        }
+
+        benchmarker.assertResults()
+    }
+
+    /**
+     * Encrypts a submission with several attachments and checks the output against the same
+     * data being encrypted in one go. Each file's IV depends on its position in the manifest.
+     */
+    private fun checkEncryptedFilesAreCorrect() {
+        val instanceDir = TempFiles.createTempDir()
+        val instanceFile = createFile(File(instanceDir, "instance.xml"), 1024)
+        val submissionFile = createFile(File(instanceDir, "submission.xml"), 1024)
+        val attachments = (1..3).map {
+            createFile(File(instanceDir, "photo-$it.jpg"), it * 1024 * 1024 + 7)
+        }
+
+        val submissionContents = submissionFile.readBytes()
+        val attachmentContents = attachments.associate { it.name to it.readBytes() }
+        val attachmentHashes = attachments.associate { it.name to it.getMd5Hash() }
+
+        val formInfo = createFormInformation()
+        val ivSeed = formInfo.ivSeedArray.clone()
+        EncryptionUtils.generateEncryptedSubmission(instanceFile, submissionFile, formInfo)
+
+        val manifestOrder = Regex("<file>(.+?)\\.enc</file>")
+            .findAll(submissionFile.readText())
+            .map { it.groupValues[1] }
+            .toList()
+        assertThat(manifestOrder.sorted(), equalTo(attachments.map { it.name }))
+
+        manifestOrder.forEachIndexed { index, name ->
+            assertThat(
+                File(instanceDir, "$name.enc").readBytes().contentEquals(
+                    encrypt(attachmentContents[name]!!, formInfo, getIv(ivSeed, index + 1))
+                ),
+                equalTo(true)
+            )
+        }
+
+        assertThat(
+            File(instanceDir, "submission.xml.enc").readBytes().contentEquals(
+                encrypt(submissionContents, formInfo, getIv(ivSeed, manifestOrder.size + 1))
+            ),
+            equalTo(true)
+        )
+
+        val signatureSource = formInfo.elementSignatureSource.toString()
+        assertThat(
+            signatureSource,
+            containsString(manifestOrder.joinToString("") { "$it::${attachmentHashes[it]}\n" })
+        )
+    }
+
+    private fun createFormInformation(): EncryptedFormInformation {
+        return EncryptedFormInformation(
+            "encrypted",
+            "1",
+            InstanceMetadata("uuid:${Random.nextLong()}", null, null),
+            rsaPublicKey
+        )
+    }
+
+    /**
+     * Returns the IV for the [fileNumber]th encrypted file in the same way as
+     * [EncryptedFormInformation.getCipher]
+     */
+    private fun getIv(ivSeed: ByteArray, fileNumber: Int): ByteArray {
+        val iv = ivSeed.clone()
+        for (i in 0 until fileNumber) {
+            iv[i % iv.size]++
+        }
+
+        return iv
+    }
+
+    private fun encrypt(contents: ByteArray, formInfo: EncryptedFormInformation, iv: ByteArray): ByteArray {
+        val cipher = Cipher.getInstance(EncryptionUtils.SYMMETRIC_ALGORITHM, "BC")
+        cipher.init(Cipher.ENCRYPT_MODE, formInfo.symmetricKey, IvParameterSpec(iv))
+        return cipher.doFinal(contents)
+    }
+
+    private fun createFile(file: File, size: Int): File {
+        val random = Random(size)
+        val buffer = ByteArray(64 * 1024)
+
+        file.outputStream().buffered().use {
+            var remaining = size
+            while (remaining > 0) {
+                val length = minOf(buffer.size, remaining)
+                random.nextBytes(buffer, 0, length)
+                it.write(buffer, 0, length)
+                remaining -= length
+            }
+        }
+
+        return file
+    }
+}
@@ -0,0 +1,108 @@
+package org.odk.collect.android.benchmark
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
+import org.hamcrest.Matchers.greaterThan
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.odk.collect.android.benchmark.support.Benchmarker
+import org.odk.collect.android.formmanagement.metadata.FormMetadataParser
+import org.odk.collect.shared.TempFiles
+import java.io.File
+import java.util.zip.ZipFile
+
+/**
+ * Benchmarks [FormMetadataParser] against every form in the `test-forms` corpus and against a
+ * form with a large (~10 MB) inline secondary instance.
+ */
+
+@RunWith(AndroidJUnit4::class)
+class FormMetadataParserBenchmarkTest {
+
+    @Test
+    fun run() {
+        val benchmarker = Benchmarker()
+
+        val forms = copyTestForms()
+        assertThat(forms.size, greaterThan(0))
+
+        benchmarker.benchmark("Reading metadata for test-forms corpus 20 times", 5) {
+            repeat(20) {
+                forms.forEach { FormMetadataParser.readMetadata(it) }
+            }
+        }
+
+        val largeForm = createFormWithLargeSecondaryInstance(100_000)
+        val metadata = benchmarker.benchmark("Reading metadata for form with large secondary instance 10 times", 2) {
+            (1..10).map { FormMetadataParser.readMetadata(largeForm) }.last()
+        }
+
+        assertThat(metadata.id, equalTo("large-secondary-instance"))
+        benchmarker.assertResults()
+    }
+
+    /**
+     * Copies the forms from `test-forms` (packaged as Java resources in the test APK) to disk so
+     * that parsing isn't affected by reading from the APK.
+     */
+    private fun copyTestForms(): List<File> {
+        val formsDir = TempFiles.createTempDir()
+        val apkPath = InstrumentationRegistry.getInstrumentation().context.packageCodePath
+
+        return ZipFile(apkPath).use { apk ->
+            apk.entries().toList()
+                .filter { it.name.startsWith("forms/") && it.name.endsWith(".xml") }
+                .map { entry ->
+                    File(formsDir, entry.name.removePrefix("forms/").replace("/", "_")).also { file ->
+                        apk.getInputStream(entry).use { input ->
+                            file.outputStream().use { input.copyTo(it) }
+                        }
+                    }
+                }
+        }
+    }
+
+    private fun createFormWithLargeSecondaryInstance(itemCount: Int): File {
+        val file = TempFiles.createTempFile("large-secondary-instance", ".xml")
+        file.bufferedWriter().use { writer ->
+            writer.write(
+                """
+                    <?xml version="1.0"?>
+                    <h:html xmlns:h="http://www.w3.org/1999/xhtml" xmlns="http://www.w3.org/2002/xforms">
+                        <h:head>
+                            <h:title>Large secondary instance</h:title>
+                            <model>
+                                <instance>
+                                    <data id="large-secondary-instance">
+                                        <item />
+                                    </data>
+                                </instance>
+                                <instance id="items">
+                                    <root>
+                """.trimIndent()
+            )
+
+            repeat(itemCount) {
+                writer.write("<item><name>item-$it</name><label>Item number $it</label></item>\n")
+            }
+
+            writer.write(
+                """
+                                    </root>
+                                </instance>
+                                <bind nodeset="/data/item" type="string" />
+                            </model>
+                        </h:head>
+                        <h:body>
+                            <input ref="/data/item" />
+                        </h:body>
+                    </h:html>
+                """.trimIndent()
+            )
+        }
+
+        return file
+    }
+}
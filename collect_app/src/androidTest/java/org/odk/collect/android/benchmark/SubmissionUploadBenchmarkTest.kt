@@ -0,0 +1,162 @@
+package org.odk.collect.android.benchmark
+
+import android.webkit.MimeTypeMap
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
+import org.junit.After
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.odk.collect.android.benchmark.support.Benchmarker
+import org.odk.collect.openrosa.http.CollectThenSystemContentTypeMapper
+import org.odk.collect.openrosa.http.okhttp.OkHttpConnection
+import org.odk.collect.shared.TempFiles
+import java.io.BufferedInputStream
+import java.io.File
+import java.io.InputStream
+import java.io.RandomAccessFile
+import java.net.ServerSocket
+import java.net.Socket
+import java.net.URI
+import kotlin.concurrent.thread
+
+/**
+ * Benchmarks uploading a large (200 MB) submission with [OkHttpConnection] to a local stub
+ * server that just reads and discards request bodies, so that the time measured is (almost)
+ * entirely the time taken to stream the submission from disk to the network.
+ */
+
+@RunWith(AndroidJUnit4::class)
+class SubmissionUploadBenchmarkTest {
+
+    private val server = DiscardingServer()
+
+    @After
+    fun teardown() {
+        server.close()
+    }
+
+    @Test
+    fun run() {
+        val benchmarker = Benchmarker()
+
+        val instanceDir = TempFiles.createTempDir()
+        val submissionFile = File(instanceDir, "submission.xml").also {
+            it.writeText("<data id=\"upload\"><photo>photo-1.jpg</photo></data>")
+        }
+
+        val attachments = (1..4).map {
+            createFile(File(instanceDir, "photo-$it.jpg"), 50L * 1024 * 1024)
+        }
+
+        val connection = OkHttpConnection(
+            null,
+            CollectThenSystemContentTypeMapper(MimeTypeMap.getSingleton()),
+            "Benchmark"
+        )
+
+        var lastProgress = 0L
+        var total = 0L
+        val result = benchmarker.benchmark("Uploading 200 MB submission", 20) {
+            connection.uploadSubmissionAndFiles(
+                submissionFile,
+                attachments,
+                URI("http://localhost:${server.port}/submission"),
+                null,
+                10_000_000L
+            ) { bytesSent, totalBytes ->
+                lastProgress = bytesSent
+                total = totalBytes
+            }
+        }
+
+        assertThat(result.responseCode, equalTo(201))
+        assertThat(lastProgress, equalTo(total))
+        benchmarker.assertResults()
+    }
+
+    private fun createFile(file: File, size: Long): File {
+        RandomAccessFile(file, "rw").use { it.setLength(size) }
+        return file
+    }
+
+    /**
+     * Minimal HTTP/1.1 server that reads each request (using its `Content-Length`) and responds
+     * with `201 Created`
+     */
+    private class DiscardingServer {
+
+        private val serverSocket = ServerSocket(0)
+        val port = serverSocket.localPort
+
+        init {
+            thread {
+                while (!serverSocket.isClosed) {
+                    val socket = try {
+                        serverSocket.accept()
+                    } catch (e: Exception) {
+                        break
+                    }
+
+                    thread { handle(socket) }
+                }
+            }
+        }
+
+        fun close() {
+            serverSocket.close()
+        }
+
+        private fun handle(socket: Socket) {
+            socket.use {
+                val input = BufferedInputStream(it.getInputStream())
+                val output = it.getOutputStream()
+
+                while (true) {
+                    val headers = readHeaders(input) ?: break
+                    val contentLength = headers
+                        .firstOrNull { header -> header.startsWith("content-length:", ignoreCase = true) }
+                        ?.substringAfter(":")?.trim()?.toLong() ?: 0L
+
+                    var remaining = contentLength
+                    val buffer = ByteArray(64 * 1024)
+                    while (remaining > 0) {
+                        val read = input.read(buffer, 0, minOf(buffer.size.toLong(), remaining).toInt())
+                        if (read == -1) {
+                            return
+                        }
+
+                        remaining -= read
+                    }
+
+                    output.write("HTTP/1.1 201 Created\r\nContent-Length: 0\r\n\r\n".toByteArray())
+                    output.flush()
+                }
+            }
+        }
+
+        private fun readHeaders(input: InputStream): List<String>? {
+            val lines = mutableListOf<String>()
+            val line = StringBuilder()
+
+            while (true) {
+                val byte = input.read()
+                if (byte == -1) {
+                    return null
+                }
+
+                if (byte == '\n'.code) {
+                    val header = line.toString().trimEnd('\r')
+                    if (header.isEmpty()) {
+                        return lines
+                    }
+
+                    lines.add(header)
+                    line.clear()
+                } else {
+                    line.append(byte.toChar())
+                }
+            }
+        }
+    }
+}
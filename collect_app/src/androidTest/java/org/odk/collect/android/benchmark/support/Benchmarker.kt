@@ -16,6 +16,10 @@ class Benchmarker {
         }
     }
 
+    fun getTime(name: String): Long {
+        return stopwatch.getTime(name)
+    }
+
     fun assertResults() {
         printResults()
 
@@ -1742,6 +1742,11 @@ public class FormFillingActivity extends LocalizedActivity implements AnimationL
     protected void onPause() {
         backgroundLocationViewModel.activityHidden();
 
+        FormController formController = getFormController();
+        if (formController != null) {
+            formController.getAuditEventLogger().flushWriter(false);
+        }
+
         super.onPause();
     }
 
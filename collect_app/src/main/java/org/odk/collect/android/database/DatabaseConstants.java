@@ -4,8 +4,9 @@ public final class DatabaseConstants {
 
     public static final String FORMS_DATABASE_NAME = "forms.db";
     public static final String FORMS_TABLE_NAME = "forms";
+    public static final String MEDIA_FILE_HASHES_TABLE_NAME = "media_file_hashes";
     // Please always test upgrades manually when you change this value
-    public static final int FORMS_DATABASE_VERSION = 14;
+    public static final int FORMS_DATABASE_VERSION = 15;
 
     public static final String INSTANCES_DATABASE_NAME = "instances.db";
     public static final String INSTANCES_TABLE_NAME = "instances";
@@ -5,15 +5,17 @@ import android.content.Context
 import android.database.Cursor
 import android.database.sqlite.SQLiteDatabase
 import android.database.sqlite.SQLiteException
+import android.database.sqlite.SQLiteStatement
 import android.provider.BaseColumns._ID
+import androidx.core.database.getIntOrNull
+import androidx.core.database.getStringOrNull
 import org.odk.collect.db.sqlite.CursorExt.first
 import org.odk.collect.db.sqlite.CursorExt.foldAndClose
 import org.odk.collect.db.sqlite.CursorExt.getBoolean
-import org.odk.collect.db.sqlite.CursorExt.getInt
 import org.odk.collect.db.sqlite.CursorExt.getString
 import org.odk.collect.db.sqlite.CursorExt.getStringOrNull
-import org.odk.collect.db.sqlite.CursorExt.rowToMap
 import org.odk.collect.db.sqlite.MigrationListDatabaseMigrator
+import org.odk.collect.db.sqlite.RowNumbers.appendRowNumbers
 import org.odk.collect.db.sqlite.RowNumbers.invalidateRowNumbers
 import org.odk.collect.db.sqlite.RowNumbers.rawQueryWithRowNumber
 import org.odk.collect.db.sqlite.SQLiteColumns.ROW_NUMBER
@@ -27,9 +29,16 @@ import org.odk.collect.entities.storage.EntitiesRepository
 import org.odk.collect.entities.storage.Entity
 import org.odk.collect.entities.storage.EntityList
 import org.odk.collect.entities.storage.QueryException
-import org.odk.collect.entities.storage.getListNames
 import org.odk.collect.shared.Query
 import org.odk.collect.shared.mapColumns
+import timber.log.Timber
+import java.io.Closeable
+import java.io.File
+import java.util.concurrent.Executor
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
 
 private object ListsTable {
     const val TABLE_NAME = "lists"
@@ -47,93 +56,78 @@ private object EntitiesTable {
     const val COLUMN_STATE = "state"
     const val COLUMN_PROPERTY_PREFIX = "p_"
 
+    val ENTITY_COLUMNS = listOf(
+        COLUMN_ID,
+        COLUMN_LABEL,
+        COLUMN_VERSION,
+        COLUMN_TRUNK_VERSION,
+        COLUMN_BRANCH_ID,
+        COLUMN_STATE
+    )
+
     fun getPropertyColumn(property: String) = "$COLUMN_PROPERTY_PREFIX$property"
 }
 
-class DatabaseEntitiesRepository(context: Context, dbPath: String) : EntitiesRepository {
+class DatabaseEntitiesRepository(
+    context: Context,
+    dbPath: String,
+    private val indexExecutor: Executor = INDEX_EXECUTOR
+) : EntitiesRepository {
 
     private val databaseConnection = SynchronizedDatabaseConnection(
         context,
         dbPath,
         "entities.db",
         EntitiesDatabaseMigrator(DATABASE_VERSION),
-        DATABASE_VERSION
+        DATABASE_VERSION,
+        concurrentReads = true
     )
 
+    private val writeVersion = getWriteVersionCounter(dbPath + File.separator + "entities.db")
+
+    private val requestedIndexes = mutableSetOf<String>()
+
+    /**
+     * Indexes on expressions are only supported from SQLite 3.9.0 (Android 7.0).
+     */
+    private val supportsExpressionIndexes by lazy {
+        val version = databaseConnection.withReadConnection {
+            readableDatabase.rawQuery("SELECT sqlite_version()", null).first { it.getString(0) }!!
+        }
+
+        val (major, minor) = version.split(".").map { it.toInt() }
+        major > 3 || (major == 3 && minor >= 9)
+    }
+
     override fun save(list: String, vararg entities: Entity) {
         if (entities.isEmpty()) {
             return
         }
 
-        val listExists = listExists(list)
-        if (!listExists) {
-            createList(list)
-        }
+        val propertyColumns = entities
+            .flatMap { entity -> entity.properties.map { EntitiesTable.getPropertyColumn(it.first) } }
+            .distinctBy { it.lowercase() }
 
-        updatePropertyColumns(list, entities.first())
+        if (!listExists(list)) {
+            createList(list, propertyColumns)
+        } else {
+            updatePropertyColumns(list, propertyColumns)
+        }
 
         databaseConnection.transaction {
-            entities.forEach { entity ->
-                val existing = if (listExists) {
-                    query(
-                        quote(list),
-                        "${EntitiesTable.COLUMN_ID} = ?",
-                        arrayOf(entity.id)
-                    ).first { mapCursorRowToEntity(it, 0) }
-                } else {
-                    null
-                }
-
-                if (existing != null) {
-                    val state = if (existing.state == Entity.State.OFFLINE) {
-                        entity.state
-                    } else {
-                        Entity.State.ONLINE
-                    }
-
-                    val contentValues = ContentValues().also {
-                        it.put(EntitiesTable.COLUMN_ID, entity.id)
-                        it.put(EntitiesTable.COLUMN_LABEL, entity.label ?: existing.label)
-                        it.put(EntitiesTable.COLUMN_VERSION, entity.version)
-                        it.put(EntitiesTable.COLUMN_TRUNK_VERSION, entity.trunkVersion)
-                        it.put(EntitiesTable.COLUMN_BRANCH_ID, entity.branchId)
-                        it.put(EntitiesTable.COLUMN_STATE, convertStateToInt(state))
-
-                        addPropertiesToContentValues(it, entity)
-                    }
-
-                    update(
-                        quote(list),
-                        contentValues,
-                        "${EntitiesTable.COLUMN_ID} = ?",
-                        arrayOf(entity.id)
-                    )
-                } else {
-                    val contentValues = ContentValues().also {
-                        it.put(EntitiesTable.COLUMN_ID, entity.id)
-                        it.put(EntitiesTable.COLUMN_LABEL, entity.label)
-                        it.put(EntitiesTable.COLUMN_VERSION, entity.version)
-                        it.put(EntitiesTable.COLUMN_TRUNK_VERSION, entity.trunkVersion)
-                        it.put(EntitiesTable.COLUMN_BRANCH_ID, entity.branchId)
-                        it.put(EntitiesTable.COLUMN_STATE, convertStateToInt(entity.state))
-
-                        addPropertiesToContentValues(it, entity)
-                    }
-
-                    insertOrThrow(
-                        quote(list),
-                        null,
-                        contentValues
-                    )
+            UpsertStatements(this, list).use { statements ->
+                entities.forEach { entity ->
+                    statements.upsert(entity)
                 }
             }
         }
 
-        invalidateRowNumbers()
+        databaseConnection.appendRowNumbers(list)
+        writeVersion.incrementAndGet()
     }
 
     override fun getLists(): List<EntityList> {
-        return databaseConnection.withConnection {
+        return databaseConnection.withReadConnection {
             readableDatabase
                 .query(ListsTable.TABLE_NAME)
                 .foldAndClose(emptyList()) { list, cursor ->
@@ -156,10 +150,12 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String) : EntitiesRep
                 arrayOf(list)
             )
         }
+
+        writeVersion.incrementAndGet()
     }
 
     override fun getList(list: String): EntityList? {
-        return databaseConnection.withConnection {
+        return databaseConnection.withReadConnection {
             readableDatabase
                 .query(ListsTable.TABLE_NAME, "${ListsTable.COLUMN_NAME} = ?", arrayOf(list))
                 .first { mapCursorRowToEntityList(it) }
@@ -171,7 +167,7 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String) : EntitiesRep
             return 0
         }
 
-        return databaseConnection.withConnection {
+        return databaseConnection.withReadConnection {
             readableDatabase.rawQuery(
                 """
                 SELECT COUNT(*)
@@ -187,7 +183,7 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String) : EntitiesRep
     override fun addList(list: String) {
         if (!listExists(list)) {
             createList(list)
-            invalidateRowNumbers()
+            writeVersion.incrementAndGet()
         }
     }
 
@@ -196,22 +192,40 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String) : EntitiesRep
             writableDatabase.delete(quote(list), "${EntitiesTable.COLUMN_ID} = ?", arrayOf(id))
         }
 
-        invalidateRowNumbers()
+        databaseConnection.invalidateRowNumbers(list)
+        writeVersion.incrementAndGet()
     }
 
-    override fun query(list: String, query: Query?): List<Entity.Saved> {
+    override fun query(list: String, query: Query?, projection: Set<String>?): List<Entity.Saved> {
         if (!listExists(list)) {
             return emptyList()
         }
 
-        return queryWithAttachedRowNumber(list, query?.mapColumns { columnName ->
+        val mappedQuery = query?.mapColumns { columnName ->
             when (columnName) {
                 EntitySchema.ID -> EntitiesTable.COLUMN_ID
                 EntitySchema.LABEL -> EntitiesTable.COLUMN_LABEL
                 EntitySchema.VERSION -> EntitiesTable.COLUMN_VERSION
                 else -> EntitiesTable.getPropertyColumn(columnName)
             }
-        })
+        }
+
+        if (mappedQuery != null) {
+            requestIndexes(list, mappedQuery)
+        }
+
+        val columns = if (projection != null) {
+            val propertyColumns = projection.map { EntitiesTable.getPropertyColumn(it) }
+            val existingPropertyColumns = databaseConnection.withReadConnection {
+                readableDatabase.getColumnNames(quote(list))
+            }.filter { column -> propertyColumns.any { it.equals(column, ignoreCase = true) } }
+
+            EntitiesTable.ENTITY_COLUMNS + existingPropertyColumns
+        } else {
+            null
+        }
+
+        return queryWithAttachedRowNumber(list, mappedQuery, columns)
     }
 
     override fun getByIndex(list: String, index: Int): Entity.Saved? {
@@ -223,33 +237,44 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String) : EntitiesRep
         return queryWithAttachedRowNumber(list, query).firstOrNull()
     }
 
-    private fun queryWithAttachedRowNumber(list: String, query: Query?): List<Entity.Saved> {
+    override fun getByIndexRange(list: String, startIndex: Int, count: Int): List<Entity.Saved> {
+        if (!listExists(list)) {
+            return emptyList()
+        }
+
+        return databaseConnection.rawQueryWithRowNumber(
+            list,
+            "$ROW_NUMBER > ? AND $ROW_NUMBER <= ?",
+            arrayOf(startIndex.toString(), (startIndex + count).toString())
+        ) { it.mapToEntitiesAndClose() }
+    }
+
+    private fun queryWithAttachedRowNumber(
+        list: String,
+        query: Query?,
+        columns: List<String>? = null
+    ): List<Entity.Saved> {
         try {
             return if (query == null) {
-                databaseConnection.rawQueryWithRowNumber(list)
+                databaseConnection.rawQueryWithRowNumber(list, columns = columns) {
+                    it.mapToEntitiesAndClose()
+                }
             } else {
                 val sqlQuery = query.toSql()
                 databaseConnection.rawQueryWithRowNumber(
                     list,
                     sqlQuery.selection,
-                    sqlQuery.selectionArgs
-                )
-            }.foldAndClose {
-                mapCursorRowToEntity(it, it.getInt(ROW_NUMBER))
+                    sqlQuery.selectionArgs,
+                    columns
+                ) { it.mapToEntitiesAndClose() }
             }
         } catch (e: SQLiteException) {
             throw QueryException(e.message)
         }
     }
 
-    private fun invalidateRowNumbers() {
-        getListNames().forEach {
-            databaseConnection.invalidateRowNumbers(it)
-        }
-    }
-
     private fun listExists(list: String): Boolean {
-        return databaseConnection.withConnection {
+        return databaseConnection.withReadConnection {
             readableDatabase
                 .query(
                     ListsTable.TABLE_NAME,
@@ -259,8 +284,17 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String) : EntitiesRep
         }
     }
 
-    private fun createList(list: String) {
-        databaseConnection.resetTransaction {
+    /**
+     * Creates the table for [list] including any [propertyColumns] we already know about. As
+     * the table is new, there can't be any cached statements that refer to it, so we don't need
+     * to reset the connection.
+     */
+    private fun createList(list: String, propertyColumns: List<String> = emptyList()) {
+        val propertyColumnDefinitions = propertyColumns.joinToString("") {
+            ", \"$it\" text NOT NULL DEFAULT \"\""
+        }
+
+        databaseConnection.transaction {
             val contentValues = ContentValues()
             contentValues.put(ListsTable.COLUMN_NAME, list)
             insertOrThrow(
@@ -278,7 +312,7 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String) : EntitiesRep
                     ${EntitiesTable.COLUMN_VERSION} integer,
                     ${EntitiesTable.COLUMN_TRUNK_VERSION} integer,
                     ${EntitiesTable.COLUMN_BRANCH_ID} text,
-                    ${EntitiesTable.COLUMN_STATE} integer NOT NULL
+                    ${EntitiesTable.COLUMN_STATE} integer NOT NULL$propertyColumnDefinitions
                 );
                 """.trimIndent()
             )
@@ -291,22 +325,24 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String) : EntitiesRep
         }
     }
 
-    private fun updatePropertyColumns(list: String, entity: Entity) {
-        val columnNames = databaseConnection.withConnection {
+    /**
+     * Adds any of [propertyColumns] that don't exist yet to [list]'s table. All columns are added
+     * in the same transaction so the connection (which needs to be reset so cached `SELECT *`
+     * statements pick up the new columns) is only reset once.
+     */
+    private fun updatePropertyColumns(list: String, propertyColumns: List<String>) {
+        val columnNames = databaseConnection.withReadConnection {
             readableDatabase.getColumnNames(quote(list))
         }
 
-        val missingColumns = entity.properties
-            .map { EntitiesTable.getPropertyColumn(it.first) }
-            .distinctBy { it.lowercase() }
-            .filterNot { columnName ->
-                columnNames.any {
-                    it.equals(
-                        columnName,
-                        ignoreCase = true
-                    )
-                }
+        val missingColumns = propertyColumns.filterNot { columnName ->
+            columnNames.any {
+                it.equals(
+                    columnName,
+                    ignoreCase = true
+                )
             }
+        }
 
         if (missingColumns.isNotEmpty()) {
             databaseConnection.resetTransaction {
@@ -321,9 +357,103 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String) : EntitiesRep
         }
     }
 
-    private fun addPropertiesToContentValues(contentValues: ContentValues, entity: Entity) {
-        entity.properties.forEach { (name, value) ->
-            contentValues.put(quote(EntitiesTable.getPropertyColumn(name)), value)
+    /**
+     * Schedules creating indexes for the properties used by equality, range and prefix checks in
+     * [query] so that filtering lists on the same properties again (like a form's choice filter
+     * will do each time it's evaluated) doesn't need a full table scan. Only properties that are
+     * actually filtered on are indexed (rather than every column) so that saves don't have to
+     * maintain indexes that are never used. Indexes are built on [indexExecutor] so that neither
+     * the query that needs them nor any save has to wait for them. Numeric checks compare
+     * `CAST(column AS REAL)` so they are indexed with an expression index instead (as long as the
+     * SQLite version supports them).
+     */
+    private fun requestIndexes(list: String, query: Query) {
+        val indexes = getIndexedColumns(query)
+            .filter { (column, numeric) -> column != EntitiesTable.COLUMN_ID && (!numeric || supportsExpressionIndexes) }
+            .map { (column, numeric) -> Triple(getIndexName(list, column, numeric), column, numeric) }
+            .filter { (indexName, _, _) -> synchronized(requestedIndexes) { requestedIndexes.add(indexName.lowercase()) } }
+
+        if (indexes.isNotEmpty()) {
+            indexExecutor.execute {
+                try {
+                    createIndexes(list, indexes)
+                } catch (e: SQLiteException) {
+                    Timber.w(e)
+                    forgetRequestedIndexes(indexes)
+                }
+            }
+        }
+    }
+
+    private fun createIndexes(list: String, indexes: List<Triple<String, String, Boolean>>) {
+        val (columnNames, indexNames) = databaseConnection.withReadConnection {
+            Pair(
+                readableDatabase.getColumnNames(quote(list)),
+                readableDatabase.rawQuery(
+                    "SELECT name FROM sqlite_master WHERE type = 'index' AND tbl_name = ?",
+                    arrayOf(list)
+                ).foldAndClose { it.getString(0) }
+            )
+        }
+
+        val (missingIndexes, missingColumnIndexes) = indexes
+            .filterNot { (indexName, _, _) -> indexNames.any { it.equals(indexName, ignoreCase = true) } }
+            .partition { (_, column, _) -> columnNames.any { it.equals(column, ignoreCase = true) } }
+
+        // Properties that don't have a column yet can be indexed once they do
+        forgetRequestedIndexes(missingColumnIndexes)
+
+        if (missingIndexes.isNotEmpty()) {
+            databaseConnection.transaction {
+                missingIndexes.forEach { (indexName, column, numeric) ->
+                    val indexedExpression = if (numeric) {
+                        "CAST(\"$column\" AS REAL)"
+                    } else {
+                        "\"$column\""
+                    }
+
+                    execSQL(
+                        """
+                        CREATE INDEX IF NOT EXISTS "$indexName" ON "$list" ($indexedExpression);
+                        """.trimIndent()
+                    )
+                }
+            }
+        }
+    }
+
+    private fun forgetRequestedIndexes(indexes: List<Triple<String, String, Boolean>>) {
+        synchronized(requestedIndexes) {
+            indexes.forEach { (indexName, _, _) -> requestedIndexes.remove(indexName.lowercase()) }
+        }
+    }
+
+    private fun getIndexedColumns(query: Query): List<Pair<String, Boolean>> {
+        return when (query) {
+            is Query.StringEq -> listOf(Pair(query.column, false))
+            is Query.StringIn -> listOf(Pair(query.column, false))
+            is Query.StringStartsWith -> listOf(Pair(query.column, false))
+            is Query.NumericEq -> listOf(Pair(query.column, true))
+            is Query.NumericLt -> listOf(Pair(query.column, true))
+            is Query.NumericLte -> listOf(Pair(query.column, true))
+            is Query.NumericGt -> listOf(Pair(query.column, true))
+            is Query.NumericGte -> listOf(Pair(query.column, true))
+            is Query.StringNotEq -> emptyList()
+            is Query.StringContains -> emptyList()
+            is Query.StringContainsToken -> emptyList()
+            is Query.StringIsTokenIn -> emptyList()
+            is Query.NumericNotEq -> emptyList()
+            is Query.Not -> emptyList()
+            is Query.And -> getIndexedColumns(query.queryA) + getIndexedColumns(query.queryB)
+            is Query.Or -> getIndexedColumns(query.queryA) + getIndexedColumns(query.queryB)
+        }
+    }
+
+    private fun getIndexName(list: String, column: String, numeric: Boolean): String {
+        return if (numeric) {
+            "${list}_${column}_numeric_index"
+        } else {
+            "${list}_${column}_index"
         }
     }
 
@@ -335,57 +465,214 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String) : EntitiesRep
         )
     }
 
-    private fun mapCursorRowToEntity(
-        cursor: Cursor,
-        rowId: Int
-    ): Entity.Saved {
-        val map = cursor.rowToMap()
+    private fun Cursor.mapToEntitiesAndClose(): List<Entity.Saved> {
+        val mapper = EntityCursorMapper(this)
+        return this.foldAndClose { mapper.map(it) }
+    }
 
-        val propertyColumns = map.keys.filter {
-            it.startsWith(EntitiesTable.COLUMN_PROPERTY_PREFIX)
-        }
+    private fun quote(text: String) = "\"$text\""
 
-        val properties =
-            propertyColumns.fold(emptyList<Pair<String, String>>()) { accum, property ->
-                accum + Pair(
-                    property.removePrefix(EntitiesTable.COLUMN_PROPERTY_PREFIX),
-                    map[property] ?: ""
-                )
+    override fun getWriteVersion(): Long {
+        return writeVersion.get()
+    }
+
+    companion object {
+        const val DATABASE_VERSION = 3
+
+        /**
+         * Indexes are built one at a time in the background as they each need the writer lock
+         * anyway.
+         */
+        private val INDEX_EXECUTOR = ThreadPoolExecutor(
+            1,
+            1,
+            30,
+            TimeUnit.SECONDS,
+            LinkedBlockingQueue()
+        ).also { it.allowCoreThreadTimeOut(true) }
+
+        /**
+         * Write versions are shared between every repository for the same database file (there
+         * can be several for a project) so that writes made through one are seen by the others.
+         */
+        private val writeVersions = mutableMapOf<String, AtomicLong>()
+
+        private fun getWriteVersionCounter(databasePath: String): AtomicLong {
+            return synchronized(writeVersions) {
+                writeVersions.getOrPut(databasePath) { AtomicLong() }
             }
+        }
+    }
+}
 
-        val state = if (map[EntitiesTable.COLUMN_STATE]!!.toInt() == 0) {
+/**
+ * Maps rows from a cursor (with an attached [ROW_NUMBER]) to [Entity.Saved]. Column indexes are
+ * looked up once per cursor rather than for every row. They're found using
+ * [Cursor.getColumnNames] to avoid [Cursor.getColumnIndex]'s problems with column names that
+ * include a "." (see `CursorExt.rowToMap`).
+ */
+private class EntityCursorMapper(cursor: Cursor) {
+
+    private val columnNames = cursor.columnNames.toList()
+
+    private val idIndex = columnNames.indexOf(EntitiesTable.COLUMN_ID)
+    private val labelIndex = columnNames.indexOf(EntitiesTable.COLUMN_LABEL)
+    private val versionIndex = columnNames.indexOf(EntitiesTable.COLUMN_VERSION)
+    private val trunkVersionIndex = columnNames.indexOf(EntitiesTable.COLUMN_TRUNK_VERSION)
+    private val branchIdIndex = columnNames.indexOf(EntitiesTable.COLUMN_BRANCH_ID)
+    private val stateIndex = columnNames.indexOf(EntitiesTable.COLUMN_STATE)
+    private val rowNumberIndex = columnNames.indexOf(ROW_NUMBER)
+
+    private val propertyColumns = columnNames.mapIndexedNotNull { index, column ->
+        if (column.startsWith(EntitiesTable.COLUMN_PROPERTY_PREFIX)) {
+            Pair(column.removePrefix(EntitiesTable.COLUMN_PROPERTY_PREFIX), index)
+        } else {
+            null
+        }
+    }
+
+    fun map(cursor: Cursor): Entity.Saved {
+        val properties = ArrayList<Pair<String, String>>(propertyColumns.size)
+        propertyColumns.forEach { (property, index) ->
+            properties.add(Pair(property, cursor.getString(index) ?: ""))
+        }
+
+        val state = if (cursor.getInt(stateIndex) == 0) {
             Entity.State.OFFLINE
         } else {
             Entity.State.ONLINE
         }
 
         return Entity.Saved(
-            map[EntitiesTable.COLUMN_ID]!!,
-            map[EntitiesTable.COLUMN_LABEL],
-            map[EntitiesTable.COLUMN_VERSION]!!.toInt(),
+            cursor.getString(idIndex),
+            cursor.getStringOrNull(labelIndex),
+            cursor.getInt(versionIndex),
             properties,
             state,
-            rowId - 1,
-            map[EntitiesTable.COLUMN_TRUNK_VERSION]?.toInt(),
-            map[EntitiesTable.COLUMN_BRANCH_ID]!!
+            cursor.getInt(rowNumberIndex) - 1,
+            cursor.getIntOrNull(trunkVersionIndex),
+            cursor.getString(branchIdIndex)
         )
     }
+}
+
+/**
+ * Compiled statements used to save entities to a list. These are reused for every entity with
+ * the same set of properties so that saving a large number of entities doesn't need to compile
+ * SQL or look up the existing row for each one.
+ *
+ * Entities are saved by trying an `UPDATE` first and falling back to an `INSERT` if no row was
+ * changed. `INSERT ... ON CONFLICT DO UPDATE` would be neater, but it requires SQLite 3.24
+ * which is only available from Android 11.
+ */
+private class UpsertStatements(
+    private val database: SQLiteDatabase,
+    private val list: String
+) : Closeable {
+
+    private val updates = mutableMapOf<List<String>, SQLiteStatement>()
+    private val inserts = mutableMapOf<List<String>, SQLiteStatement>()
+
+    fun upsert(entity: Entity) {
+        val propertyColumns = entity.properties.map { EntitiesTable.getPropertyColumn(it.first) }
+
+        val update = updates.getOrPut(propertyColumns) { compileUpdate(propertyColumns) }
+        update.clearBindings()
+        update.bindStringOrNull(1, entity.label)
+        update.bindLong(2, entity.version.toLong())
+        update.bindLongOrNull(3, entity.trunkVersion?.toLong())
+        update.bindString(4, entity.branchId)
+        update.bindLong(5, convertStateToInt(entity.state).toLong())
+        entity.properties.forEachIndexed { index, (_, value) ->
+            update.bindString(6 + index, value)
+        }
+        update.bindString(6 + propertyColumns.size, entity.id)
+
+        if (update.executeUpdateDelete() == 0) {
+            val insert = inserts.getOrPut(propertyColumns) { compileInsert(propertyColumns) }
+            insert.clearBindings()
+            insert.bindString(1, entity.id)
+            insert.bindStringOrNull(2, entity.label)
+            insert.bindLong(3, entity.version.toLong())
+            insert.bindLongOrNull(4, entity.trunkVersion?.toLong())
+            insert.bindString(5, entity.branchId)
+            insert.bindLong(6, convertStateToInt(entity.state).toLong())
+            entity.properties.forEachIndexed { index, (_, value) ->
+                insert.bindString(7 + index, value)
+            }
+
+            insert.executeInsert()
+        }
+    }
+
+    override fun close() {
+        updates.values.forEach { it.close() }
+        inserts.values.forEach { it.close() }
+    }
 
     /**
-     * Store state as an Int rather than a string to avoid increasing the storage needed for
-     * entities.
+     * Entities that are already online stay online and a missing label doesn't overwrite the
+     * existing one.
      */
-    private fun convertStateToInt(state: Entity.State): Int {
-        return when (state) {
-            Entity.State.OFFLINE -> 0
-            Entity.State.ONLINE -> 1
+    private fun compileUpdate(propertyColumns: List<String>): SQLiteStatement {
+        val propertyAssignments = propertyColumns.joinToString("") { ", \"$it\" = ?" }
+
+        return database.compileStatement(
+            """
+            UPDATE "$list"
+            SET ${EntitiesTable.COLUMN_LABEL} = COALESCE(?, ${EntitiesTable.COLUMN_LABEL}),
+                ${EntitiesTable.COLUMN_VERSION} = ?,
+                ${EntitiesTable.COLUMN_TRUNK_VERSION} = ?,
+                ${EntitiesTable.COLUMN_BRANCH_ID} = ?,
+                ${EntitiesTable.COLUMN_STATE} = CASE WHEN ${EntitiesTable.COLUMN_STATE} = 0 THEN ? ELSE 1 END$propertyAssignments
+            WHERE ${EntitiesTable.COLUMN_ID} = ?
+            """.trimIndent()
+        )
+    }
+
+    private fun compileInsert(propertyColumns: List<String>): SQLiteStatement {
+        val columns = listOf(
+            EntitiesTable.COLUMN_ID,
+            EntitiesTable.COLUMN_LABEL,
+            EntitiesTable.COLUMN_VERSION,
+            EntitiesTable.COLUMN_TRUNK_VERSION,
+            EntitiesTable.COLUMN_BRANCH_ID,
+            EntitiesTable.COLUMN_STATE
+        ) + propertyColumns.map { "\"$it\"" }
+
+        return database.compileStatement(
+            """
+            INSERT INTO "$list" (${columns.joinToString()})
+            VALUES (${columns.joinToString { "?" }})
+            """.trimIndent()
+        )
+    }
+
+    private fun SQLiteStatement.bindStringOrNull(index: Int, value: String?) {
+        if (value != null) {
+            bindString(index, value)
+        } else {
+            bindNull(index)
         }
     }
 
-    private fun quote(text: String) = "\"$text\""
+    private fun SQLiteStatement.bindLongOrNull(index: Int, value: Long?) {
+        if (value != null) {
+            bindLong(index, value)
+        } else {
+            bindNull(index)
+        }
+    }
+}
 
-    companion object {
-        const val DATABASE_VERSION = 3
+/**
+ * Store state as an Int rather than a string to avoid increasing the storage needed for
+ * entities.
+ */
+private fun convertStateToInt(state: Entity.State): Int {
+    return when (state) {
+        Entity.State.OFFLINE -> 0
+        Entity.State.ONLINE -> 1
     }
 }
 
@@ -189,6 +189,23 @@ public class DatabaseFormsRepository implements FormsRepository {
         }
     }
 
+    @Override
+    public List<Form> saveAll(@NotNull List<Form> forms) {
+        SQLiteDatabase writableDatabase = databaseConnection.getWritableDatabase();
+        writableDatabase.beginTransaction();
+        try {
+            List<Form> savedForms = new ArrayList<>();
+            for (Form form : forms) {
+                savedForms.add(save(form));
+            }
+
+            writableDatabase.setTransactionSuccessful();
+            return savedForms;
+        } finally {
+            writableDatabase.endTransaction();
+        }
+    }
+
     @Override
     public void delete(Long id) {
         String selection = _ID + "=?";
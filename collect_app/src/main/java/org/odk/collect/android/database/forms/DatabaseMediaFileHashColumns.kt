@@ -0,0 +1,15 @@
+package org.odk.collect.android.database.forms
+
+/**
+ * Columns for the media file hashes table.
+ */
+object DatabaseMediaFileHashColumns {
+    /**
+     * The path of the media file relative to the forms dir.
+     */
+    const val PATH = "path"
+
+    const val SIZE = "size"
+    const val LAST_MODIFIED = "lastModified"
+    const val MD5_HASH = "md5Hash"
+}
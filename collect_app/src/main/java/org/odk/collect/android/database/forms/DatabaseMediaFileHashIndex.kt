@@ -0,0 +1,108 @@
+package org.odk.collect.android.database.forms
+
+import android.content.ContentValues
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import org.odk.collect.android.database.DatabaseConstants.FORMS_DATABASE_NAME
+import org.odk.collect.android.database.DatabaseConstants.FORMS_DATABASE_VERSION
+import org.odk.collect.android.database.DatabaseConstants.MEDIA_FILE_HASHES_TABLE_NAME
+import org.odk.collect.android.database.forms.DatabaseMediaFileHashColumns.LAST_MODIFIED
+import org.odk.collect.android.database.forms.DatabaseMediaFileHashColumns.MD5_HASH
+import org.odk.collect.android.database.forms.DatabaseMediaFileHashColumns.PATH
+import org.odk.collect.android.database.forms.DatabaseMediaFileHashColumns.SIZE
+import androidx.core.database.sqlite.transaction
+import org.odk.collect.db.sqlite.CursorExt.first
+import org.odk.collect.db.sqlite.CursorExt.foldAndClose
+import org.odk.collect.db.sqlite.CursorExt.getString
+import org.odk.collect.db.sqlite.DatabaseConnection
+import org.odk.collect.db.sqlite.SQLiteDatabaseExt.query
+import org.odk.collect.forms.MediaFileHashIndex
+import org.odk.collect.shared.PathUtils.getRelativeFilePath
+import org.odk.collect.shared.strings.Md5.getMd5Hash
+import java.io.File
+
+/**
+ * Stores media file hashes in the forms database so that they survive between form list
+ * refreshes (and app restarts).
+ */
+class DatabaseMediaFileHashIndex(
+    context: Context,
+    dbPath: String,
+    private val formsPath: String
+) : MediaFileHashIndex {
+
+    private val databaseConnection = DatabaseConnection(
+        context,
+        dbPath,
+        FORMS_DATABASE_NAME,
+        FormDatabaseMigrator(),
+        FORMS_DATABASE_VERSION
+    )
+
+    override fun getMd5Hash(file: File): String? {
+        if (!file.exists()) {
+            return null
+        }
+
+        val path = getRelativeFilePath(formsPath, file.absolutePath)
+        val size = file.length()
+        val lastModified = file.lastModified()
+
+        val existingHash = databaseConnection.readableDatabase
+            .query(
+                MEDIA_FILE_HASHES_TABLE_NAME,
+                "$PATH=? AND $SIZE=? AND $LAST_MODIFIED=?",
+                arrayOf(path, size.toString(), lastModified.toString())
+            )
+            .first { it.getString(MD5_HASH) }
+
+        if (existingHash != null) {
+            return existingHash
+        }
+
+        val hash = file.getMd5Hash() ?: return null
+        val values = ContentValues().apply {
+            put(PATH, path)
+            put(SIZE, size)
+            put(LAST_MODIFIED, lastModified)
+            put(MD5_HASH, hash)
+        }
+
+        databaseConnection.writableDatabase.insertWithOnConflict(
+            MEDIA_FILE_HASHES_TABLE_NAME,
+            null,
+            values,
+            SQLiteDatabase.CONFLICT_REPLACE
+        )
+
+        return hash
+    }
+
+    override fun removeMissingFiles() {
+        val paths = databaseConnection.readableDatabase
+            .query(MEDIA_FILE_HASHES_TABLE_NAME)
+            .foldAndClose { it.getString(PATH) }
+
+        val missingPaths = paths.filterNot { getFile(it).exists() }
+        if (missingPaths.isEmpty()) {
+            return
+        }
+
+        databaseConnection.writableDatabase.transaction {
+            missingPaths.forEach {
+                delete(MEDIA_FILE_HASHES_TABLE_NAME, "$PATH=?", arrayOf(it))
+            }
+        }
+    }
+
+    /**
+     * Paths are stored relative to [formsPath] unless the file is somewhere else
+     */
+    private fun getFile(path: String): File {
+        return if (File(path).isAbsolute) {
+            File(path)
+        } else {
+            File(formsPath, path)
+        }
+    }
+}
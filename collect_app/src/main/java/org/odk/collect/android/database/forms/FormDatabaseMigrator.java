@@ -8,6 +8,7 @@ import org.odk.collect.db.sqlite.SQLiteUtils;
 
 import static android.provider.BaseColumns._ID;
 import static org.odk.collect.android.database.DatabaseConstants.FORMS_TABLE_NAME;
+import static org.odk.collect.android.database.DatabaseConstants.MEDIA_FILE_HASHES_TABLE_NAME;
 import static org.odk.collect.android.database.forms.DatabaseFormColumns.AUTO_DELETE;
 import static org.odk.collect.android.database.forms.DatabaseFormColumns.AUTO_SEND;
 import static org.odk.collect.android.database.forms.DatabaseFormColumns.BASE64_RSA_PUBLIC_KEY;
@@ -45,6 +46,7 @@ public class FormDatabaseMigrator implements DatabaseMigrator {
 
     public void onCreate(SQLiteDatabase db) {
         createFormsTableV14(db);
+        createMediaFileHashesTable(db);
     }
 
     @SuppressWarnings({"checkstyle:FallThrough"})
@@ -77,8 +79,10 @@ public class FormDatabaseMigrator implements DatabaseMigrator {
             case 13:
                 upgradeToVersion14(db);
             case 14:
+                upgradeToVersion15(db);
+            case 15:
                 // Remember to bump the database version number in {@link org.odk.collect.android.database.DatabaseConstants}
-                // upgradeToVersion15(db);
+                // upgradeToVersion16(db);
         }
     }
 
@@ -280,6 +284,10 @@ public class FormDatabaseMigrator implements DatabaseMigrator {
         addColumn(db, FORMS_TABLE_NAME, USES_ENTITIES, "text");
     }
 
+    private void upgradeToVersion15(SQLiteDatabase db) {
+        createMediaFileHashesTable(db);
+    }
+
     private void createFormsTableV4(SQLiteDatabase db, String tableName) {
         db.execSQL("CREATE TABLE IF NOT EXISTS " + tableName + " ("
                 + _ID + " integer primary key, "
@@ -471,4 +479,12 @@ public class FormDatabaseMigrator implements DatabaseMigrator {
                 + LAST_DETECTED_ATTACHMENTS_UPDATE_DATE + " integer, " // milliseconds
                 + USES_ENTITIES + " text);");
     }
+
+    private void createMediaFileHashesTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + MEDIA_FILE_HASHES_TABLE_NAME + " ("
+                + DatabaseMediaFileHashColumns.PATH + " text primary key, "
+                + DatabaseMediaFileHashColumns.SIZE + " integer not null, "
+                + DatabaseMediaFileHashColumns.LAST_MODIFIED + " integer not null, " // milliseconds
+                + DatabaseMediaFileHashColumns.MD5_HASH + " text not null);");
+    }
 }
@@ -90,11 +90,13 @@ class DatabaseSavepointsRepository(
             .delete(SAVEPOINTS_TABLE_NAME, selection, selectionArgs)
 
         File(savepoint.savepointFilePath).delete()
+        File(savepoint.journalFilePath).delete()
     }
 
     override fun deleteAll() {
         getAll().forEach {
             File(it.savepointFilePath).delete()
+            File(it.journalFilePath).delete()
         }
 
         databaseConnection
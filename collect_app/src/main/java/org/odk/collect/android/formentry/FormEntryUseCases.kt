@@ -176,7 +176,11 @@ object FormEntryUseCases {
     @JvmStatic
     fun saveInstanceToDisk(formController: FormController) {
         val payload = formController.getSubmissionXml()
-        FileUtils.write(formController.getInstanceFile(), payload!!.payloadBytes)
+        val instanceFile = formController.getInstanceFile()!!
+
+        // The instance file might be linked to last-saved (see SaveFormToDisk) so replace it rather than writing over it
+        instanceFile.delete()
+        FileUtils.write(instanceFile, payload!!.payloadBytes)
     }
 
     private fun getInstanceFromFormController(
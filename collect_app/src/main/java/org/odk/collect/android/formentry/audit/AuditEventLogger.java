@@ -98,6 +98,7 @@ public class AuditEventLogger {
          */
         if (writeImmediatelyToDisk && !newAuditEvent.isIntervalAuditEventType()) {
             writeEvents();
+            writer.flush(false);
         }
     }
 
@@ -112,6 +113,17 @@ public class AuditEventLogger {
         }
     }
 
+    /*
+     * Makes sure events that have already been handed to the writer are written to disk rather
+     * than buffered. If wait is true, this blocks until they have been (so should not be used on
+     * the UI thread).
+     */
+    public void flushWriter(boolean wait) {
+        if (isAuditEnabled()) {
+            writer.flush(wait);
+        }
+    }
+
     private void addLocationCoordinatesToAuditEvent(AuditEvent auditEvent, long currentTime) {
         Location location = getMostAccurateLocation(currentTime);
         String latitude = location != null ? Double.toString(location.getLatitude()) : "";
@@ -293,5 +305,12 @@ public class AuditEventLogger {
         void writeEvents(List<AuditEvent> auditEvents);
 
         boolean isWriting();
+
+        /**
+         * Writes any events that are being buffered to disk and releases the log file. Blocks until
+         * that's done if {@code wait} is true.
+         */
+        default void flush(boolean wait) {
+        }
     }
 }
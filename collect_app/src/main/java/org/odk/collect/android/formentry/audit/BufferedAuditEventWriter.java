@@ -0,0 +1,218 @@
+package org.odk.collect.android.formentry.audit;
+
+import static org.odk.collect.android.formentry.audit.AuditEventCSVLine.toCSVLine;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import timber.log.Timber;
+
+/**
+ * Appends events to the audit log. Events are buffered in memory and written in batches on a
+ * background thread, either once {@link #MAX_BUFFERED_EVENTS} have built up or
+ * {@link #WRITE_DELAY_MILLIS} after the first one was buffered. The log is kept open between
+ * batches (and its header is only checked when it's opened) until {@link #flush(boolean)} is
+ * called.
+ */
+public class BufferedAuditEventWriter implements AuditEventLogger.AuditEventWriter {
+
+    static final int MAX_BUFFERED_EVENTS = 64;
+    static final long WRITE_DELAY_MILLIS = 2000;
+
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "AuditEventWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final String DEFAULT_COLUMNS = "event,node,start,end";
+    private static final String LOCATION_COORDINATES_COLUMNS = ",latitude,longitude,accuracy";
+    private static final String ANSWER_VALUES_COLUMNS = ",old-value,new-value";
+    private static final String USER_COLUMNS = ",user";
+    private static final String CHANGE_REASON_COLUMNS = ",change-reason";
+
+    private final File file;
+    private final boolean isLocationEnabled;
+    private final boolean isTrackingChangesEnabled;
+    private final boolean isUserRequired;
+    private final boolean isTrackChangesReasonEnabled;
+
+    private final List<String> buffer = new ArrayList<>();
+    private boolean writeScheduled;
+
+    // Only accessed on the executor's thread
+    private Writer writer;
+
+    public BufferedAuditEventWriter(@NonNull File file, boolean isLocationEnabled, boolean isTrackingChangesEnabled, boolean isUserRequired, boolean isTrackChangesReasonEnabled) {
+        this.file = file;
+        this.isLocationEnabled = isLocationEnabled;
+        this.isTrackingChangesEnabled = isTrackingChangesEnabled;
+        this.isUserRequired = isUserRequired;
+        this.isTrackChangesReasonEnabled = isTrackChangesReasonEnabled;
+    }
+
+    @Override
+    public void writeEvents(List<AuditEvent> auditEvents) {
+        List<String> csvLines = new ArrayList<>(auditEvents.size());
+        for (AuditEvent auditEvent : auditEvents) {
+            csvLines.add(toCSVLine(auditEvent, isLocationEnabled, isTrackingChangesEnabled, isTrackChangesReasonEnabled));
+        }
+
+        synchronized (this) {
+            buffer.addAll(csvLines);
+
+            if (buffer.size() >= MAX_BUFFERED_EVENTS) {
+                EXECUTOR.execute(() -> write(false));
+            } else if (!writeScheduled) {
+                writeScheduled = true;
+                EXECUTOR.schedule(() -> write(false), WRITE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Events are never queued behind a write (they're buffered here instead) so the logger can
+     * always hand them straight over.
+     */
+    @Override
+    public boolean isWriting() {
+        return false;
+    }
+
+    @Override
+    public void flush(boolean wait) {
+        Future<?> write = EXECUTOR.submit(() -> write(true));
+
+        if (wait) {
+            try {
+                write.get();
+            } catch (ExecutionException e) {
+                Timber.e(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void write(boolean close) {
+        List<String> csvLines;
+        synchronized (this) {
+            csvLines = new ArrayList<>(buffer);
+            buffer.clear();
+            writeScheduled = false;
+        }
+
+        try {
+            if (!csvLines.isEmpty()) {
+                if (writer == null) {
+                    writer = open();
+                }
+
+                for (String csvLine : csvLines) {
+                    writer.write(csvLine + "\n");
+                }
+
+                writer.flush();
+            }
+        } catch (IOException e) {
+            Timber.e(e);
+            close = true;
+        }
+
+        if (close) {
+            close();
+        }
+    }
+
+    private Writer open() throws IOException {
+        String header = readHeader();
+
+        if (header == null) {
+            Writer newWriter = new BufferedWriter(new FileWriter(file, false));
+            newWriter.write(getHeader() + "\n");
+            return newWriter;
+        } else if (shouldHeaderBeUpdated(header)) {
+            updateHeader();
+        }
+
+        return new BufferedWriter(new FileWriter(file, true));
+    }
+
+    private void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                Timber.e(e);
+            }
+
+            writer = null;
+        }
+    }
+
+    private String readHeader() throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            return reader.readLine();
+        }
+    }
+
+    private void updateHeader() throws IOException {
+        File temporaryFile = new File(file.getParentFile(), "temporaryAudit.csv");
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file));
+             Writer temporaryWriter = new BufferedWriter(new FileWriter(temporaryFile, false))) {
+            reader.readLine();
+            temporaryWriter.write(getHeader() + "\n");
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                temporaryWriter.write(line + "\n");
+            }
+        }
+
+        if (!temporaryFile.renameTo(file)) {
+            throw new IOException("Error renaming " + temporaryFile.getAbsolutePath() + " to " + file.getAbsolutePath());
+        }
+    }
+
+    private boolean shouldHeaderBeUpdated(String header) {
+        return (isLocationEnabled && !header.contains(LOCATION_COORDINATES_COLUMNS))
+                || (isTrackingChangesEnabled && !header.contains(ANSWER_VALUES_COLUMNS))
+                || (isUserRequired && !header.contains(USER_COLUMNS));
+    }
+
+    private String getHeader() {
+        String header = DEFAULT_COLUMNS;
+        if (isLocationEnabled) {
+            header += LOCATION_COORDINATES_COLUMNS;
+        }
+        if (isTrackingChangesEnabled) {
+            header += ANSWER_VALUES_COLUMNS;
+        }
+        if (isUserRequired) {
+            header += USER_COLUMNS;
+        }
+        if (isTrackChangesReasonEnabled) {
+            header += CHANGE_REASON_COLUMNS;
+        }
+        return header;
+    }
+}
@@ -19,6 +19,7 @@ import org.odk.collect.androidshared.ui.ToastUtils
 import org.odk.collect.entities.javarosa.filter.LocalEntitiesFilterStrategy
 import org.odk.collect.entities.javarosa.filter.PullDataFunctionHandler
 import org.odk.collect.entities.javarosa.finalization.EntityFormFinalizationProcessor
+import org.odk.collect.entities.storage.CachingEntitiesRepository
 import org.odk.collect.entities.storage.EntitiesRepository
 import org.odk.collect.settings.keys.ProjectKeys
 import org.odk.collect.shared.settings.Settings
@@ -36,11 +37,17 @@ class CollectFormEntryControllerFactory(
             Collect.getInstance().externalDataManager = it
         }
 
+        /**
+         * Filters and `pulldata` calls are evaluated over and over while filling a form so
+         * we cache their results for the lifetime of the controller.
+         */
+        val cachingEntitiesRepository = CachingEntitiesRepository(entitiesRepository)
+
         return FormEntryController(FormEntryModel(formDef)).also {
             val externalDataHandlerPull = ExternalDataHandlerPull(externalDataManager)
             it.addFunctionHandler(
                 PullDataFunctionHandler(
-                    entitiesRepository,
+                    cachingEntitiesRepository,
                     externalDataHandlerPull
                 )
             )
@@ -50,7 +57,7 @@ class CollectFormEntryControllerFactory(
                 it.addFilterStrategy(LoggingFilterStrategy())
             }
 
-            it.addFilterStrategy(LocalEntitiesFilterStrategy(entitiesRepository))
+            it.addFilterStrategy(LocalEntitiesFilterStrategy(cachingEntitiesRepository))
         }
     }
 }
@@ -0,0 +1,89 @@
+package org.odk.collect.android.formmanagement
+
+import org.javarosa.core.reference.ReferenceManager
+import org.javarosa.xform.util.XFormUtils
+import org.odk.collect.android.formmanagement.metadata.FormMetadataParser
+import org.odk.collect.android.utilities.ExternalizableFormDefCache
+import timber.log.Timber
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+
+/**
+ * Parses forms in the background and writes them to [formDefCache] so that opening a form for the
+ * first time after it's been downloaded (or added to the forms dir) doesn't have to wait for
+ * it to be parsed. Work is queued on [executor] which, by default, is a single low priority
+ * thread shared between all projects.
+ *
+ * Forms with external secondary instances (including last-saved) are skipped. Parsing those
+ * means setting up the global [ReferenceManager] for the form, which would break loading any
+ * form that's opened at the same time. They're still cached the first time they're opened.
+ */
+class FormDefPrecompiler @JvmOverloads constructor(
+    private val formDefCache: ExternalizableFormDefCache,
+    private val executor: Executor = LOW_PRIORITY_EXECUTOR
+) {
+
+    fun schedule(formFile: File) {
+        val formPath = formFile.absolutePath
+        if (!scheduled.add(formPath)) {
+            return
+        }
+
+        executor.execute {
+            try {
+                precompile(formFile)
+            } finally {
+                scheduled.remove(formPath)
+            }
+        }
+    }
+
+    private fun precompile(formFile: File) {
+        try {
+            if (!formFile.exists() || formDefCache.isCached(formFile)) {
+                return
+            }
+
+            if (FormMetadataParser.hasExternalSecondaryInstances(formFile)) {
+                Timber.i("Not precompiling %s as it has external secondary instances", formFile.name)
+                return
+            }
+
+            val start = System.currentTimeMillis()
+            val formDef = XFormUtils.getFormFromFormXml(formFile.absolutePath, null)
+            if (formDef != null) {
+                Timber.i(
+                    "Precompiled %s in %.3f seconds",
+                    formFile.name,
+                    (System.currentTimeMillis() - start) / 1000F
+                )
+
+                formDefCache.writeCache(formDef, formFile.path)
+            }
+        } catch (e: Exception) {
+            // The form will be parsed (and any problems reported) when it's opened
+            Timber.w(e)
+        } catch (e: StackOverflowError) {
+            Timber.w(e)
+        }
+    }
+
+    companion object {
+
+        @JvmField
+        val LOW_PRIORITY_EXECUTOR: Executor = Executors.newSingleThreadExecutor { runnable ->
+            Thread(runnable, "FormDefPrecompiler").apply {
+                priority = Thread.MIN_PRIORITY
+                isDaemon = true
+            }
+        }
+
+        /**
+         * Paths of forms that are waiting to be (or are being) precompiled so that the same form
+         * isn't queued up more than once
+         */
+        private val scheduled = ConcurrentHashMap.newKeySet<String>()
+    }
+}
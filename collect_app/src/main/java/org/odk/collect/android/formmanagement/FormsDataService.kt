@@ -10,6 +10,7 @@ import org.odk.collect.android.formmanagement.metadata.FormMetadataParser
 import org.odk.collect.android.notifications.Notifier
 import org.odk.collect.android.projects.ProjectDependencyModule
 import org.odk.collect.android.state.DataKeys
+import org.odk.collect.android.utilities.ExternalizableFormDefCache
 import org.odk.collect.androidshared.data.AppState
 import org.odk.collect.androidshared.data.DataService
 import org.odk.collect.forms.Form
@@ -17,13 +18,19 @@ import org.odk.collect.forms.FormSourceException
 import org.odk.collect.projects.ProjectDependencyFactory
 import org.odk.collect.settings.keys.ProjectKeys
 import java.io.File
+import java.util.concurrent.Executor
 import java.util.function.Supplier
 import java.util.stream.Collectors
 
+/**
+ * @param formDefPrecompilerExecutor if set, forms that are downloaded or found on disk are parsed
+ * and cached (using this executor) in the background so that they open quickly
+ */
 class FormsDataService(
     appState: AppState,
     private val notifier: Notifier,
     private val projectDependencyModuleFactory: ProjectDependencyFactory<ProjectDependencyModule>,
+    private val formDefPrecompilerExecutor: Executor? = null,
     private val clock: Supplier<Long>
 ) : DataService(appState) {
 
@@ -80,7 +87,7 @@ class FormsDataService(
         projectDependencyModule.formsLock.withLock { acquiredLock ->
             if (acquiredLock) {
                 val formDownloader =
-                    formDownloader(projectDependencyModule, clock)
+                    formDownloader(projectDependencyModule, clock, formDefPrecompiler(projectDependencyModule))
 
                 results.putAll(ServerFormUseCases.downloadForms(
                     forms,
@@ -104,7 +111,7 @@ class FormsDataService(
                 syncWithStorage(projectId)
 
                 val serverFormsDetailsFetcher = serverFormsDetailsFetcher(projectDependencies)
-                val formDownloader = formDownloader(projectDependencies, clock)
+                val formDownloader = formDownloader(projectDependencies, clock, formDefPrecompiler(projectDependencies))
 
                 try {
                     val serverForms: List<ServerFormDetails> =
@@ -146,7 +153,7 @@ class FormsDataService(
                 syncWithStorage(projectId)
 
                 val serverFormsDetailsFetcher = serverFormsDetailsFetcher(projectDependencies)
-                val formDownloader = formDownloader(projectDependencies, clock)
+                val formDownloader = formDownloader(projectDependencies, clock, formDefPrecompiler(projectDependencies))
 
                 val serverFormsSynchronizer = ServerFormsSynchronizer(
                     serverFormsDetailsFetcher,
@@ -194,12 +201,23 @@ class FormsDataService(
         val projectDependencies = projectDependencyModuleFactory.create(projectId)
         val error = LocalFormUseCases.synchronizeWithDisk(
             projectDependencies.formsRepository,
-            projectDependencies.formsDir
+            projectDependencies.formsDir,
+            projectDependencies.mediaFileHashIndex,
+            formDefPrecompiler(projectDependencies)
         )
 
+        val formHashes = projectDependencies.formsRepository.all.mapNotNull { it.mD5Hash }
+        ExternalizableFormDefCache(File(projectDependencies.cacheDir)).evictAllExcept(formHashes)
+
         diskError.set(projectId, error)
     }
 
+    private fun formDefPrecompiler(projectDependencies: ProjectDependencyModule): FormDefPrecompiler? {
+        return formDefPrecompilerExecutor?.let {
+            FormDefPrecompiler(ExternalizableFormDefCache(File(projectDependencies.cacheDir)), it)
+        }
+    }
+
     private fun startSync(projectId: String) {
         syncing.set(projectId, true)
     }
@@ -216,7 +234,8 @@ class FormsDataService(
 
 private fun formDownloader(
     projectDependencyModule: ProjectDependencyModule,
-    clock: Supplier<Long>
+    clock: Supplier<Long>,
+    formDefPrecompiler: FormDefPrecompiler?
 ): ServerFormDownloader {
     return ServerFormDownloader(
         projectDependencyModule.formSource,
@@ -226,7 +245,10 @@ private fun formDownloader(
         FormMetadataParser,
         clock,
         projectDependencyModule.entitiesRepository,
-        projectDependencyModule.entitySource
+        projectDependencyModule.entitySource,
+        File(projectDependencyModule.cacheDir, "partial-downloads"),
+        projectDependencyModule.mediaFileHashIndex,
+        formDefPrecompiler
     )
 }
 
@@ -235,6 +257,7 @@ private fun serverFormsDetailsFetcher(
 ): ServerFormsDetailsFetcher {
     return ServerFormsDetailsFetcher(
         projectDependencyModule.formsRepository,
-        projectDependencyModule.formSource
+        projectDependencyModule.formSource,
+        projectDependencyModule.mediaFileHashIndex
     )
 }
@@ -9,16 +9,19 @@ import org.odk.collect.android.utilities.FileUtils
 import org.odk.collect.androidshared.utils.Validator
 import org.odk.collect.forms.Form
 import org.odk.collect.forms.FormsRepository
+import org.odk.collect.forms.MediaFileHashIndex
 import org.odk.collect.forms.instances.InstancesRepository
+import org.odk.collect.shared.collections.CollectionExtensions.mapConcurrently
 import org.odk.collect.shared.strings.Md5.getMd5Hash
 import org.odk.collect.strings.localization.getLocalizedString
 import timber.log.Timber
 import java.io.File
-import java.util.Collections
 import java.util.LinkedList
 
 object LocalFormUseCases {
 
+    const val DEFAULT_MAX_CONCURRENT_DISK_SYNC = 4
+
     private var counter = 0
 
     @JvmStatic
@@ -47,11 +50,25 @@ object LocalFormUseCases {
         }
     }
 
-    fun synchronizeWithDisk(formsRepository: FormsRepository, formsDir: String?): String {
+    /**
+     * Brings the forms in [formsRepository] in line with the form definitions in [formsDir].
+     * Hashing and parsing the files is spread over up to [maxConcurrency] threads and all the
+     * changes are then saved in a single batch. If [mediaFileHashIndex] is passed, it's used to
+     * avoid rehashing files that haven't changed since the last sync (and hashes for files that
+     * have since been deleted are removed from it). If [formDefPrecompiler] is
+     * passed, new and changed forms are scheduled to be parsed and cached in the background.
+     */
+    @JvmOverloads
+    fun synchronizeWithDisk(
+        formsRepository: FormsRepository,
+        formsDir: String?,
+        mediaFileHashIndex: MediaFileHashIndex? = null,
+        formDefPrecompiler: FormDefPrecompiler? = null,
+        maxConcurrency: Int = DEFAULT_MAX_CONCURRENT_DISK_SYNC
+    ): String {
         var statusMessage = ""
         val instance = ++counter
         Timber.i("[%d] doInBackground begins!", instance)
-        val idsToDelete: MutableList<Long> = ArrayList()
         return try {
             // Process everything then report what didn't work.
             val errors = StringBuilder()
@@ -63,112 +80,80 @@ object LocalFormUseCases {
                 // Step 1: assemble the candidate form files
                 val formsToAdd = filterFormsToAdd(formDefs, instance)
 
-                // Step 2: quickly run through and figure out what files we need to
-                // parse and update; this is quick, as we only calculate the md5
-                // and see if it has changed.
-                val uriToUpdate: MutableList<IdFile?> = ArrayList()
+                // Step 2: figure out what files we need to parse and update by checking if
+                // their md5 has changed. This is quick (especially if the hash index lets us
+                // skip unchanged files), but it's still spread over several threads.
                 val forms = formsRepository.all
-                for (form in forms) {
-                    // For each element in the provider, see if the file already exists
-                    val sqlFilename = form.formFilePath
-                    val md5 = form.mD5Hash
-                    val sqlFile = File(sqlFilename)
-                    if (sqlFile.exists()) {
-                        // remove it from the list of forms (we only want forms
-                        // we haven't added at the end)
-                        formsToAdd.remove(sqlFile)
-                        val md5Computed = sqlFile.getMd5Hash()
-                        if (md5Computed == null || md5 == null || md5Computed != md5) {
-                            // Probably someone overwrite the file on the sdcard
-                            // So re-parse it and update it's information
-                            val id = form.dbId
-                            uriToUpdate.add(IdFile(id, sqlFile))
-                        }
+                val (existingForms, missingForms) = forms.partition { File(it.formFilePath).exists() }
+
+                val formsToUpdate = existingForms.mapConcurrently(maxConcurrency) { form ->
+                    val file = File(form.formFilePath)
+                    val md5Computed = mediaFileHashIndex?.getMd5Hash(file) ?: file.getMd5Hash()
+                    if (md5Computed == null || form.mD5Hash == null || md5Computed != form.mD5Hash) {
+                        // Probably someone overwrite the file on the sdcard
+                        // So re-parse it and update it's information
+                        IdFile(form.dbId, file)
                     } else {
-                        // File not found in sdcard but file path found in database
-                        // probably because the file has been deleted or filename was changed in sdcard
-                        // Add the ID to list so that they could be deleted all together
-                        val id = form.dbId
-                        idsToDelete.add(id)
+                        null
                     }
-                }
+                }.filterNotNull()
 
-                // Delete the forms not found in sdcard from the database
-                for (id in idsToDelete) {
-                    formsRepository.delete(id)
-                }
+                // remove existing files from the list of forms (we only want forms we haven't
+                // added at the end)
+                formsToAdd.removeAll(existingForms.map { File(it.formFilePath) }.toSet())
 
-                // Step3: go through uriToUpdate to parse and update each in turn.
-                // Note: buildContentValues calls getMetadataFromFormDefinition which parses the
-                // form XML. This takes time for large forms and/or slow devices.
-                Collections.shuffle(uriToUpdate) // Big win if multiple DiskSyncTasks running
-                for (entry in uriToUpdate) {
-                    val formDefFile = entry!!.file
-                    // Probably someone overwrite the file on the sdcard
-                    // So re-parse it and update it's information
-                    var form: Form
-                    form = try {
-                        parseForm(formDefFile)
-                    } catch (e: IllegalArgumentException) {
-                        errors.append(e.message).append("\r\n")
-                        val badFile = File(
-                            formDefFile.parentFile,
-                            formDefFile.name + ".bad"
-                        )
-                        badFile.delete()
-                        formDefFile.renameTo(badFile)
-                        continue
-                    }
-                    formsRepository.save(
-                        Form.Builder(form)
-                            .dbId(entry.id)
-                            .build()
-                    )
+                // File not found in sdcard but file path found in database probably because the
+                // file has been deleted or filename was changed in sdcard so delete them
+                for (form in missingForms) {
+                    formsRepository.delete(form.dbId)
                 }
-                uriToUpdate.clear()
 
-                // Step 4: go through the newly-discovered files in xFormsToAdd and add them.
-                // This is slow because buildContentValues(...) is slow.
-                //
-                Collections.shuffle(formsToAdd) // Big win if multiple DiskSyncTasks running
-                while (!formsToAdd.isEmpty()) {
-                    val formDefFile = formsToAdd.removeAt(0)
-
-                    // Since parsing is so slow, if there are multiple tasks,
-                    // they may have already updated the database.
-                    // Skip this file if that is the case.
-                    if (formsRepository.getOneByPath(formDefFile!!.absolutePath) != null) {
+                // Step 3: parse the changed and newly-discovered files. This is the slow part
+                // (especially for large forms and/or slow devices) so they're all parsed at the
+                // same time. Files that have already been recorded by another sync are skipped.
+                val newFiles = formsToAdd.filterNotNull().filter { formDefFile ->
+                    if (formsRepository.getOneByPath(formDefFile.absolutePath) != null) {
                         Timber.i(
                             "[%d] skipping -- definition already recorded: %s",
                             instance,
                             formDefFile.absolutePath
                         )
-                        continue
+                        false
+                    } else {
+                        true
                     }
+                }
 
-                    // Parse it for the first time...
-                    var form: Form
-                    form = try {
-                        parseForm(formDefFile)
+                val filesToParse = formsToUpdate + newFiles.map { IdFile(null, it) }
+                val parsedForms = filesToParse.mapConcurrently(maxConcurrency) { entry ->
+                    val formDefFile = entry.file
+                    try {
+                        Form.Builder(parseForm(formDefFile))
+                            .dbId(entry.id)
+                            .build()
                     } catch (e: IllegalArgumentException) {
-                        errors.append(e.message).append("\r\n")
+                        synchronized(errors) {
+                            errors.append(e.message).append("\r\n")
+                        }
+
                         val badFile = File(
                             formDefFile.parentFile,
                             formDefFile.name + ".bad"
                         )
                         badFile.delete()
                         formDefFile.renameTo(badFile)
-                        continue
+                        null
                     }
+                }.filterNotNull()
 
-                    // insert into content provider
-                    try {
-                        // insert failures are OK and expected if multiple
-                        // DiskSync scanners are active.
-                        formsRepository.save(form)
-                    } catch (e: SQLException) {
-                        Timber.i("[%d] %s", instance, e.toString())
-                    }
+                // Step 4: save everything in one go
+                saveForms(formsRepository, parsedForms, instance)
+
+                // Step 5: forget hashes for files that have been deleted (along with their forms)
+                mediaFileHashIndex?.removeMissingFiles()
+
+                if (formDefPrecompiler != null) {
+                    parsedForms.forEach { formDefPrecompiler.schedule(File(it.formFilePath)) }
                 }
             }
             if (errors.length != 0) {
@@ -185,6 +170,28 @@ object LocalFormUseCases {
         }
     }
 
+    private fun saveForms(formsRepository: FormsRepository, forms: List<Form>, instance: Int) {
+        if (forms.isEmpty()) {
+            return
+        }
+
+        try {
+            formsRepository.saveAll(forms)
+        } catch (e: SQLException) {
+            // Insert failures are OK and expected if multiple disk syncs are active, so fall
+            // back to saving the forms one by one
+            Timber.i("[%d] %s", instance, e.toString())
+
+            for (form in forms) {
+                try {
+                    formsRepository.save(form)
+                } catch (e: SQLException) {
+                    Timber.i("[%d] %s", instance, e.toString())
+                }
+            }
+        }
+    }
+
     @JvmStatic
     fun filterFormsToAdd(formDefs: Array<File>?, backgroundInstanceId: Int): MutableList<File?> {
         val formsToAdd: MutableList<File?> = LinkedList()
@@ -290,5 +297,5 @@ object LocalFormUseCases {
         return builder.build()
     }
 
-    private class IdFile(val id: Long, val file: File)
+    private class IdFile(val id: Long?, val file: File)
 }
@@ -3,6 +3,7 @@ package org.odk.collect.android.formmanagement
 import org.odk.collect.analytics.Analytics
 import org.odk.collect.android.formmanagement.download.FormDownloadException
 import org.odk.collect.android.formmanagement.download.FormDownloader
+import org.odk.collect.android.formmanagement.download.ResumableMediaFileDownloader
 import org.odk.collect.android.utilities.FileUtils
 import org.odk.collect.async.OngoingWorkListener
 import org.odk.collect.entities.LocalEntityUseCases
@@ -12,43 +13,88 @@ import org.odk.collect.forms.Form
 import org.odk.collect.forms.FormSource
 import org.odk.collect.forms.FormSourceException
 import org.odk.collect.forms.FormsRepository
+import org.odk.collect.forms.MediaFileHashIndex
 import org.odk.collect.forms.MediaFile
+import org.odk.collect.shared.collections.CollectionExtensions.mapConcurrently
 import org.odk.collect.shared.strings.Md5.getMd5Hash
 import java.io.File
 import java.io.IOException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReference
 
 object ServerFormUseCases {
 
+    const val DEFAULT_MAX_CONCURRENT_DOWNLOADS = 4
+
+    /**
+     * Shared by every form being downloaded so that the number of media files being downloaded
+     * at once is bounded across all forms (rather than for each form). Threads are let go when
+     * the executor is idle.
+     */
+    private val mediaFileDownloadExecutor: ExecutorService by lazy {
+        ThreadPoolExecutor(
+            DEFAULT_MAX_CONCURRENT_DOWNLOADS,
+            DEFAULT_MAX_CONCURRENT_DOWNLOADS,
+            30,
+            TimeUnit.SECONDS,
+            LinkedBlockingQueue()
+        ).also { it.allowCoreThreadTimeOut(true) }
+    }
+
+    /**
+     * Downloads [forms] with up to [maxConcurrentDownloads] forms being downloaded at once. Media
+     * files for those forms all share one executor (see [downloadMediaFiles]) so concurrent forms
+     * don't multiply the number of media files in flight. If a download is interrupted, no more
+     * downloads are started and only the results for forms that have already been downloaded (or
+     * have failed) are returned.
+     */
     fun downloadForms(
         forms: List<ServerFormDetails>,
         formDownloader: FormDownloader,
         progressReporter: ((Int, Int) -> Unit)? = null,
         isCancelled: (() -> Boolean)? = null,
+        maxConcurrentDownloads: Int = DEFAULT_MAX_CONCURRENT_DOWNLOADS
     ): Map<ServerFormDetails, FormDownloadException?> {
-        val results = mutableMapOf<ServerFormDetails, FormDownloadException?>()
-        for (index in forms.indices) {
+        val interrupted = AtomicBoolean(false)
+
+        val results = forms.indices.toList().mapConcurrently(maxConcurrentDownloads) { index ->
             val form = forms[index]
+            if (interrupted.get()) {
+                return@mapConcurrently DownloadResult.Skipped
+            }
 
             try {
                 formDownloader.downloadForm(
                     form,
                     object : FormDownloader.ProgressReporter {
                         override fun onDownloadingMediaFile(count: Int) {
-                            progressReporter?.invoke(index, count)
+                            if (progressReporter != null) {
+                                synchronized(progressReporter) {
+                                    progressReporter.invoke(index, count)
+                                }
+                            }
                         }
                     },
-                    { isCancelled?.invoke() ?: false }
+                    { interrupted.get() || isCancelled?.invoke() ?: false }
                 )
 
-                results[form] = null
+                DownloadResult.Finished(null)
             } catch (e: FormDownloadException.DownloadingInterrupted) {
-                break
+                interrupted.set(true)
+                DownloadResult.Skipped
             } catch (e: FormDownloadException) {
-                results[form] = e
+                DownloadResult.Finished(e)
             }
         }
 
-        return results
+        return forms.zip(results)
+            .filter { (_, result) -> result is DownloadResult.Finished }
+            .associate { (form, result) -> Pair(form, (result as DownloadResult.Finished).exception) }
     }
 
     @JvmStatic
@@ -66,7 +112,19 @@ object ServerFormUseCases {
         }
     }
 
+    /**
+     * Downloads the media files for [formToDownload] into [tempMediaPath] using [executor].
+     * By default this is shared between all forms, so at most [DEFAULT_MAX_CONCURRENT_DOWNLOADS]
+     * files are downloaded at once however many forms are being downloaded. Entity lists are
+     * then updated from any downloaded entity list files one at a time (in manifest order).
+     *
+     * @param resumableDownloader used to download media files so that interrupted downloads
+     * can be resumed. If `null`, interrupted downloads will start from scratch next time.
+     * @param mediaFileHashIndex used to check whether existing media files differ from the ones
+     * in the manifest. If `null`, existing media files are hashed every time.
+     */
     @JvmStatic
+    @JvmOverloads
     @Throws(IOException::class, FormSourceException::class, InterruptedException::class)
     fun downloadMediaFiles(
         formToDownload: ServerFormDetails,
@@ -76,38 +134,58 @@ object ServerFormUseCases {
         tempDir: File,
         entitiesRepository: EntitiesRepository,
         entitySource: EntitySource,
-        stateListener: OngoingWorkListener
+        stateListener: OngoingWorkListener,
+        resumableDownloader: ResumableMediaFileDownloader? = null,
+        mediaFileHashIndex: MediaFileHashIndex? = null,
+        executor: ExecutorService = mediaFileDownloadExecutor
     ): MediaFilesDownloadResult {
-        var newAttachmentsDownloaded = false
-        var entitiesDownloaded = false
-
         val tempMediaDir = File(tempMediaPath).also { it.mkdir() }
+        val mediaFiles = formToDownload.manifest!!.mediaFiles
 
-        formToDownload.manifest!!.mediaFiles.forEachIndexed { i, mediaFile ->
-            stateListener.progressUpdate(i + 1)
+        val startedCount = AtomicInteger(0)
+        val failure = AtomicReference<Exception?>(null)
+        val downloadListener = object : OngoingWorkListener {
+            override fun progressUpdate(progress: Int) {
+                stateListener.progressUpdate(progress)
+            }
 
-            val tempMediaFile = File(tempMediaDir, mediaFile.filename)
+            /**
+             * Cancel the other downloads if one of them fails
+             */
+            override val isCancelled: Boolean
+                get() = failure.get() != null || stateListener.isCancelled
+        }
 
-            val existingFile = searchForExistingMediaFile(formsRepository, formToDownload, mediaFile)
-            existingFile.also {
-                if (it != null) {
-                    if (it.getMd5Hash().contentEquals(mediaFile.hash)) {
-                        FileUtils.copyFile(it, tempMediaFile)
-                    } else {
-                        val existingFileHash = it.getMd5Hash()
-                        val file = formSource.fetchMediaFile(mediaFile.downloadUrl)
-                        FileUtils.interuptablyWriteFile(file, tempMediaFile, tempDir, stateListener)
-
-                        if (!tempMediaFile.getMd5Hash().contentEquals(existingFileHash)) {
-                            newAttachmentsDownloaded = true
-                        }
-                    }
-                } else {
-                    val file = formSource.fetchMediaFile(mediaFile.downloadUrl)
-                    FileUtils.interuptablyWriteFile(file, tempMediaFile, tempDir, stateListener)
-                    newAttachmentsDownloaded = true
+        val newAttachments = try {
+            mediaFiles.mapConcurrently(executor) { mediaFile ->
+                downloadListener.progressUpdate(startedCount.incrementAndGet())
+
+                try {
+                    downloadMediaFile(
+                        mediaFile,
+                        File(tempMediaDir, mediaFile.filename),
+                        formToDownload,
+                        formSource,
+                        formsRepository,
+                        tempDir,
+                        resumableDownloader,
+                        mediaFileHashIndex,
+                        downloadListener
+                    )
+                } catch (e: Exception) {
+                    failure.compareAndSet(null, e)
+                    throw e
                 }
             }
+        } catch (e: Exception) {
+            throw failure.get() ?: e
+        } finally {
+            resumableDownloader?.removeStalePartialDownloads(formToDownload.formId.orEmpty(), mediaFiles)
+        }
+
+        var entitiesDownloaded = false
+        mediaFiles.forEach { mediaFile ->
+            val tempMediaFile = File(tempMediaDir, mediaFile.filename)
 
             if (mediaFile.type != null) {
                 /**
@@ -117,13 +195,21 @@ object ServerFormUseCases {
                  */
                 try {
                     val entityListName = getEntityListFromFileName(mediaFile)
-                    LocalEntityUseCases.updateLocalEntitiesFromServer(
-                        entityListName,
-                        tempMediaFile,
-                        entitiesRepository,
-                        entitySource,
-                        mediaFile
-                    )
+
+                    /**
+                     * Forms can be downloaded concurrently, so make sure only one of them is
+                     * updating entity lists at a time.
+                     */
+                    synchronized(entitiesRepository) {
+                        LocalEntityUseCases.updateLocalEntitiesFromServer(
+                            entityListName,
+                            tempMediaFile,
+                            entitiesRepository,
+                            entitySource,
+                            mediaFile
+                        )
+                    }
+
                     entitiesDownloaded = true
                 } catch (t: Throwable) {
                     throw EntityListUpdateException(t)
@@ -142,7 +228,61 @@ object ServerFormUseCases {
             }
         }
 
-        return MediaFilesDownloadResult(newAttachmentsDownloaded, entitiesDownloaded)
+        return MediaFilesDownloadResult(newAttachments.any { it }, entitiesDownloaded)
+    }
+
+    /**
+     * Copies an existing copy of [mediaFile] to [tempMediaFile] if there is one or downloads it
+     * otherwise. Returns `true` if the file is new or differs from the existing copy.
+     */
+    private fun downloadMediaFile(
+        mediaFile: MediaFile,
+        tempMediaFile: File,
+        formToDownload: ServerFormDetails,
+        formSource: FormSource,
+        formsRepository: FormsRepository,
+        tempDir: File,
+        resumableDownloader: ResumableMediaFileDownloader?,
+        mediaFileHashIndex: MediaFileHashIndex?,
+        stateListener: OngoingWorkListener
+    ): Boolean {
+        val existingFile = searchForExistingMediaFile(formsRepository, formToDownload, mediaFile)
+
+        return if (existingFile != null) {
+            val existingFileHash = if (mediaFileHashIndex != null) {
+                mediaFileHashIndex.getMd5Hash(existingFile)
+            } else {
+                existingFile.getMd5Hash()
+            }
+
+            if (existingFileHash.contentEquals(mediaFile.hash)) {
+                FileUtils.copyFile(existingFile, tempMediaFile)
+                false
+            } else {
+                fetchMediaFile(formToDownload, mediaFile, tempMediaFile, formSource, tempDir, resumableDownloader, stateListener)
+                !tempMediaFile.getMd5Hash().contentEquals(existingFileHash)
+            }
+        } else {
+            fetchMediaFile(formToDownload, mediaFile, tempMediaFile, formSource, tempDir, resumableDownloader, stateListener)
+            true
+        }
+    }
+
+    private fun fetchMediaFile(
+        formToDownload: ServerFormDetails,
+        mediaFile: MediaFile,
+        tempMediaFile: File,
+        formSource: FormSource,
+        tempDir: File,
+        resumableDownloader: ResumableMediaFileDownloader?,
+        stateListener: OngoingWorkListener
+    ) {
+        if (resumableDownloader != null) {
+            resumableDownloader.download(formToDownload.formId.orEmpty(), mediaFile, formSource, tempMediaFile, stateListener)
+        } else {
+            val file = formSource.fetchMediaFile(mediaFile.downloadUrl)
+            FileUtils.interuptablyWriteFile(file, tempMediaFile, tempDir, stateListener)
+        }
     }
 
     private fun getEntityListFromFileName(mediaFile: MediaFile) =
@@ -164,6 +304,11 @@ object ServerFormUseCases {
     }
 }
 
+private sealed class DownloadResult {
+    data class Finished(val exception: FormDownloadException?) : DownloadResult()
+    data object Skipped : DownloadResult()
+}
+
 class EntityListUpdateException(cause: Throwable) : Exception(cause)
 
 data class MediaFilesDownloadResult(
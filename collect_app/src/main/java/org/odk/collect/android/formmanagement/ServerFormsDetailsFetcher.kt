@@ -23,17 +23,22 @@ import org.odk.collect.forms.FormSourceException
 import org.odk.collect.forms.FormsRepository
 import org.odk.collect.forms.ManifestFile
 import org.odk.collect.forms.MediaFile
+import org.odk.collect.forms.MediaFileHashIndex
 import org.odk.collect.openrosa.forms.OpenRosaClient
-import org.odk.collect.shared.strings.Md5.getMd5Hash
+import org.odk.collect.shared.collections.CollectionExtensions.mapConcurrently
 import timber.log.Timber
-import java.io.File
 
 /**
  * Open to allow mocking (used in existing Java tests)
+ *
+ * @param maxConcurrentManifestFetches the number of manifests that will be fetched from the
+ * server at once
  */
-open class ServerFormsDetailsFetcher(
+open class ServerFormsDetailsFetcher @JvmOverloads constructor(
     private val formsRepository: FormsRepository,
-    private val formSource: FormSource
+    private val formSource: FormSource,
+    private val mediaFileHashIndex: MediaFileHashIndex,
+    private val maxConcurrentManifestFetches: Int = DEFAULT_MAX_CONCURRENT_MANIFEST_FETCHES
 ) {
     open fun updateUrl(url: String) {
         (formSource as OpenRosaClient).updateUrl(url)
@@ -46,11 +51,13 @@ open class ServerFormsDetailsFetcher(
     @Throws(FormSourceException::class)
     open fun fetchFormDetails(): List<ServerFormDetails> {
         val formList = formSource.fetchFormList()
-        return formList.map { listItem ->
-            val manifestFile = listItem.manifestURL?.let {
+        val manifestFiles = formList.mapConcurrently(maxConcurrentManifestFetches) { listItem ->
+            listItem.manifestURL?.let {
                 getManifestFile(formSource, it)
             }
+        }
 
+        return formList.zip(manifestFiles).map { (listItem, manifestFile) ->
             val forms = formsRepository.getAllNotDeletedByFormId(listItem.formID)
             val thisFormAlreadyDownloaded = forms.isNotEmpty()
             val isNewerFormVersionAvailable = listItem.hash.let {
@@ -108,9 +115,12 @@ open class ServerFormsDetailsFetcher(
         existingForm: Form,
         newMediaFiles: List<MediaFile>
     ): Boolean {
-        val localMediaFiles = FormUtils.getMediaFiles(existingForm)
+        val localMediaFileHashes = FormUtils.getMediaFiles(existingForm)
+            .mapNotNull { mediaFileHashIndex.getMd5Hash(it) }
+            .toSet()
+
         return newMediaFiles.any {
-            !isMediaFileAlreadyDownloaded(localMediaFiles, it)
+            !isMediaFileAlreadyDownloaded(localMediaFileHashes, it)
         }
     }
 
@@ -119,7 +129,7 @@ open class ServerFormsDetailsFetcher(
     }
 
     private fun isMediaFileAlreadyDownloaded(
-        localMediaFiles: List<File>,
+        localMediaFileHashes: Set<String>,
         newMediaFile: MediaFile
     ): Boolean {
         // TODO Zip files are ignored we should find a way to take them into account too
@@ -127,8 +137,10 @@ open class ServerFormsDetailsFetcher(
             return true
         }
 
-        return localMediaFiles.any {
-            newMediaFile.hash == it.getMd5Hash()
-        }
+        return localMediaFileHashes.contains(newMediaFile.hash)
+    }
+
+    companion object {
+        const val DEFAULT_MAX_CONCURRENT_MANIFEST_FETCHES = 8
     }
 }
@@ -0,0 +1,235 @@
+package org.odk.collect.android.formmanagement.download
+
+import org.odk.collect.async.OngoingWorkListener
+import org.odk.collect.forms.FormSource
+import org.odk.collect.forms.FormSourceException
+import org.odk.collect.forms.MediaFile
+import org.odk.collect.shared.strings.Md5.getMd5Hash
+import timber.log.Timber
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.util.concurrent.locks.ReentrantLock
+
+/**
+ * Downloads media files via [partialDownloadsDir] so that an interrupted download (a dropped
+ * connection or the user cancelling) can be resumed from where it left off next time rather
+ * than starting again from the beginning. Partial downloads are resumed using
+ * [FormSource.fetchMediaFile] with the offset and validator from the previous attempt.
+ *
+ * Partial downloads are named by form so that [removeStalePartialDownloads] can clean up those
+ * that a form's manifest no longer asks for.
+ */
+class ResumableMediaFileDownloader(private val partialDownloadsDir: File) {
+
+    @Throws(FormSourceException::class, IOException::class, InterruptedException::class)
+    fun download(
+        formId: String,
+        mediaFile: MediaFile,
+        formSource: FormSource,
+        destinationFile: File,
+        stateListener: OngoingWorkListener
+    ) {
+        val key = getKey(formId, mediaFile)
+
+        withKeyLock(key) {
+            partialDownloadsDir.mkdirs()
+            val partialFile = File(partialDownloadsDir, "$key$PARTIAL_EXTENSION")
+            val validatorFile = File(partialDownloadsDir, "$key$VALIDATOR_EXTENSION")
+
+            val resumed = downloadToPartialFile(
+                mediaFile,
+                formSource,
+                partialFile,
+                validatorFile,
+                stateListener
+            )
+
+            /**
+             * Manifest hashes aren't always accurate, so we only use them to check resumed
+             * downloads (which could be corrupt if the file changed on the server without the
+             * validator changing) and start again if they don't match.
+             */
+            if (resumed && !partialFile.getMd5Hash().contentEquals(mediaFile.hash)) {
+                Timber.w("Resumed download of %s does not match manifest hash", mediaFile.filename)
+
+                partialFile.delete()
+                validatorFile.delete()
+                downloadToPartialFile(
+                    mediaFile,
+                    formSource,
+                    partialFile,
+                    validatorFile,
+                    stateListener
+                )
+            }
+
+            validatorFile.delete()
+            destinationFile.delete()
+            if (!partialFile.renameTo(destinationFile)) {
+                partialFile.copyTo(destinationFile, overwrite = true)
+                partialFile.delete()
+            }
+        }
+    }
+
+    /**
+     * Deletes partial downloads for [formId] that aren't for one of [mediaFiles] (left behind
+     * when a media file changes on the server before an interrupted download is resumed) and
+     * partial downloads for any form that haven't been written to for
+     * [MAX_PARTIAL_DOWNLOAD_AGE] (like those for forms that are never downloaded again). Partial
+     * downloads that are currently in progress are left alone.
+     */
+    fun removeStalePartialDownloads(formId: String, mediaFiles: List<MediaFile>) {
+        val formPrefix = getFormPrefix(formId)
+        val requestedKeys = mediaFiles.map { getKey(formId, it) }.toSet()
+        val cutoff = System.currentTimeMillis() - MAX_PARTIAL_DOWNLOAD_AGE
+
+        partialDownloadsDir.listFiles()?.forEach { file ->
+            val key = file.name.substringBefore(".")
+            val isStale = (key.startsWith(formPrefix) && !requestedKeys.contains(key)) ||
+                file.lastModified() < cutoff
+
+            if (isStale) {
+                withKeyLock(key, wait = false) {
+                    file.delete()
+                }
+            }
+        }
+    }
+
+    /**
+     * Downloads the rest of [mediaFile] into [partialFile]. Retries (resuming from where the
+     * previous attempt stopped) once if the download fails.
+     *
+     * @return `true` if any part of the file was resumed from a previous attempt
+     */
+    private fun downloadToPartialFile(
+        mediaFile: MediaFile,
+        formSource: FormSource,
+        partialFile: File,
+        validatorFile: File,
+        stateListener: OngoingWorkListener
+    ): Boolean {
+        var resumed = false
+        var attemptCount = 0
+
+        while (true) {
+            attemptCount++
+
+            val validator = if (partialFile.exists() && validatorFile.exists()) {
+                validatorFile.readText()
+            } else {
+                null
+            }
+
+            val offset = if (validator != null) partialFile.length() else 0L
+            val response = try {
+                formSource.fetchMediaFile(mediaFile.downloadUrl, offset, validator)
+            } catch (e: FormSourceException.ServerError) {
+                if (e.statusCode == HTTP_RANGE_NOT_SATISFIABLE && attemptCount < MAX_ATTEMPT_COUNT) {
+                    partialFile.delete()
+                    validatorFile.delete()
+                    continue
+                } else {
+                    throw e
+                }
+            }
+
+            if (response.isPartial) {
+                resumed = true
+            } else {
+                partialFile.delete()
+
+                if (response.validator != null) {
+                    validatorFile.writeText(response.validator!!)
+                } else {
+                    validatorFile.delete()
+                }
+            }
+
+            try {
+                response.inputStream.use { inputStream ->
+                    FileOutputStream(partialFile, true).use { outputStream ->
+                        val buffer = ByteArray(BUFFER_SIZE)
+                        while (true) {
+                            if (stateListener.isCancelled) {
+                                throw InterruptedException()
+                            }
+
+                            val length = inputStream.read(buffer)
+                            if (length == -1) {
+                                break
+                            }
+
+                            outputStream.write(buffer, 0, length)
+                        }
+                    }
+                }
+
+                return resumed
+            } catch (e: IOException) {
+                Timber.w(e)
+
+                if (attemptCount >= MAX_ATTEMPT_COUNT) {
+                    throw e
+                }
+            }
+        }
+    }
+
+    private fun getFormPrefix(formId: String) = "${formId.getMd5Hash()!!}_"
+
+    private fun getKey(formId: String, mediaFile: MediaFile): String {
+        return getFormPrefix(formId) + "${mediaFile.downloadUrl}:${mediaFile.hash}".getMd5Hash()!!
+    }
+
+    /**
+     * Runs [block] while holding the lock for [key]. Locks are only kept in [locks] while they're
+     * in use so that it doesn't grow with every file that's ever been downloaded. If [wait] is
+     * `false`, [block] is skipped when another thread already holds the lock.
+     */
+    private fun withKeyLock(key: String, wait: Boolean = true, block: () -> Unit) {
+        val keyLock = synchronized(locks) {
+            locks.getOrPut(key) { KeyLock() }.also { it.users++ }
+        }
+
+        try {
+            if (wait) {
+                keyLock.lock.lockInterruptibly()
+            } else if (!keyLock.lock.tryLock()) {
+                return
+            }
+
+            try {
+                block()
+            } finally {
+                keyLock.lock.unlock()
+            }
+        } finally {
+            synchronized(locks) {
+                keyLock.users--
+                if (keyLock.users == 0) {
+                    locks.remove(key)
+                }
+            }
+        }
+    }
+
+    private class KeyLock {
+        val lock = ReentrantLock()
+        var users = 0
+    }
+
+    companion object {
+        private const val MAX_ATTEMPT_COUNT = 2
+        private const val BUFFER_SIZE = 16 * 1024
+        private const val HTTP_RANGE_NOT_SATISFIABLE = 416
+        private const val PARTIAL_EXTENSION = ".part"
+        private const val VALIDATOR_EXTENSION = ".validator"
+
+        const val MAX_PARTIAL_DOWNLOAD_AGE = 7L * 24 * 60 * 60 * 1000
+
+        private val locks = mutableMapOf<String, KeyLock>()
+    }
+}
@@ -3,6 +3,7 @@ package org.odk.collect.android.formmanagement.download;
 import static org.odk.collect.android.utilities.FileUtils.interuptablyWriteFile;
 
 import org.jetbrains.annotations.NotNull;
+import org.odk.collect.android.formmanagement.FormDefPrecompiler;
 import org.odk.collect.android.formmanagement.MediaFilesDownloadResult;
 import org.odk.collect.android.formmanagement.metadata.FormMetadata;
 import org.odk.collect.android.formmanagement.metadata.FormMetadataParser;
@@ -18,6 +19,7 @@ import org.odk.collect.forms.Form;
 import org.odk.collect.forms.FormSource;
 import org.odk.collect.forms.FormSourceException;
 import org.odk.collect.forms.FormsRepository;
+import org.odk.collect.forms.MediaFileHashIndex;
 import org.odk.collect.shared.files.FileExt;
 import org.odk.collect.shared.strings.Md5;
 
@@ -44,7 +46,39 @@ public class ServerFormDownloader implements FormDownloader {
     private final EntitiesRepository entitiesRepository;
     private final EntitySource entitySource;
 
+    /**
+     * Forms can be downloaded concurrently, so installing them (which involves picking a file
+     * name in the forms dir) needs to happen one at a time
+     */
+    private final Object installLock = new Object();
+
+    @Nullable
+    private final ResumableMediaFileDownloader resumableMediaFileDownloader;
+
+    @Nullable
+    private final MediaFileHashIndex mediaFileHashIndex;
+
+    @Nullable
+    private final FormDefPrecompiler formDefPrecompiler;
+
     public ServerFormDownloader(FormSource formSource, FormsRepository formsRepository, File cacheDir, String formsDirPath, FormMetadataParser formMetadataParser, Supplier<Long> clock, EntitiesRepository entitiesRepository, EntitySource entitySource) {
+        this(formSource, formsRepository, cacheDir, formsDirPath, formMetadataParser, clock, entitiesRepository, entitySource, null, null);
+    }
+
+    public ServerFormDownloader(FormSource formSource, FormsRepository formsRepository, File cacheDir, String formsDirPath, FormMetadataParser formMetadataParser, Supplier<Long> clock, EntitiesRepository entitiesRepository, EntitySource entitySource, @Nullable File partialDownloadsDir, @Nullable MediaFileHashIndex mediaFileHashIndex) {
+        this(formSource, formsRepository, cacheDir, formsDirPath, formMetadataParser, clock, entitiesRepository, entitySource, partialDownloadsDir, mediaFileHashIndex, null);
+    }
+
+    /**
+     * @param partialDownloadsDir where interrupted media file downloads are kept so that they can
+     *                            be resumed. If {@code null}, media file downloads aren't resumed.
+     * @param mediaFileHashIndex  used to check whether existing media files need to be replaced.
+     *                            If {@code null}, existing media files are hashed every time.
+     * @param formDefPrecompiler  used to parse and cache installed forms in the background so
+     *                            that they open quickly. If {@code null}, forms are parsed the
+     *                            first time they're opened.
+     */
+    public ServerFormDownloader(FormSource formSource, FormsRepository formsRepository, File cacheDir, String formsDirPath, FormMetadataParser formMetadataParser, Supplier<Long> clock, EntitiesRepository entitiesRepository, EntitySource entitySource, @Nullable File partialDownloadsDir, @Nullable MediaFileHashIndex mediaFileHashIndex, @Nullable FormDefPrecompiler formDefPrecompiler) {
         this.formSource = formSource;
         this.cacheDir = cacheDir;
         this.formsDirPath = formsDirPath;
@@ -53,6 +87,9 @@ public class ServerFormDownloader implements FormDownloader {
         this.clock = clock;
         this.entitiesRepository = entitiesRepository;
         this.entitySource = entitySource;
+        this.resumableMediaFileDownloader = partialDownloadsDir != null ? new ResumableMediaFileDownloader(partialDownloadsDir) : null;
+        this.mediaFileHashIndex = mediaFileHashIndex;
+        this.formDefPrecompiler = formDefPrecompiler;
     }
 
     @Override
@@ -102,7 +139,7 @@ public class ServerFormDownloader implements FormDownloader {
 
             // download media files if there are any
             if (fd.getManifest() != null && !fd.getManifest().getMediaFiles().isEmpty()) {
-                mediaFilesDownloadResult = ServerFormUseCases.downloadMediaFiles(fd, formSource, formsRepository, tempMediaPath, tempDir, entitiesRepository, entitySource, stateListener);
+                mediaFilesDownloadResult = ServerFormUseCases.downloadMediaFiles(fd, formSource, formsRepository, tempMediaPath, tempDir, entitiesRepository, entitySource, stateListener, resumableMediaFileDownloader, mediaFileHashIndex);
             } else {
                 mediaFilesDownloadResult = new MediaFilesDownloadResult(false, false);
             }
@@ -144,7 +181,9 @@ public class ServerFormDownloader implements FormDownloader {
         }
 
         try {
-            installEverything(tempMediaPath, fileResult, formMetadata, formsDirPath, mediaFilesDownloadResult);
+            synchronized (installLock) {
+                installEverything(fd.getFormName(), tempMediaPath, fileResult, formMetadata, formsDirPath, mediaFilesDownloadResult);
+            }
         } catch (FormDownloadException.DiskError e) {
             cleanUp(fileResult, tempMediaPath);
             throw e;
@@ -156,14 +195,19 @@ public class ServerFormDownloader implements FormDownloader {
         return submission == null || Validator.isUrlValid(submission);
     }
 
-    private void installEverything(String tempMediaPath, FileResult fileResult, FormMetadata formMetadata, String formsDirPath, MediaFilesDownloadResult mediaFilesDownloadResult) throws FormDownloadException.DiskError {
+    private void installEverything(String formName, String tempMediaPath, FileResult fileResult, FormMetadata formMetadata, String formsDirPath, MediaFilesDownloadResult mediaFilesDownloadResult) throws FormDownloadException.DiskError {
         FormResult formResult;
 
         File formFile;
 
         if (fileResult.isNew()) {
-            // Copy form to forms dir
+            // Copy form to forms dir (picking a new name if another form with the same name was
+            // installed while this one was downloading)
             formFile = new File(formsDirPath, fileResult.file.getName());
+            if (formFile.exists()) {
+                formFile = new File(formsDirPath, getFormFileName(formName, formsDirPath));
+            }
+
             FileUtils.copyFile(fileResult.file, formFile);
         } else {
             formFile = fileResult.file;
@@ -209,6 +253,10 @@ public class ServerFormDownloader implements FormDownloader {
                 throw new FormDownloadException.DiskError();
             }
         }
+
+        if (formDefPrecompiler != null) {
+            formDefPrecompiler.schedule(new File(formResult.form.getFormFilePath()));
+        }
     }
 
     private void cleanUp(FileResult fileResult, String tempMediaPath) {
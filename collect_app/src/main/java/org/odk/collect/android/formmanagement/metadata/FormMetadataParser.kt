@@ -1,60 +1,233 @@
 package org.odk.collect.android.formmanagement.metadata
 
-import org.javarosa.xform.parse.XFormParser
-import org.kxml2.kdom.Element
+import org.javarosa.xform.parse.XFormParseException
+import org.kxml2.io.KXmlParser
+import org.xmlpull.v1.XmlPullParser
+import org.xmlpull.v1.XmlPullParserException
 import java.io.File
+import java.io.IOException
 import java.io.InputStream
 
+/**
+ * Reads [FormMetadata] from a form's XML. This streams through the form rather than building a
+ * DOM for it and only looks at the parts of the form it needs, so that large secondary instances
+ * (which are skipped over) and the body (which is only read when the form has geopoint binds)
+ * don't slow it down or use up memory.
+ */
 object FormMetadataParser {
     @JvmStatic
     fun readMetadata(formFile: File): FormMetadata {
-        return readMetadata(formFile.inputStream())
+        return formFile.inputStream().use { readMetadata(it) }
     }
 
     @JvmStatic
     fun readMetadata(formFile: InputStream): FormMetadata {
-        val doc = XFormParser.getXMLDocument(formFile.reader())
-        val head = doc.getRootElement().getElement(null, "head")
-        val model = head.getElement(null, "model")
-        val body = doc.getRootElement().getElement(null, "body")
-        val title = head.getElement(null, "title").getChild(0).toString()
-
-        val modelElements = getChildren(model)
-        val mainInstance = modelElements.first { it.name == "instance" }
-        val mainInstanceRoot = getChildren(mainInstance).first()
-        val submission = modelElements.firstOrNull { it.name == "submission" }
-
-        val id = mainInstanceRoot.getAttributeValue(null, "id")
-        val version = mainInstanceRoot.getAttributeValue(null, "version")
-        val submissionUri = submission?.getAttributeValue(null, "action")
-        val base64RsaPublicKey = submission?.getAttributeValue(null, "base64RsaPublicKey")
-        val autoDelete = submission?.getAttributeValue(null, "auto-delete")
-        val autoSend = submission?.getAttributeValue(null, "auto-send")
-        val geometryXPath = getFirstGeopointXPath(model, mainInstanceRoot, body)
-        val isEntityForm = model.getAttributeValue(null, "entities-version") != null
+        return parse(formFile) { readHtml(it) }
+    }
+
+    /**
+     * Returns `true` if any of the form's secondary instances are loaded from somewhere else
+     * (`<instance src="...">`) rather than being defined in the form itself. Only the model is
+     * read.
+     */
+    @JvmStatic
+    fun hasExternalSecondaryInstances(formFile: File): Boolean {
+        return formFile.inputStream().use { input ->
+            parse(input) { parser ->
+                parser.forEachChild {
+                    if (parser.name != "head") {
+                        // The head (and so the model) always comes before anything else
+                        return@parse false
+                    }
+
+                    parser.forEachChild {
+                        if (parser.name == "model") {
+                            parser.forEachChild {
+                                if (parser.name == "instance" && parser.getAttributeValue(null, "src") != null) {
+                                    return@parse true
+                                }
+
+                                parser.skipElement()
+                            }
+
+                            return@parse false
+                        }
+
+                        parser.skipElement()
+                    }
+                }
+
+                false
+            }
+        }
+    }
+
+    private inline fun <T> parse(input: InputStream, block: (XmlPullParser) -> T): T {
+        val parser = KXmlParser()
+
+        try {
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true)
+            parser.setInput(input.reader())
+
+            while (parser.next() != XmlPullParser.START_TAG) {
+                if (parser.eventType == XmlPullParser.END_DOCUMENT) {
+                    throw XFormParseException("Form has no root element")
+                }
+            }
+
+            return block(parser)
+        } catch (e: XmlPullParserException) {
+            throw XFormParseException(e.message)
+        } catch (e: IOException) {
+            throw XFormParseException(e.message)
+        }
+    }
+
+    private fun readHtml(parser: XmlPullParser): FormMetadata {
+        var title: String? = null
+        var model: Model? = null
+
+        parser.forEachChild {
+            when (parser.name) {
+                "head" -> parser.forEachChild {
+                    when (parser.name) {
+                        "title" -> {
+                            title = parser.readText()
+                        }
+
+                        "model" -> {
+                            model = readModel(parser)
+                        }
+
+                        else -> parser.skipElement()
+                    }
+                }
+
+                "body" -> {
+                    val repeatXPaths = if (model?.geopointXPaths.isNullOrEmpty()) {
+                        emptyList()
+                    } else {
+                        readRepeatXPaths(parser)
+                    }
+
+                    // Nothing after the body is needed
+                    return createMetadata(title, model, repeatXPaths)
+                }
+
+                else -> parser.skipElement()
+            }
+        }
+
+        return createMetadata(title, model, emptyList())
+    }
+
+    private fun createMetadata(title: String?, model: Model?, repeatXPaths: List<String>): FormMetadata {
+        if (title == null) {
+            throw XFormParseException("Form has no title")
+        }
+
+        if (model == null) {
+            throw XFormParseException("Form has no model")
+        }
+
+        val mainInstanceRoot = model.mainInstanceRoot
+            ?: throw XFormParseException("Form has no main instance")
 
         return FormMetadata(
             title,
-            id,
-            if (version.isNullOrBlank()) null else version,
-            submissionUri,
-            base64RsaPublicKey,
-            autoDelete,
-            autoSend,
-            geometryXPath,
-            isEntityForm
+            mainInstanceRoot.id,
+            if (mainInstanceRoot.version.isNullOrBlank()) null else mainInstanceRoot.version,
+            model.submissionUri,
+            model.base64RsaPublicKey,
+            model.autoDelete,
+            model.autoSend,
+            getFirstGeopointXPath(model.geopointXPaths, repeatXPaths, mainInstanceRoot.element),
+            model.isEntityForm
         )
     }
 
-    private fun getChildren(element: Element): List<Element> {
-        return 0.until(element.childCount).fold(emptyList()) { list, i ->
-            val child = element.getElement(i)
-            if (child != null) {
-                list + listOf(child)
+    private fun readModel(parser: XmlPullParser): Model {
+        val model = Model(isEntityForm = parser.getAttributeValue(null, "entities-version") != null)
+        var submissionRead = false
+
+        parser.forEachChild {
+            when (parser.name) {
+                "instance" -> {
+                    if (model.mainInstanceRoot == null) {
+                        model.mainInstanceRoot = readMainInstance(parser)
+                    } else {
+                        parser.skipElement()
+                    }
+                }
+
+                "submission" -> {
+                    if (!submissionRead) {
+                        model.submissionUri = parser.getAttributeValue(null, "action")
+                        model.base64RsaPublicKey = parser.getAttributeValue(null, "base64RsaPublicKey")
+                        model.autoDelete = parser.getAttributeValue(null, "auto-delete")
+                        model.autoSend = parser.getAttributeValue(null, "auto-send")
+                        submissionRead = true
+                    }
+
+                    parser.skipElement()
+                }
+
+                "bind" -> {
+                    if (parser.getAttributeValue(null, "type") == "geopoint") {
+                        model.geopointXPaths.add(parser.getAttributeValue(null, "nodeset"))
+                    }
+
+                    parser.skipElement()
+                }
+
+                else -> parser.skipElement()
+            }
+        }
+
+        return model
+    }
+
+    private fun readMainInstance(parser: XmlPullParser): MainInstanceRoot? {
+        var mainInstanceRoot: MainInstanceRoot? = null
+
+        parser.forEachChild {
+            if (mainInstanceRoot == null) {
+                val id = parser.getAttributeValue(null, "id")
+                val version = parser.getAttributeValue(null, "version")
+                mainInstanceRoot = MainInstanceRoot(id, version, readInstanceElement(parser))
             } else {
-                list
+                parser.skipElement()
+            }
+        }
+
+        return mainInstanceRoot
+    }
+
+    /**
+     * Reads the names of an instance element and its descendants (ignoring any values)
+     */
+    private fun readInstanceElement(parser: XmlPullParser): InstanceElement {
+        val element = InstanceElement(parser.name)
+        parser.forEachChild {
+            element.children.add(readInstanceElement(parser))
+        }
+
+        return element
+    }
+
+    private fun readRepeatXPaths(
+        parser: XmlPullParser,
+        repeatXPaths: MutableList<String> = mutableListOf()
+    ): List<String> {
+        parser.forEachChild {
+            if (parser.name == "repeat") {
+                repeatXPaths.add(parser.getAttributeValue(null, "nodeset"))
             }
+
+            readRepeatXPaths(parser, repeatXPaths)
         }
+
+        return repeatXPaths
     }
 
     /**
@@ -69,48 +242,25 @@ object FormMetadataParser {
      * However, in practice, this is typically the case.
      *
      */
-    private fun getFirstGeopointXPath(model: Element, mainInstanceRoot: Element, body: Element): String? {
-        val geopointXPaths = getGeopointXPaths(model)
+    private fun getFirstGeopointXPath(
+        geopointXPaths: List<String>,
+        repeatXPaths: List<String>,
+        mainInstanceRoot: InstanceElement
+    ): String? {
         return if (geopointXPaths.isEmpty()) {
             null
         } else {
-            val repeatXPaths = getRepeatXPaths(body)
             getFirstPrimaryInstanceGeopointXPath(geopointXPaths, repeatXPaths, mainInstanceRoot, null)
         }
     }
 
-    private fun getGeopointXPaths(model: Element): List<String> {
-        val geopointXPaths = mutableListOf<String>()
-        for (position in 0 until model.childCount) {
-            val child = model.getElement(position) ?: continue
-            if (child.name == "bind" && child.getAttributeValue(null, "type") == "geopoint") {
-                geopointXPaths.add(child.getAttributeValue(null, "nodeset"))
-            }
-        }
-        return geopointXPaths
-    }
-
-    private fun getRepeatXPaths(body: Element): List<String> {
-        val repeatXPaths = mutableListOf<String>()
-        for (position in 0 until body.childCount) {
-            val child = body.getElement(position) ?: continue
-            if (child.name == "repeat") {
-                repeatXPaths.add(child.getAttributeValue(null, "nodeset"))
-            } else if (child.childCount > 0) {
-                repeatXPaths.addAll(getRepeatXPaths(child))
-            }
-        }
-        return repeatXPaths
-    }
-
     private fun getFirstPrimaryInstanceGeopointXPath(
         geopointXPaths: List<String>,
         repeatXPaths: List<String>,
-        parentRoot: Element,
+        parentRoot: InstanceElement,
         parentXPath: String?
     ): String? {
-        for (position in 0 until parentRoot.childCount) {
-            val child = parentRoot.getElement(position) ?: continue
+        for (child in parentRoot.children) {
             val currentXPath = if (parentXPath == null) {
                 "/${parentRoot.name}/${child.name}"
             } else {
@@ -118,7 +268,7 @@ object FormMetadataParser {
             }
             if (geopointXPaths.contains(currentXPath)) {
                 return currentXPath
-            } else if (child.childCount > 0 && !repeatXPaths.contains(currentXPath)) {
+            } else if (child.children.isNotEmpty() && !repeatXPaths.contains(currentXPath)) {
                 val nestedXPath = getFirstPrimaryInstanceGeopointXPath(geopointXPaths, repeatXPaths, child, currentXPath)
                 if (nestedXPath != null) {
                     return nestedXPath
@@ -127,4 +277,58 @@ object FormMetadataParser {
         }
         return null
     }
+
+    /**
+     * Calls [block] for each child element of the current element with the parser positioned
+     * at the child's start tag. [block] must consume the child (up to and including its end tag)
+     * before returning.
+     */
+    private inline fun XmlPullParser.forEachChild(block: () -> Unit) {
+        val depth = this.depth
+
+        while (true) {
+            when (next()) {
+                XmlPullParser.START_TAG -> block()
+                XmlPullParser.END_TAG -> if (this.depth == depth) return
+                XmlPullParser.END_DOCUMENT -> throw XFormParseException("Unexpected end of form")
+            }
+        }
+    }
+
+    private fun XmlPullParser.skipElement() {
+        forEachChild { skipElement() }
+    }
+
+    /**
+     * Returns the text content of the current element (ignoring any child elements) or `null`
+     * if it doesn't have any
+     */
+    private fun XmlPullParser.readText(): String? {
+        val depth = this.depth
+        var text: StringBuilder? = null
+
+        while (true) {
+            when (next()) {
+                XmlPullParser.TEXT -> (text ?: StringBuilder().also { text = it }).append(this.text)
+                XmlPullParser.START_TAG -> skipElement()
+                XmlPullParser.END_TAG -> if (this.depth == depth) return text?.toString()
+                XmlPullParser.END_DOCUMENT -> throw XFormParseException("Unexpected end of form")
+            }
+        }
+    }
+
+    private class Model(val isEntityForm: Boolean) {
+        var mainInstanceRoot: MainInstanceRoot? = null
+        var submissionUri: String? = null
+        var base64RsaPublicKey: String? = null
+        var autoDelete: String? = null
+        var autoSend: String? = null
+        val geopointXPaths = mutableListOf<String>()
+    }
+
+    private class MainInstanceRoot(val id: String?, val version: String?, val element: InstanceElement)
+
+    private class InstanceElement(val name: String) {
+        val children = mutableListOf<InstanceElement>()
+    }
 }
@@ -48,6 +48,7 @@ import org.odk.collect.android.formentry.AppStateFormSessionRepository;
 import org.odk.collect.android.formentry.FormSessionRepository;
 import org.odk.collect.android.formlists.blankformlist.BlankFormListViewModel;
 import org.odk.collect.android.formmanagement.CollectFormEntryControllerFactory;
+import org.odk.collect.android.formmanagement.FormDefPrecompiler;
 import org.odk.collect.android.formmanagement.FormsDataService;
 import org.odk.collect.android.formmanagement.OpenRosaClientProvider;
 import org.odk.collect.android.formmanagement.ServerFormsDetailsFetcher;
@@ -81,11 +82,13 @@ import org.odk.collect.android.utilities.ContentUriProvider;
 import org.odk.collect.android.utilities.ExternalAppIntentProvider;
 import org.odk.collect.android.utilities.FileProvider;
 import org.odk.collect.android.utilities.FormsRepositoryProvider;
+import org.odk.collect.android.utilities.MediaFileHashIndexProvider;
 import org.odk.collect.android.utilities.ImageCompressionController;
 import org.odk.collect.android.utilities.InstancesRepositoryProvider;
 import org.odk.collect.android.utilities.MediaUtils;
 import org.odk.collect.android.utilities.SavepointsRepositoryProvider;
 import org.odk.collect.android.utilities.SoftKeyboardController;
+import org.odk.collect.android.utilities.SubmissionTargetCacheProvider;
 import org.odk.collect.android.utilities.WebCredentialsUtils;
 import org.odk.collect.android.version.VersionInformation;
 import org.odk.collect.androidshared.bitmap.ImageCompressor;
@@ -328,10 +331,10 @@ public class AppDependencyModule {
     }
 
     @Provides
-    public ServerFormsDetailsFetcher providesServerFormDetailsFetcher(FormsRepositoryProvider formsRepositoryProvider, OpenRosaClientProvider formSourceProvider, ProjectsDataService projectsDataService) {
+    public ServerFormsDetailsFetcher providesServerFormDetailsFetcher(FormsRepositoryProvider formsRepositoryProvider, OpenRosaClientProvider formSourceProvider, MediaFileHashIndexProvider mediaFileHashIndexProvider, ProjectsDataService projectsDataService) {
         Project.Saved currentProject = projectsDataService.requireCurrentProject();
         FormsRepository formsRepository = formsRepositoryProvider.create(currentProject.getUuid());
-        return new ServerFormsDetailsFetcher(formsRepository, formSourceProvider.create(currentProject.getUuid()));
+        return new ServerFormsDetailsFetcher(formsRepository, formSourceProvider.create(currentProject.getUuid()), mediaFileHashIndexProvider.create(currentProject.getUuid()));
     }
 
     @Provides
@@ -454,6 +457,16 @@ public class AppDependencyModule {
         return new SavepointsRepositoryProvider(context, storagePathProvider);
     }
 
+    @Provides
+    public MediaFileHashIndexProvider providesMediaFileHashIndexProvider(Context context, StoragePathProvider storagePathProvider) {
+        return new MediaFileHashIndexProvider(context, storagePathProvider);
+    }
+
+    @Provides
+    public SubmissionTargetCacheProvider providesSubmissionTargetCacheProvider(StoragePathProvider storagePathProvider) {
+        return new SubmissionTargetCacheProvider(storagePathProvider);
+    }
+
     @Provides
     public ProjectPreferencesViewModel.Factory providesProjectPreferencesViewModel(AdminPasswordProvider adminPasswordProvider) {
         return new ProjectPreferencesViewModel.Factory(adminPasswordProvider);
@@ -486,7 +499,7 @@ public class AppDependencyModule {
 
     @Provides
     public FormsDataService providesFormsUpdater(Application application, Notifier notifier, ProjectDependencyModuleFactory projectDependencyModuleFactory) {
-        return new FormsDataService(getState(application), notifier, projectDependencyModuleFactory, System::currentTimeMillis);
+        return new FormsDataService(getState(application), notifier, projectDependencyModuleFactory, FormDefPrecompiler.LOW_PRIORITY_EXECUTOR, System::currentTimeMillis);
     }
 
     @Provides
@@ -7,7 +7,9 @@ import org.odk.collect.android.storage.StoragePathProvider
 import org.odk.collect.android.utilities.ChangeLockProvider
 import org.odk.collect.android.utilities.FormsRepositoryProvider
 import org.odk.collect.android.utilities.InstancesRepositoryProvider
+import org.odk.collect.android.utilities.MediaFileHashIndexProvider
 import org.odk.collect.android.utilities.SavepointsRepositoryProvider
+import org.odk.collect.android.utilities.SubmissionTargetCacheProvider
 import org.odk.collect.projects.ProjectDependencyFactory
 import org.odk.collect.settings.SettingsProvider
 import javax.inject.Inject
@@ -21,6 +23,8 @@ class ProjectDependencyModuleFactory @Inject constructor(
     private val openRosaClientProvider: OpenRosaClientProvider,
     private val savepointsRepositoryProvider: SavepointsRepositoryProvider,
     private val entitiesRepositoryProvider: EntitiesRepositoryProvider,
+    private val mediaFileHashIndexProvider: MediaFileHashIndexProvider,
+    private val submissionTargetCacheProvider: SubmissionTargetCacheProvider
 ) : ProjectDependencyFactory<ProjectDependencyModule> {
     override fun create(projectId: String): ProjectDependencyModule {
         return ProjectDependencyModule(
@@ -33,7 +37,9 @@ class ProjectDependencyModuleFactory @Inject constructor(
             { openRosaClientProvider.create(projectId) },
             savepointsRepositoryProvider,
             entitiesRepositoryProvider,
-            { openRosaClientProvider.create(projectId) }
+            { openRosaClientProvider.create(projectId) },
+            mediaFileHashIndexProvider,
+            submissionTargetCacheProvider
         )
     }
 }
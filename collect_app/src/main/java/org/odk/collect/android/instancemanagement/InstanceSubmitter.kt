@@ -1,11 +1,13 @@
 package org.odk.collect.android.instancemanagement
 
+import android.net.Uri
 import org.odk.collect.analytics.Analytics
 import org.odk.collect.android.analytics.AnalyticsEvents
 import org.odk.collect.android.application.Collect
 import org.odk.collect.android.upload.FormUploadException
 import org.odk.collect.android.upload.InstanceServerUploader
 import org.odk.collect.android.upload.InstanceUploader
+import org.odk.collect.android.upload.SubmissionTargetCache
 import org.odk.collect.android.utilities.FormsRepositoryProvider
 import org.odk.collect.android.utilities.InstanceAutoDeleteChecker
 import org.odk.collect.android.utilities.InstancesRepositoryProvider
@@ -17,37 +19,87 @@ import org.odk.collect.metadata.PropertyManager
 import org.odk.collect.metadata.PropertyManager.Companion.PROPMGR_DEVICE_ID
 import org.odk.collect.openrosa.http.OpenRosaHttpInterface
 import org.odk.collect.settings.keys.ProjectKeys
+import org.odk.collect.shared.collections.CollectionExtensions.mapConcurrently
 import org.odk.collect.shared.settings.Settings
 import timber.log.Timber
+import java.util.concurrent.Semaphore
 
 class InstanceSubmitter(
     private val formsRepository: FormsRepository,
     private val generalSettings: Settings,
     private val propertyManager: PropertyManager,
     private val httpInterface: OpenRosaHttpInterface,
-    private val instancesRepository: InstancesRepository
+    private val instancesRepository: InstancesRepository,
+    private val submissionTargetCache: SubmissionTargetCache? = null,
+    private val maxConcurrentSubmissions: Int = DEFAULT_MAX_CONCURRENT_SUBMISSIONS,
+    private val maxConcurrentSubmissionsPerHost: Int = DEFAULT_MAX_CONCURRENT_SUBMISSIONS_PER_HOST
 ) {
 
+    /**
+     * Submissions for the same form are sent one after another in the order they were
+     * finalized, but submissions for different forms are sent at the same time (with at most
+     * [maxConcurrentSubmissions] in flight overall and [maxConcurrentSubmissionsPerHost] in
+     * flight to any one server).
+     */
     fun submitInstances(toUpload: List<Instance>): Map<Instance, FormUploadException?> {
-        val result = mutableMapOf<Instance, FormUploadException?>()
         val deviceId = propertyManager.getSingularProperty(PROPMGR_DEVICE_ID)
 
         val uploader = setUpODKUploader()
 
-        for (instance in toUpload.sortedBy { it.lastStatusChangeDate }) {
-            try {
-                val destinationUrl = uploader.getUrlToSubmitTo(instance, deviceId, null, null)
-                uploader.uploadOneSubmission(instance, destinationUrl)
-                result[instance] = null
-
-                deleteInstance(instance)
-                logUploadedForm(instance)
-            } catch (e: FormUploadException) {
-                Timber.d(e)
-                result[instance] = e
+        val submissionsByForm = toUpload
+            .sortedBy { it.lastStatusChangeDate }
+            .groupBy { it.formId }
+            .values.toList()
+
+        val hostPermits = mutableMapOf<String?, Semaphore>()
+        val results = submissionsByForm.mapConcurrently(maxConcurrentSubmissions) { formSubmissions ->
+            formSubmissions.map { instance ->
+                val permits = synchronized(hostPermits) {
+                    hostPermits.getOrPut(getHost(uploader, instance, deviceId)) {
+                        Semaphore(maxConcurrentSubmissionsPerHost)
+                    }
+                }
+
+                permits.acquire()
+                try {
+                    Pair(instance, submitInstance(uploader, instance, deviceId))
+                } finally {
+                    permits.release()
+                }
             }
+        }.flatten().toMap()
+
+        return toUpload.associateWith { results[it] }
+    }
+
+    /**
+     * Only used to limit the number of submissions to each server, so any problem working out
+     * the URL is left to be reported when the instance is actually submitted.
+     */
+    private fun getHost(uploader: InstanceUploader, instance: Instance, deviceId: String?): String? {
+        return try {
+            Uri.parse(uploader.getUrlToSubmitTo(instance, deviceId, null, null)).host
+        } catch (e: Exception) {
+            null
+        }
+    }
+
+    private fun submitInstance(
+        uploader: InstanceUploader,
+        instance: Instance,
+        deviceId: String?
+    ): FormUploadException? {
+        return try {
+            val destinationUrl = uploader.getUrlToSubmitTo(instance, deviceId, null, null)
+            uploader.uploadOneSubmission(instance, destinationUrl)
+
+            deleteInstance(instance)
+            logUploadedForm(instance)
+            null
+        } catch (e: FormUploadException) {
+            Timber.d(e)
+            e
         }
-        return result
     }
 
     private fun setUpODKUploader(): InstanceUploader {
@@ -55,7 +107,8 @@ class InstanceSubmitter(
             httpInterface,
             WebCredentialsUtils(generalSettings),
             generalSettings,
-            instancesRepository
+            instancesRepository,
+            submissionTargetCache
         )
     }
 
@@ -78,4 +131,9 @@ class InstanceSubmitter(
 
         Analytics.log(AnalyticsEvents.SUBMISSION, "HTTP auto", value)
     }
+
+    companion object {
+        const val DEFAULT_MAX_CONCURRENT_SUBMISSIONS = 8
+        const val DEFAULT_MAX_CONCURRENT_SUBMISSIONS_PER_HOST = 4
+    }
 }
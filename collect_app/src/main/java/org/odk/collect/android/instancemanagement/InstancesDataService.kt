@@ -208,7 +208,8 @@ class InstancesDataService(
             projectDependencyModule.generalSettings,
             propertyManager,
             httpInterface,
-            projectDependencyModule.instancesRepository
+            projectDependencyModule.instancesRepository,
+            projectDependencyModule.submissionTargetCache
         )
 
         return projectDependencyModule.instancesLock.withLock { acquiredLock: Boolean ->
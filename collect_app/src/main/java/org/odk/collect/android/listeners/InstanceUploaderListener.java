@@ -26,5 +26,13 @@ public interface InstanceUploaderListener {
 
     void progressUpdate(int progress, int total);
 
+    /**
+     * Like {@link #progressUpdate(int, int)}, but also includes how much of the current
+     * submission has been sent so far.
+     */
+    default void progressUpdate(int progress, int total, int percentSent) {
+        progressUpdate(progress, total);
+    }
+
     void authRequest(Uri url, HashMap<String, String> doneSoFar);
 }
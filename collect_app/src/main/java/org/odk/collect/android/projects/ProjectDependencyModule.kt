@@ -1,11 +1,13 @@
 package org.odk.collect.android.projects
 
 import org.odk.collect.android.storage.StoragePaths
+import org.odk.collect.android.upload.SubmissionTargetCache
 import org.odk.collect.android.utilities.ChangeLocks
 import org.odk.collect.entities.server.EntitySource
 import org.odk.collect.entities.storage.EntitiesRepository
 import org.odk.collect.forms.FormSource
 import org.odk.collect.forms.FormsRepository
+import org.odk.collect.forms.MediaFileHashIndex
 import org.odk.collect.forms.instances.InstancesRepository
 import org.odk.collect.forms.savepoints.SavepointsRepository
 import org.odk.collect.projects.ProjectDependencyFactory
@@ -25,7 +27,9 @@ data class ProjectDependencyModule(
     private val formSourceFactory: ProjectDependencyFactory<FormSource>,
     private val savepointsRepositoryFactory: ProjectDependencyFactory<SavepointsRepository>,
     private val entitiesRepositoryFactory: ProjectDependencyFactory<EntitiesRepository>,
-    private val entitySourceFactory: ProjectDependencyFactory<EntitySource>
+    private val entitySourceFactory: ProjectDependencyFactory<EntitySource>,
+    private val mediaFileHashIndexFactory: ProjectDependencyFactory<MediaFileHashIndex>,
+    private val submissionTargetCacheFactory: ProjectDependencyFactory<SubmissionTargetCache>
 ) {
     val generalSettings by lazy { settingsFactory.create(projectId) }
     val formsRepository by lazy { formsRepositoryFactory.create(projectId) }
@@ -40,4 +44,6 @@ data class ProjectDependencyModule(
     val rootDir by lazy { storagePathsFactory.create(projectId).rootDir }
     val instancesDir by lazy { storagePathsFactory.create(projectId).instancesDir }
     val entitySource by lazy { entitySourceFactory.create(projectId) }
+    val mediaFileHashIndex by lazy { mediaFileHashIndexFactory.create(projectId) }
+    val submissionTargetCache by lazy { submissionTargetCacheFactory.create(projectId) }
 }
@@ -0,0 +1,194 @@
+package org.odk.collect.android.savepoints
+
+import org.javarosa.core.model.data.UncastData
+import org.javarosa.core.model.instance.TreeElement
+import org.javarosa.core.model.instance.TreeReference
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.EOFException
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+
+/**
+ * An append-only log of the changes made to a form's main instance since its savepoint file
+ * (the "checkpoint") was last written. This means each savepoint only needs to write what's
+ * changed rather than the whole instance. Changes are recorded against a flattened [snapshot]
+ * of the instance, where each element (and attribute) is identified by its path and mapped to
+ * its value ("" if it doesn't have one). A `null` value means the element has been removed.
+ */
+class SavepointJournal(private val file: File) {
+
+    fun exists(): Boolean = file.exists()
+
+    fun length(): Long = file.length()
+
+    fun delete() {
+        file.delete()
+    }
+
+    fun append(changes: Map<String, String?>) {
+        DataOutputStream(BufferedOutputStream(FileOutputStream(file, true))).use { output ->
+            output.writeInt(changes.size)
+            changes.forEach { (key, value) ->
+                output.writeString(key)
+                output.writeBoolean(value != null)
+                if (value != null) {
+                    output.writeString(value)
+                }
+            }
+        }
+    }
+
+    /**
+     * Replays the journal onto [root] (the root of the instance read from the checkpoint).
+     * Changes are applied in the batches they were appended in, and a batch that was only partly
+     * written (because the app was killed while it was being appended) is ignored.
+     */
+    fun applyTo(root: TreeElement) {
+        if (!file.exists()) {
+            return
+        }
+
+        DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+            while (true) {
+                val changes = try {
+                    (0 until input.readInt()).map {
+                        val key = input.readString()
+                        val value = if (input.readBoolean()) input.readString() else null
+                        Pair(key, value)
+                    }
+                } catch (e: EOFException) {
+                    break
+                }
+
+                changes.forEach { (key, value) -> applyChange(root, key, value) }
+            }
+        }
+    }
+
+    private fun applyChange(root: TreeElement, key: String, value: String?) {
+        val attributeStart = key.indexOf(ATTRIBUTE_SEPARATOR)
+        val elementPath = if (attributeStart == -1) key else key.substring(0, attributeStart)
+
+        if (attributeStart != -1) {
+            if (value != null) {
+                val element = findElement(root, elementPath, true)!!
+                val (namespace, name) = parseAttribute(key.substring(attributeStart + ATTRIBUTE_SEPARATOR.length))
+                element.setAttribute(namespace, name, value)
+            }
+        } else if (value == null) {
+            val element = findElement(root, elementPath, false)
+            (element?.parent as? TreeElement)?.removeChild(element)
+        } else {
+            val element = findElement(root, elementPath, true)!!
+            if (value.isNotEmpty()) {
+                element.setValue(UncastData(value))
+            } else if (element.isLeaf) {
+                element.setValue(null)
+            }
+        }
+    }
+
+    private fun findElement(root: TreeElement, path: String, create: Boolean): TreeElement? {
+        var element = root
+        for (segment in path.split(PATH_SEPARATOR)) {
+            val multiplicityStart = segment.lastIndexOf('[')
+            val name = segment.substring(0, multiplicityStart)
+            val multiplicity = segment.substring(multiplicityStart + 1, segment.length - 1).toInt()
+
+            element = element.getChild(name, multiplicity) ?: if (create) {
+                TreeElement(name, multiplicity).also { element.addChild(it) }
+            } else {
+                return null
+            }
+        }
+
+        return element
+    }
+
+    private fun parseAttribute(attribute: String): Pair<String?, String> {
+        return if (attribute.startsWith("{")) {
+            val namespaceEnd = attribute.indexOf('}')
+            Pair(attribute.substring(1, namespaceEnd), attribute.substring(namespaceEnd + 1))
+        } else {
+            Pair(null, attribute)
+        }
+    }
+
+    companion object {
+
+        private const val PATH_SEPARATOR = "/"
+        private const val ATTRIBUTE_SEPARATOR = "/@"
+
+        /**
+         * Flattens the descendants of [root] (ignoring repeat templates) into a map of paths to
+         * values
+         */
+        @JvmStatic
+        fun snapshot(root: TreeElement): Map<String, String> {
+            return HashMap<String, String>().also { addToSnapshot(root, null, it) }
+        }
+
+        /**
+         * @return the changes needed to get from [previous] to [current]
+         */
+        @JvmStatic
+        fun diff(previous: Map<String, String>, current: Map<String, String>): Map<String, String?> {
+            val changes = LinkedHashMap<String, String?>()
+
+            current.forEach { (key, value) ->
+                if (previous[key] != value) {
+                    changes[key] = value
+                }
+            }
+
+            previous.keys.forEach { key ->
+                if (!current.containsKey(key)) {
+                    changes[key] = null
+                }
+            }
+
+            return changes
+        }
+
+        private fun addToSnapshot(element: TreeElement, path: String?, snapshot: MutableMap<String, String>) {
+            for (i in 0 until element.numChildren) {
+                val child = element.getChildAt(i)
+                if (child.mult == TreeReference.INDEX_TEMPLATE) {
+                    continue
+                }
+
+                val childPath = "${if (path == null) "" else path + PATH_SEPARATOR}${child.name}[${child.mult}]"
+                snapshot[childPath] = child.value?.uncast()?.string ?: ""
+
+                for (j in 0 until child.attributeCount) {
+                    val namespace = child.getAttributeNamespace(j)
+                    val name = if (namespace.isNullOrEmpty()) {
+                        child.getAttributeName(j)
+                    } else {
+                        "{$namespace}${child.getAttributeName(j)}"
+                    }
+
+                    snapshot["$childPath$ATTRIBUTE_SEPARATOR$name"] = child.getAttributeValue(j) ?: ""
+                }
+
+                addToSnapshot(child, childPath, snapshot)
+            }
+        }
+
+        private fun DataOutputStream.writeString(value: String) {
+            val bytes = value.toByteArray(Charsets.UTF_8)
+            writeInt(bytes.size)
+            write(bytes)
+        }
+
+        private fun DataInputStream.readString(): String {
+            val bytes = ByteArray(readInt())
+            readFully(bytes)
+            return String(bytes, Charsets.UTF_8)
+        }
+    }
+}
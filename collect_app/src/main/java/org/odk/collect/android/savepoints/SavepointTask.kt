@@ -8,6 +8,7 @@ import org.odk.collect.forms.savepoints.SavepointsRepository
 import org.odk.collect.shared.files.FileExt.saveToFile
 import timber.log.Timber
 import java.io.File
+import java.lang.ref.WeakReference
 
 class SavepointTask(
     private var listener: SavepointListener?,
@@ -31,9 +32,11 @@ class SavepointTask(
             val savepointFile = File(cacheDir, "${formController.getInstanceFile()!!.name}.save")
             val savepoint = Savepoint(formDbId, instanceDbId, savepointFile.absolutePath, formController.getInstanceFile()!!.absolutePath)
 
-            if (priority == lastPriorityUsed) {
-                savepointFile.saveToFile(formController.getFilledInFormXml().payloadStream)
-                savepointsRepository.save(savepoint)
+            synchronized(lock) {
+                if (priority == lastPriorityUsed) {
+                    writeSavepoint(savepoint, savepointFile)
+                    savepointsRepository.save(savepoint)
+                }
             }
 
             null
@@ -43,6 +46,36 @@ class SavepointTask(
         }
     }
 
+    /**
+     * Only appends what's changed since the last savepoint to the savepoint's journal unless
+     * this is the first savepoint for this form session (or the savepoint file has been deleted
+     * since) in which case the whole instance is written. The instance is also written again
+     * once the journal is bigger than it so that the journal doesn't grow forever.
+     */
+    private fun writeSavepoint(savepoint: Savepoint, savepointFile: File) {
+        val journal = SavepointJournal(File(savepoint.journalFilePath))
+        val snapshot = SavepointJournal.snapshot(formController.getFormDef()!!.mainInstance.root)
+        val previousSnapshot = lastSnapshot?.takeIf {
+            it.formController.get() === formController && it.savepointFilePath == savepointFile.absolutePath
+        }?.snapshot
+
+        if (previousSnapshot == null || !savepointFile.exists() || journal.length() > savepointFile.length()) {
+            // Get rid of the journal first so it can never be replayed onto a newer instance
+            journal.delete()
+            savepointFile.saveToFile(formController.getFilledInFormXml().payloadStream)
+        } else {
+            val changes = SavepointJournal.diff(previousSnapshot, snapshot)
+            if (changes.isNotEmpty()) {
+                journal.append(changes)
+
+                // The savepoint file's modified date is used as the date of the savepoint
+                savepointFile.setLastModified(System.currentTimeMillis())
+            }
+        }
+
+        lastSnapshot = Snapshot(WeakReference(formController), savepointFile.absolutePath, snapshot)
+    }
+
     override fun onPostExecute(result: String?) {
         if (result != null) {
             listener?.onSavePointError(result)
@@ -54,8 +87,17 @@ class SavepointTask(
 
     override fun onCancelled() = Unit
 
+    private class Snapshot(
+        val formController: WeakReference<FormController>,
+        val savepointFilePath: String,
+        val snapshot: Map<String, String>
+    )
+
     companion object {
         private var lastPriorityUsed: Int = 0
+
+        private val lock = Any()
+        private var lastSnapshot: Snapshot? = null
     }
 }
 
@@ -23,6 +23,7 @@ import android.database.SQLException;
 import android.net.Uri;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.opencsv.CSVReader;
 import com.opencsv.exceptions.CsvValidationException;
@@ -49,6 +50,7 @@ import org.odk.collect.android.formentry.FormEntryUseCases;
 import org.odk.collect.android.javarosawrapper.FormController;
 import org.odk.collect.android.javarosawrapper.JavaRosaFormController;
 import org.odk.collect.android.listeners.FormLoaderListener;
+import org.odk.collect.android.savepoints.SavepointJournal;
 import org.odk.collect.android.utilities.ContentUriHelper;
 import org.odk.collect.android.utilities.ExternalizableFormDefCache;
 import org.odk.collect.android.utilities.FileUtils;
@@ -412,11 +414,13 @@ public class FormLoaderTask extends SchedulerAsyncTaskMimic<Void, String, FormLo
 
         if (instancePath != null) {
             File instanceXml = new File(instancePath);
+            File journal = null;
 
             if (savepoint != null) {
                 final File savepointFile = new File(savepoint.getSavepointFilePath());
                 usedSavepoint = true;
                 instanceXml = savepointFile;
+                journal = new File(savepoint.getJournalFilePath());
                 Timber.w("Loading instance from savepoint file: %s", savepointFile.getAbsolutePath());
             }
 
@@ -425,7 +429,7 @@ public class FormLoaderTask extends SchedulerAsyncTaskMimic<Void, String, FormLo
                 try {
                     Timber.i("Importing data");
                     publishProgress(getLocalizedString(Collect.getInstance(), org.odk.collect.strings.R.string.survey_loading_reading_data_message));
-                    importData(instanceXml, fec);
+                    importData(instanceXml, journal, fec);
                     formDef.initialize(isFinalizedFormEdit ? FormInitializationMode.FINALIZED_FORM_EDIT : FormInitializationMode.DRAFT_FORM_EDIT);
                 } catch (IOException | RuntimeException e) {
                     // Skip a savepoint file that is corrupted or 0-sized
@@ -461,13 +465,25 @@ public class FormLoaderTask extends SchedulerAsyncTaskMimic<Void, String, FormLo
         }
     }
 
-    // Copied from XFormParser.loadXmlInstance in order to set ExternalAnswerResolver for search()
     public static void importData(File instanceFile, FormEntryController fec) throws IOException, RuntimeException {
+        importData(instanceFile, null, fec);
+    }
+
+    /**
+     * Copied from XFormParser.loadXmlInstance in order to set ExternalAnswerResolver for search()
+     *
+     * @param journal a {@link SavepointJournal} file with changes that should be applied on top
+     *                of the instance file (which is a savepoint). Ignored if {@code null}.
+     */
+    public static void importData(File instanceFile, @Nullable File journal, FormEntryController fec) throws IOException, RuntimeException {
         // convert files into a byte array
         byte[] fileBytes = org.apache.commons.io.FileUtils.readFileToByteArray(instanceFile);
 
         // get the root of the saved and template instances
         TreeElement savedRoot = XFormParser.restoreDataModel(fileBytes, null).getRoot();
+        if (journal != null) {
+            new SavepointJournal(journal).applyTo(savedRoot);
+        }
         TreeElement templateRoot = fec.getModel().getForm().getInstance().getRoot().deepCopy(true);
 
         // add deprecatedID to the templateRoot meta section if the savedRoot contains it
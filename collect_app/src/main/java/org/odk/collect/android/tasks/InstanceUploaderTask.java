@@ -38,6 +38,7 @@ import org.odk.collect.forms.instances.Instance;
 import org.odk.collect.forms.instances.InstancesRepository;
 import org.odk.collect.metadata.PropertyManager;
 import org.odk.collect.openrosa.http.OpenRosaHttpInterface;
+import org.odk.collect.openrosa.http.OpenRosaHttpInterface.UploadProgressListener;
 import org.odk.collect.settings.SettingsProvider;
 import org.odk.collect.settings.keys.ProjectKeys;
 
@@ -45,6 +46,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -106,7 +108,8 @@ public class InstanceUploaderTask extends AsyncTask<Long, Integer, InstanceUploa
             }
             Instance instance = instancesToUpload.get(i);
 
-            publishProgress(i + 1, instancesToUpload.size());
+            int progress = i + 1;
+            publishProgress(progress, instancesToUpload.size());
 
             if (completeDestinationUrl != null) {
                 Analytics.log(AnalyticsEvents.INSTANCE_UPLOAD_CUSTOM_SERVER, "label", referrer != null ? referrer : "");
@@ -114,7 +117,9 @@ public class InstanceUploaderTask extends AsyncTask<Long, Integer, InstanceUploa
 
             try {
                 String destinationUrl = uploader.getUrlToSubmitTo(instance, deviceId, completeDestinationUrl, null);
-                String customMessage = uploader.uploadOneSubmission(instance, destinationUrl);
+                String customMessage = uploader.uploadOneSubmission(instance, destinationUrl, new PercentProgressListener(percentSent -> {
+                    publishProgress(progress, instancesToUpload.size(), percentSent);
+                }));
                 outcome.messagesByInstanceId.put(instance.getDbId().toString(),
                         customMessage != null ? customMessage : getLocalizedString(Collect.getInstance(), org.odk.collect.strings.R.string.success));
 
@@ -161,7 +166,11 @@ public class InstanceUploaderTask extends AsyncTask<Long, Integer, InstanceUploa
     protected void onProgressUpdate(Integer... values) {
         synchronized (this) {
             if (stateListener != null) {
-                stateListener.progressUpdate(values[0], values[1]);
+                if (values.length > 2) {
+                    stateListener.progressUpdate(values[0], values[1], values[2]);
+                } else {
+                    stateListener.progressUpdate(values[0], values[1]);
+                }
             }
         }
     }
@@ -236,6 +245,33 @@ public class InstanceUploaderTask extends AsyncTask<Long, Integer, InstanceUploa
         }
     }
 
+    /**
+     * Converts the bytes sent for a submission into a percentage and only passes it on when it
+     * changes so that progress isn't published for every chunk that's written.
+     */
+    static class PercentProgressListener implements UploadProgressListener {
+
+        private final IntConsumer onPercentChanged;
+        private int lastPercent = -1;
+
+        PercentProgressListener(IntConsumer onPercentChanged) {
+            this.onPercentChanged = onPercentChanged;
+        }
+
+        @Override
+        public void onProgress(long bytesSent, long totalBytes) {
+            if (totalBytes <= 0) {
+                return;
+            }
+
+            int percent = (int) Math.min(100, bytesSent * 100 / totalBytes);
+            if (percent != lastPercent) {
+                lastPercent = percent;
+                onPercentChanged.accept(percent);
+            }
+        }
+    }
+
     /**
      * Represents the results of a submission attempt triggered by explicit user action (as opposed
      * to auto-send). A submission attempt can include finalized forms going to several different
@@ -142,6 +142,9 @@ public class SaveFormToDisk {
             instanceName = updatedSaveName;
         }
 
+        // make sure the audit log is complete before it's saved (or encrypted) with the instance
+        formController.getAuditEventLogger().flushWriter(true);
+
         try {
             Instance instance = exportData(shouldFinalize, progressListener, validationResult);
 
@@ -342,9 +345,10 @@ public class SaveFormToDisk {
 
         writeFile(payload, formController.getInstanceFile());
 
-        // Write last-saved instance
+        // Write last-saved instance. This is identical to the instance we've just written so link
+        // to (or copy) that rather than writing the payload out again
         String lastSavedPath = formController.getLastSavedPath();
-        writeFile(payload, new File(lastSavedPath));
+        FileUtils.linkOrCopyFile(formController.getInstanceFile(), new File(lastSavedPath));
 
         // update the uri. We have exported the reloadable instance, so update status...
         // Since we saved a reloadable instance, it is flagged as re-openable so that if any error
@@ -365,17 +369,21 @@ public class SaveFormToDisk {
             File instanceXml = formController.getInstanceFile();
             File submissionXml = new File(instanceXml.getParentFile(), "submission.xml");
 
-            payload = formController.getSubmissionXml();
-
-            // write out submission.xml -- the data to actually submit to aggregate
-
             progressListener.onProgressUpdate(
                     getLocalizedString(Collect.getInstance(), org.odk.collect.strings.R.string.survey_saving_finalizing_message));
 
-            writeFile(payload, submissionXml);
-
             // see if the form is encrypted and we can encrypt it...
             EncryptedFormInformation formInfo = EncryptionUtils.getEncryptedFormInformation(uri, formController.getSubmissionMetadata());
+
+            // write out submission.xml -- the data to actually submit to aggregate. If the entire
+            // form is being submitted, this is the payload we've already serialized (and written
+            // to instanceXml) so we only need a separate file if we're going to encrypt it.
+            if (!canEditAfterCompleted) {
+                writeFile(formController.getSubmissionXml(), submissionXml);
+            } else if (formInfo != null) {
+                writeFile(payload, submissionXml);
+            }
+
             if (formInfo != null) {
                 // if we are encrypting, the form cannot be reopened afterward
                 canEditAfterCompleted = false;
@@ -405,9 +413,9 @@ public class SaveFormToDisk {
 
             if (!canEditAfterCompleted) {
                 manageFilesAfterSavingEncryptedForm(instanceXml, submissionXml);
-            } else {
-                // try to delete the submissionXml file, since it is
-                // identical to the existing instanceXml file
+            } else if (submissionXml.exists()) {
+                // try to delete any submissionXml file left over from an earlier save, since
+                // the existing instanceXml file is what will be submitted
                 // (we don't need to delete and rename anything).
                 if (!submissionXml.delete()) {
                     String msg = "Error deleting " + submissionXml.getAbsolutePath()
@@ -19,6 +19,7 @@ import static org.odk.collect.strings.localization.LocalizedApplicationKt.getLoc
 import android.net.Uri;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.utilities.ResponseMessageParser;
@@ -30,6 +31,7 @@ import org.odk.collect.openrosa.http.HttpHeadResult;
 import org.odk.collect.openrosa.http.HttpPostResult;
 import org.odk.collect.openrosa.http.OpenRosaConstants;
 import org.odk.collect.openrosa.http.OpenRosaHttpInterface;
+import org.odk.collect.openrosa.http.OpenRosaHttpInterface.UploadProgressListener;
 import org.odk.collect.settings.keys.ProjectKeys;
 import org.odk.collect.shared.settings.Settings;
 
@@ -39,9 +41,9 @@ import java.net.URI;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.net.ssl.HttpsURLConnection;
 
@@ -53,15 +55,31 @@ public class InstanceServerUploader extends InstanceUploader {
     private final OpenRosaHttpInterface httpInterface;
     private final WebCredentialsUtils webCredentialsUtils;
     private final Settings generalSettings;
-    private final Map<Uri, Uri> uriRemap = new HashMap<>();
+    private final Map<Uri, SubmissionTarget> submissionTargets = new ConcurrentHashMap<>();
+    private final Map<Uri, Object> probeLocks = new ConcurrentHashMap<>();
+
+    @Nullable
+    private final SubmissionTargetCache submissionTargetCache;
 
     public InstanceServerUploader(OpenRosaHttpInterface httpInterface,
                                   WebCredentialsUtils webCredentialsUtils,
                                   Settings generalSettings, InstancesRepository instancesRepository) {
+        this(httpInterface, webCredentialsUtils, generalSettings, instancesRepository, null);
+    }
+
+    /**
+     * @param submissionTargetCache if not null, the results of HEAD requests will be remembered
+     *                              here (and used instead of making a HEAD request) across uploaders
+     */
+    public InstanceServerUploader(OpenRosaHttpInterface httpInterface,
+                                  WebCredentialsUtils webCredentialsUtils,
+                                  Settings generalSettings, InstancesRepository instancesRepository,
+                                  @Nullable SubmissionTargetCache submissionTargetCache) {
         super(instancesRepository);
         this.httpInterface = httpInterface;
         this.webCredentialsUtils = webCredentialsUtils;
         this.generalSettings = generalSettings;
+        this.submissionTargetCache = submissionTargetCache;
     }
 
     /**
@@ -72,91 +90,48 @@ public class InstanceServerUploader extends InstanceUploader {
      */
     @Override
     public String uploadOneSubmission(Instance instance, String urlString) throws FormUploadException {
+        return uploadOneSubmission(instance, urlString, null);
+    }
+
+    /**
+     * Like {@link #uploadOneSubmission(Instance, String)}, but reports the number of bytes sent
+     * so far to {@code progressListener} as the submission is uploaded.
+     */
+    public String uploadOneSubmission(Instance instance, String urlString, @Nullable UploadProgressListener progressListener) throws FormUploadException {
         markSubmissionFailed(instance);
 
         Uri submissionUri = Uri.parse(urlString);
 
-        long contentLength = 10000000L;
-
-        // We already issued a head request and got a response, so we know it was an
-        // OpenRosa-compliant server. We also know the proper URL to send the submission to and
-        // the proper scheme.
-        if (uriRemap.containsKey(submissionUri)) {
-            submissionUri = uriRemap.get(submissionUri);
-            Timber.i("Using Uri remap for submission %s. Now: %s", instance.getDbId(),
-                    submissionUri.toString());
-        } else {
-            if (submissionUri.getHost() == null) {
-                throw new FormUploadException(FAIL + "Host name may not be null");
-            }
-
-            URI uri;
-            try {
-                uri = URI.create(submissionUri.toString());
-            } catch (IllegalArgumentException e) {
-                Timber.d(e.getMessage() != null ? e.getMessage() : e.toString());
-                throw new FormUploadException(getLocalizedString(Collect.getInstance(), org.odk.collect.strings.R.string.url_error));
-            }
-
-            HttpHeadResult headResult;
-            CaseInsensitiveHeaders responseHeaders;
-            try {
-                headResult = httpInterface.executeHeadRequest(uri, webCredentialsUtils.getCredentials(uri));
-                responseHeaders = headResult.getHeaders();
-
-                if (responseHeaders.containsHeader(OpenRosaConstants.ACCEPT_CONTENT_LENGTH_HEADER)) {
-                    String contentLengthString = responseHeaders.getAnyValue(OpenRosaConstants.ACCEPT_CONTENT_LENGTH_HEADER);
-                    try {
-                        contentLength = Long.parseLong(contentLengthString);
-                    } catch (Exception e) {
-                        Timber.e(e, "Exception thrown parsing contentLength %s", contentLengthString);
-                    }
+        // Submissions to the same URL share the result of the HEAD request (even when they're
+        // being uploaded at the same time) so we only need to make it once
+        SubmissionTarget submissionTarget = submissionTargets.get(submissionUri);
+        if (submissionTarget == null) {
+            synchronized (probeLocks.computeIfAbsent(submissionUri, key -> new Object())) {
+                submissionTarget = submissionTargets.get(submissionUri);
+                if (submissionTarget == null) {
+                    submissionTarget = getCachedSubmissionTarget(urlString);
                 }
 
-            } catch (Exception e) {
-                throw new FormUploadException(FAIL
-                        + (e.getMessage() != null ? e.getMessage() : e.toString()));
-            }
-
-            if (headResult.getStatusCode() == HttpsURLConnection.HTTP_UNAUTHORIZED) {
-                throw new FormUploadAuthRequestedException(getLocalizedString(Collect.getInstance(), org.odk.collect.strings.R.string.server_auth_credentials, submissionUri.getHost()),
-                        submissionUri);
-            } else if (headResult.getStatusCode() == HttpsURLConnection.HTTP_NO_CONTENT) {
-                // Redirect header received
-                if (responseHeaders.containsHeader("Location")) {
-                    try {
-                        Uri newURI = Uri.parse(URLDecoder.decode(responseHeaders.getAnyValue("Location"), "utf-8"));
-                        // Allow redirects within same host. This could be redirecting to HTTPS.
-                        if (submissionUri.getHost().equalsIgnoreCase(newURI.getHost())) {
-                            // Re-add params if server didn't respond with params
-                            if (newURI.getQuery() == null) {
-                                newURI = newURI.buildUpon()
-                                        .encodedQuery(submissionUri.getEncodedQuery())
-                                        .build();
-                            }
-                            uriRemap.put(submissionUri, newURI);
-                            submissionUri = newURI;
-                        } else {
-                            // Don't follow a redirection attempt to a different host.
-                            // We can't tell if this is a spoof or not.
-                            throw new FormUploadException(FAIL
-                                    + "Unexpected redirection attempt to a different host: "
-                                    + newURI.toString());
-                        }
-                    } catch (Exception e) {
-                        throw new FormUploadException(FAIL + urlString + " " + e.toString());
+                if (submissionTarget == null) {
+                    submissionTarget = probeSubmissionUri(submissionUri, urlString);
+                    if (submissionTargetCache != null) {
+                        submissionTargetCache.put(urlString, new SubmissionTargetCache.Entry(
+                                submissionTarget.uri.toString(),
+                                submissionTarget.contentLength
+                        ));
                     }
                 }
-            } else {
-                if (headResult.getStatusCode() >= HttpsURLConnection.HTTP_OK
-                        && headResult.getStatusCode() < HttpsURLConnection.HTTP_MULT_CHOICE) {
-                    throw new FormUploadException("Failed to send to " + uri + ". Is this an OpenRosa " +
-                            "submission endpoint? If you have a web proxy you may need to log in to " +
-                            "your network.\n\nHEAD request result status code: " + headResult.getStatusCode());
-                }
+
+                submissionTargets.put(submissionUri, submissionTarget);
             }
+        } else {
+            Timber.i("Using result of previous HEAD request for submission %s. Now: %s", instance.getDbId(),
+                    submissionTarget.uri.toString());
         }
 
+        submissionUri = submissionTarget.uri;
+        long contentLength = submissionTarget.contentLength;
+
         // When encrypting submissions, there is a failure window that may mark the submission as
         // complete but leave the file-to-be-uploaded with the name "submission.xml" and the plaintext
         // submission files on disk.  In this case, upload the submission.xml and all the files in
@@ -187,8 +162,13 @@ public class InstanceServerUploader extends InstanceUploader {
         try {
             URI uri = URI.create(submissionUri.toString());
 
-            postResult = httpInterface.uploadSubmissionAndFiles(submissionFile, files, uri,
-                    webCredentialsUtils.getCredentials(uri), contentLength);
+            if (progressListener != null) {
+                postResult = httpInterface.uploadSubmissionAndFiles(submissionFile, files, uri,
+                        webCredentialsUtils.getCredentials(uri), contentLength, progressListener);
+            } else {
+                postResult = httpInterface.uploadSubmissionAndFiles(submissionFile, files, uri,
+                        webCredentialsUtils.getCredentials(uri), contentLength);
+            }
 
             int responseCode = postResult.getResponseCode();
             messageParser.setMessageResponse(postResult.getHttpResponse());
@@ -215,6 +195,13 @@ public class InstanceServerUploader extends InstanceUploader {
             }
 
         } catch (Exception e) {
+            // The server might have moved or changed its configuration since the cached HEAD
+            // request was made so make sure the next attempt checks again
+            if (submissionTarget.fromCache && submissionTargetCache != null) {
+                submissionTargets.remove(Uri.parse(urlString), submissionTarget);
+                submissionTargetCache.remove(urlString);
+            }
+
             throw new FormUploadException(e.getMessage() != null ? e.getMessage() : e.toString());
         }
 
@@ -227,6 +214,101 @@ public class InstanceServerUploader extends InstanceUploader {
         return null;
     }
 
+    @Nullable
+    private SubmissionTarget getCachedSubmissionTarget(String urlString) {
+        if (submissionTargetCache == null) {
+            return null;
+        }
+
+        SubmissionTargetCache.Entry entry = submissionTargetCache.get(urlString);
+        if (entry == null) {
+            return null;
+        }
+
+        Timber.i("Using cached result of HEAD request for %s", urlString);
+        return new SubmissionTarget(Uri.parse(entry.getUri()), entry.getAcceptedContentLength(), true);
+    }
+
+    /**
+     * Issues a HEAD request to the submission URL to check that it's an OpenRosa server and to
+     * find out the URL (and scheme) the submission should actually be sent to as well as the
+     * maximum request size the server accepts.
+     */
+    private SubmissionTarget probeSubmissionUri(Uri submissionUri, String urlString) throws FormUploadException {
+        long contentLength = 10000000L;
+
+        if (submissionUri.getHost() == null) {
+            throw new FormUploadException(FAIL + "Host name may not be null");
+        }
+
+        URI uri;
+        try {
+            uri = URI.create(submissionUri.toString());
+        } catch (IllegalArgumentException e) {
+            Timber.d(e.getMessage() != null ? e.getMessage() : e.toString());
+            throw new FormUploadException(getLocalizedString(Collect.getInstance(), org.odk.collect.strings.R.string.url_error));
+        }
+
+        HttpHeadResult headResult;
+        CaseInsensitiveHeaders responseHeaders;
+        try {
+            headResult = httpInterface.executeHeadRequest(uri, webCredentialsUtils.getCredentials(uri));
+            responseHeaders = headResult.getHeaders();
+
+            if (responseHeaders.containsHeader(OpenRosaConstants.ACCEPT_CONTENT_LENGTH_HEADER)) {
+                String contentLengthString = responseHeaders.getAnyValue(OpenRosaConstants.ACCEPT_CONTENT_LENGTH_HEADER);
+                try {
+                    contentLength = Long.parseLong(contentLengthString);
+                } catch (Exception e) {
+                    Timber.e(e, "Exception thrown parsing contentLength %s", contentLengthString);
+                }
+            }
+
+        } catch (Exception e) {
+            throw new FormUploadException(FAIL
+                    + (e.getMessage() != null ? e.getMessage() : e.toString()));
+        }
+
+        if (headResult.getStatusCode() == HttpsURLConnection.HTTP_UNAUTHORIZED) {
+            throw new FormUploadAuthRequestedException(getLocalizedString(Collect.getInstance(), org.odk.collect.strings.R.string.server_auth_credentials, submissionUri.getHost()),
+                    submissionUri);
+        } else if (headResult.getStatusCode() == HttpsURLConnection.HTTP_NO_CONTENT) {
+            // Redirect header received
+            if (responseHeaders.containsHeader("Location")) {
+                try {
+                    Uri newURI = Uri.parse(URLDecoder.decode(responseHeaders.getAnyValue("Location"), "utf-8"));
+                    // Allow redirects within same host. This could be redirecting to HTTPS.
+                    if (submissionUri.getHost().equalsIgnoreCase(newURI.getHost())) {
+                        // Re-add params if server didn't respond with params
+                        if (newURI.getQuery() == null) {
+                            newURI = newURI.buildUpon()
+                                    .encodedQuery(submissionUri.getEncodedQuery())
+                                    .build();
+                        }
+                        submissionUri = newURI;
+                    } else {
+                        // Don't follow a redirection attempt to a different host.
+                        // We can't tell if this is a spoof or not.
+                        throw new FormUploadException(FAIL
+                                + "Unexpected redirection attempt to a different host: "
+                                + newURI.toString());
+                    }
+                } catch (Exception e) {
+                    throw new FormUploadException(FAIL + urlString + " " + e.toString());
+                }
+            }
+        } else {
+            if (headResult.getStatusCode() >= HttpsURLConnection.HTTP_OK
+                    && headResult.getStatusCode() < HttpsURLConnection.HTTP_MULT_CHOICE) {
+                throw new FormUploadException("Failed to send to " + uri + ". Is this an OpenRosa " +
+                        "submission endpoint? If you have a web proxy you may need to log in to " +
+                        "your network.\n\nHEAD request result status code: " + headResult.getStatusCode());
+            }
+        }
+
+        return new SubmissionTarget(submissionUri, contentLength, false);
+    }
+
     private List<File> getFilesInParentDirectory(File instanceFile, File submissionFile) {
         List<File> files = new ArrayList<>();
 
@@ -294,4 +376,16 @@ public class InstanceServerUploader extends InstanceUploader {
 
         return serverBase + OpenRosaConstants.SUBMISSION;
     }
+
+    private static class SubmissionTarget {
+        final Uri uri;
+        final long contentLength;
+        final boolean fromCache;
+
+        SubmissionTarget(Uri uri, long contentLength, boolean fromCache) {
+            this.uri = uri;
+            this.contentLength = contentLength;
+            this.fromCache = fromCache;
+        }
+    }
 }
@@ -0,0 +1,98 @@
+package org.odk.collect.android.upload
+
+import org.json.JSONException
+import org.json.JSONObject
+import timber.log.Timber
+import java.io.File
+import java.io.IOException
+import java.util.function.Supplier
+
+/**
+ * Remembers what was learnt about submission URLs from HEAD requests (the URL submissions should
+ * actually be sent to and the largest request the server will accept) so that later uploads can
+ * skip the HEAD request. Entries are stored in [file] and expire after [timeToLive] milliseconds.
+ */
+class SubmissionTargetCache @JvmOverloads constructor(
+    private val file: File,
+    private val clock: Supplier<Long> = Supplier { System.currentTimeMillis() },
+    private val timeToLive: Long = DEFAULT_TIME_TO_LIVE
+) {
+
+    private var entries: JSONObject? = null
+
+    @Synchronized
+    fun get(submissionUrl: String): Entry? {
+        val entry = getEntries().optJSONObject(submissionUrl) ?: return null
+
+        return try {
+            if (clock.get() - entry.getLong(KEY_PROBED_AT) < timeToLive) {
+                Entry(entry.getString(KEY_URI), entry.getLong(KEY_ACCEPTED_CONTENT_LENGTH))
+            } else {
+                null
+            }
+        } catch (e: JSONException) {
+            null
+        }
+    }
+
+    @Synchronized
+    fun put(submissionUrl: String, entry: Entry) {
+        getEntries().put(
+            submissionUrl,
+            JSONObject()
+                .put(KEY_URI, entry.uri)
+                .put(KEY_ACCEPTED_CONTENT_LENGTH, entry.acceptedContentLength)
+                .put(KEY_PROBED_AT, clock.get())
+        )
+
+        write()
+    }
+
+    @Synchronized
+    fun remove(submissionUrl: String) {
+        if (getEntries().remove(submissionUrl) != null) {
+            write()
+        }
+    }
+
+    private fun getEntries(): JSONObject {
+        return entries ?: read().also { entries = it }
+    }
+
+    private fun read(): JSONObject {
+        if (!file.exists()) {
+            return JSONObject()
+        }
+
+        return try {
+            JSONObject(file.readText())
+        } catch (e: Exception) {
+            Timber.w(e)
+            JSONObject()
+        }
+    }
+
+    private fun write() {
+        try {
+            file.parentFile?.mkdirs()
+
+            val tempFile = File(file.parentFile, file.name + ".tmp")
+            tempFile.writeText(getEntries().toString())
+            if (!tempFile.renameTo(file)) {
+                throw IOException("Could not rename ${tempFile.absolutePath}")
+            }
+        } catch (e: IOException) {
+            Timber.w(e)
+        }
+    }
+
+    data class Entry(val uri: String, val acceptedContentLength: Long)
+
+    companion object {
+        const val DEFAULT_TIME_TO_LIVE = 24 * 60 * 60 * 1000L
+
+        private const val KEY_URI = "uri"
+        private const val KEY_ACCEPTED_CONTENT_LENGTH = "acceptedContentLength"
+        private const val KEY_PROBED_AT = "probedAt"
+    }
+}
@@ -33,14 +33,14 @@ import org.odk.collect.forms.Form;
 import org.odk.collect.forms.instances.Instance;
 import org.odk.collect.shared.strings.Md5;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
@@ -55,10 +55,13 @@ import java.security.spec.X509EncodedKeySpec;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
-import javax.crypto.CipherOutputStream;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.IvParameterSpec;
@@ -101,6 +104,7 @@ public class EncryptionUtils {
             "base64EncryptedElementSignature";
     private static final String NEW_LINE = "\n";
     private static final String ENCRYPTION_PROVIDER = "BC";
+    private static final int ENCRYPTION_BUFFER_SIZE = 64 * 1024;
 
     private EncryptionUtils() {
     }
@@ -117,7 +121,7 @@ public class EncryptionUtils {
         public final StringBuilder elementSignatureSource = new StringBuilder();
         private boolean isNotBouncyCastle;
 
-        EncryptedFormInformation(String formId, String formVersion,
+        public EncryptedFormInformation(String formId, String formVersion,
                                  InstanceMetadata instanceMetadata, PublicKey rsaPublicKey) {
             this.formId = formId;
             this.formVersion = formVersion;
@@ -175,7 +179,10 @@ public class EncryptionUtils {
         }
 
         public void appendFileSignatureSource(File file) {
-            String md5Hash = Md5.getMd5Hash(file);
+            appendFileSignatureSource(file, Md5.getMd5Hash(file));
+        }
+
+        public void appendFileSignatureSource(File file, String md5Hash) {
             appendElementSignatureSource(file.getName() + "::" + md5Hash);
         }
 
@@ -346,7 +353,14 @@ public class EncryptionUtils {
         return new EncryptedFormInformation(formId, formVersion, instanceMetadata, pk);
     }
 
-    private static void encryptFile(File file, EncryptedFormInformation formInfo)
+    /**
+     * Encrypts {@code file} into {@code <file>.enc} using {@code c}. The file is only read once:
+     * it's hashed (for the element signature) at the same time as it's encrypted, and the
+     * encrypted data is streamed straight to disk rather than being held in memory.
+     *
+     * @return the MD5 hash of the (unencrypted) file
+     */
+    private static String encryptFile(File file, Cipher c)
             throws IOException, EncryptionException {
         File encryptedFile = new File(file.getParentFile(), file.getName()
                 + ".enc");
@@ -356,42 +370,36 @@ public class EncryptionUtils {
                     + ". Perhaps the file is locked?");
         }
 
-        // add elementSignatureSource for this file...
-        formInfo.appendFileSignatureSource(file);
-
-        RandomAccessFile randomAccessFile = null;
-        CipherOutputStream cipherOutputStream = null;
         try {
-            Cipher c = formInfo.getCipher();
-
-            randomAccessFile = new RandomAccessFile(encryptedFile, "rws");
-            ByteArrayOutputStream encryptedData = new ByteArrayOutputStream();
-            cipherOutputStream = new CipherOutputStream(encryptedData, c);
-            InputStream fin = new FileInputStream(file);
-            byte[] buffer = new byte[2048];
-            int len = fin.read(buffer);
-            while (len != -1) {
-                cipherOutputStream.write(buffer, 0, len);
-                len = fin.read(buffer);
+            MessageDigest md = MessageDigest.getInstance("MD5");
+
+            try (InputStream fin = new FileInputStream(file);
+                 FileOutputStream fout = new FileOutputStream(encryptedFile);
+                 OutputStream out = new BufferedOutputStream(fout, ENCRYPTION_BUFFER_SIZE)) {
+                byte[] buffer = new byte[ENCRYPTION_BUFFER_SIZE];
+                byte[] encryptedBuffer = new byte[c.getOutputSize(buffer.length)];
+
+                int len = fin.read(buffer);
+                while (len != -1) {
+                    md.update(buffer, 0, len);
+                    out.write(encryptedBuffer, 0, c.update(buffer, 0, len, encryptedBuffer));
+                    len = fin.read(buffer);
+                }
+
+                out.write(encryptedBuffer, 0, c.doFinal(encryptedBuffer, 0));
+                out.flush();
+
+                // Make sure the encrypted file is on disk before the plaintext is deleted
+                fout.getFD().sync();
             }
-            fin.close();
-            cipherOutputStream.flush();
-            cipherOutputStream.close();
-
-            randomAccessFile.write(encryptedData.toByteArray());
 
             Timber.i("Encrpyted:%s -> %s", file.getName(), encryptedFile.getName());
+            return Md5.toMd5String(md.digest());
         } catch (Exception e) {
             String msg = "Error encrypting: " + file.getName() + " -> "
                     + encryptedFile.getName();
             Timber.e(e, "%s due to %s ", msg, e.getMessage());
             throw new EncryptionException(msg, e);
-        } finally {
-            IOUtils.closeQuietly(cipherOutputStream);
-
-            if (randomAccessFile != null) {
-                randomAccessFile.close();
-            }
         }
     }
 
@@ -457,17 +465,78 @@ public class EncryptionUtils {
                 filesToProcess.add(f);
             }
         }
-        // encrypt here...
-        for (File f : filesToProcess) {
-            encryptFile(f, formInfo);
-        }
-
         // encrypt the submission.xml as the last file...
-        encryptFile(submissionXml, formInfo);
+        List<File> filesToEncrypt = new ArrayList<>(filesToProcess);
+        filesToEncrypt.add(submissionXml);
+        encryptFiles(filesToEncrypt, formInfo);
 
         return filesToProcess;
     }
 
+    /**
+     * Encrypts files on up to one thread per core. The server verifies the element signature (and
+     * works out each file's IV) using the order of the files in the manifest, so IVs are handed
+     * out and signatures added in the order of {@code files} regardless of which files finish
+     * first.
+     */
+    private static void encryptFiles(List<File> files, EncryptedFormInformation formInfo)
+            throws IOException, EncryptionException {
+        List<Cipher> ciphers = new ArrayList<>();
+        for (File file : files) {
+            try {
+                ciphers.add(formInfo.getCipher());
+            } catch (Exception e) {
+                String msg = "Error encrypting: " + file.getName();
+                Timber.e(e, "%s due to %s ", msg, e.getMessage());
+                throw new EncryptionException(msg, e);
+            }
+        }
+
+        int threadCount = Math.min(Runtime.getRuntime().availableProcessors(), files.size());
+        if (threadCount <= 1) {
+            for (int i = 0; i < files.size(); i++) {
+                formInfo.appendFileSignatureSource(files.get(i), encryptFile(files.get(i), ciphers.get(i)));
+            }
+
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<String>> md5Hashes = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                File file = files.get(i);
+                Cipher cipher = ciphers.get(i);
+                md5Hashes.add(executor.submit(() -> encryptFile(file, cipher)));
+            }
+
+            for (int i = 0; i < files.size(); i++) {
+                formInfo.appendFileSignatureSource(files.get(i), getEncryptionResult(md5Hashes.get(i)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String getEncryptionResult(Future<String> md5Hash)
+            throws IOException, EncryptionException {
+        try {
+            return md5Hash.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof EncryptionException) {
+                throw (EncryptionException) cause;
+            } else {
+                throw new EncryptionException("Error encrypting submission", cause);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EncryptionException("Interrupted while encrypting submission", e);
+        }
+    }
+
     /**
      * Constructs the encrypted attachments, encrypted form xml, and the
      * plaintext submission manifest (with signature) for the form submission.
@@ -13,12 +13,37 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.annotation.Nullable;
 
 import timber.log.Timber;
 
 /** Methods for reading from and writing to the FormDef cache */
 public final class ExternalizableFormDefCache implements FormDefCache {
 
+    private static final String CACHE_FILE_EXTENSION = ".formdef";
+
+    @Nullable
+    private final File cacheDir;
+
+    /**
+     * Creates a cache that uses the current project's cache dir
+     */
+    public ExternalizableFormDefCache() {
+        this(null);
+    }
+
+    /**
+     * @param cacheDir the dir cached FormDefs are kept in. If {@code null}, the current project's
+     *                 cache dir is used.
+     */
+    public ExternalizableFormDefCache(@Nullable File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
     /**
      * Serializes a FormDef and saves it in the cache. To avoid problems from two callers
      * trying to cache the same file at the same time, we serialize into a temporary file,
@@ -30,9 +55,8 @@ public final class ExternalizableFormDefCache implements FormDefCache {
     @Override
     public void writeCache(FormDef formDef, String formPath) throws IOException {
         final long formSaveStart = System.currentTimeMillis();
-        File cachedFormDefFile = ExternalizableFormDefCache.getCacheFile(new File(formPath));
-        final File tempCacheFile = File.createTempFile("cache", null,
-                new File(new StoragePathProvider().getOdkDirPath(StorageSubdirectory.CACHE)));
+        File cachedFormDefFile = getCacheFile(new File(formPath));
+        final File tempCacheFile = File.createTempFile("cache", null, getCacheDir());
         Timber.i("Started saving %s to the cache via temp file %s",
                 formDef.getTitle(), tempCacheFile.getName());
 
@@ -98,14 +122,65 @@ public final class ExternalizableFormDefCache implements FormDefCache {
         return null;
     }
 
+    /**
+     * @param formXml a File containing the XML version of the form
+     * @return whether the form is present in the cache
+     */
+    public boolean isCached(File formXml) {
+        return getCacheFile(formXml).exists();
+    }
+
+    /**
+     * Deletes the cached versions of any forms other than the ones with the given hashes. This
+     * gets rid of FormDefs for forms that have been deleted or changed since they were cached.
+     *
+     * @param md5Hashes the hashes of the forms that are still on the device
+     * @return the number of cache files deleted
+     */
+    public int evictAllExcept(Collection<String> md5Hashes) {
+        File[] cacheFiles = getCacheDir().listFiles((dir, name) -> name.endsWith(CACHE_FILE_EXTENSION));
+        if (cacheFiles == null) {
+            return 0;
+        }
+
+        Set<String> cacheFileNames = new HashSet<>();
+        for (String md5Hash : md5Hashes) {
+            cacheFileNames.add(md5Hash + CACHE_FILE_EXTENSION);
+        }
+
+        int deletedCount = 0;
+        for (File cacheFile : cacheFiles) {
+            if (!cacheFileNames.contains(cacheFile.getName())) {
+                if (cacheFile.delete()) {
+                    deletedCount++;
+                } else {
+                    Timber.w("Unable to delete %s", cacheFile.getName());
+                }
+            }
+        }
+
+        if (deletedCount > 0) {
+            Timber.i("Evicted %d FormDefs from the cache", deletedCount);
+        }
+
+        return deletedCount;
+    }
+
     /**
      * Builds and returns a File object for the cached version of a form.
      * @param formXml the File containing the XML form
      * @return a File object
      */
-    private static File getCacheFile(File formXml) {
-        return new File(new StoragePathProvider().getOdkDirPath(StorageSubdirectory.CACHE) + File.separator +
-                Md5.getMd5Hash(formXml) + ".formdef");
+    private File getCacheFile(File formXml) {
+        return new File(getCacheDir(), Md5.getMd5Hash(formXml) + CACHE_FILE_EXTENSION);
+    }
+
+    private File getCacheDir() {
+        if (cacheDir != null) {
+            return cacheDir;
+        } else {
+            return new File(new StoragePathProvider().getOdkDirPath(StorageSubdirectory.CACHE));
+        }
     }
 
     private static FormDef deserializeFormDef(File serializedFormDef) throws Exception {
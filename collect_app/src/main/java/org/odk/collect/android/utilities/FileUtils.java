@@ -20,6 +20,7 @@ import static java.util.Arrays.asList;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
+import android.os.Build;
 import android.webkit.MimeTypeMap;
 
 import androidx.annotation.NonNull;
@@ -42,6 +43,7 @@ import java.net.FileNameMap;
 import java.net.URLConnection;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -107,6 +109,32 @@ public final class FileUtils {
         }
     }
 
+    /**
+     * Makes {@code destFile} a hard link to {@code sourceFile} so its contents don't need to be
+     * written out again, falling back to a copy where links aren't supported. Files that might be
+     * linked must only ever be replaced (deleted and recreated) as writing to one in place would
+     * change the other as well.
+     */
+    public static void linkOrCopyFile(File sourceFile, File destFile) throws IOException {
+        if (destFile.exists() && !destFile.delete()) {
+            throw new IOException("Cannot overwrite " + destFile.getAbsolutePath() + ". Perhaps the file is locked?");
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            try {
+                Files.createLink(destFile.toPath(), sourceFile.toPath());
+                return;
+            } catch (IOException | UnsupportedOperationException e) {
+                Timber.i(e, "Could not link %s to %s. Copying instead.", destFile.getAbsolutePath(), sourceFile.getAbsolutePath());
+            }
+        }
+
+        String errorMessage = copyFile(sourceFile, destFile);
+        if (errorMessage != null) {
+            throw new IOException(errorMessage);
+        }
+    }
+
     private static String actualCopy(File sourceFile, File destFile) {
         FileInputStream fileInputStream = null;
         FileOutputStream fileOutputStream = null;
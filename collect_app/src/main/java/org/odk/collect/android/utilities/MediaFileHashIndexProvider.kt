@@ -0,0 +1,22 @@
+package org.odk.collect.android.utilities
+
+import android.content.Context
+import org.odk.collect.android.database.forms.DatabaseMediaFileHashIndex
+import org.odk.collect.android.storage.StoragePaths
+import org.odk.collect.forms.MediaFileHashIndex
+import org.odk.collect.projects.ProjectDependencyFactory
+
+class MediaFileHashIndexProvider(
+    private val context: Context,
+    private val storagePathFactory: ProjectDependencyFactory<StoragePaths>
+) : ProjectDependencyFactory<MediaFileHashIndex> {
+
+    override fun create(projectId: String): MediaFileHashIndex {
+        val storagePaths = storagePathFactory.create(projectId)
+        return DatabaseMediaFileHashIndex(
+            context,
+            storagePaths.metaDir,
+            storagePaths.formsDir
+        )
+    }
+}
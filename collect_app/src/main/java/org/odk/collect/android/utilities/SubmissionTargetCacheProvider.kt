@@ -0,0 +1,16 @@
+package org.odk.collect.android.utilities
+
+import org.odk.collect.android.storage.StoragePaths
+import org.odk.collect.android.upload.SubmissionTargetCache
+import org.odk.collect.projects.ProjectDependencyFactory
+import java.io.File
+
+class SubmissionTargetCacheProvider(
+    private val storagePathFactory: ProjectDependencyFactory<StoragePaths>
+) : ProjectDependencyFactory<SubmissionTargetCache> {
+
+    override fun create(projectId: String): SubmissionTargetCache {
+        val storagePaths = storagePathFactory.create(projectId)
+        return SubmissionTargetCache(File(storagePaths.metaDir, "submission_targets.json"))
+    }
+}
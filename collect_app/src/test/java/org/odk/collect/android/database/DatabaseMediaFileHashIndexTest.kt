@@ -0,0 +1,111 @@
+package org.odk.collect.android.database
+
+import android.database.sqlite.SQLiteDatabase
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
+import org.hamcrest.Matchers.nullValue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.odk.collect.android.database.DatabaseConstants.FORMS_DATABASE_NAME
+import org.odk.collect.android.database.DatabaseConstants.MEDIA_FILE_HASHES_TABLE_NAME
+import org.odk.collect.android.database.forms.DatabaseMediaFileHashIndex
+import org.odk.collect.db.sqlite.CursorExt.foldAndClose
+import org.odk.collect.shared.TempFiles
+import org.odk.collect.shared.strings.Md5.getMd5Hash
+import java.io.File
+
+@RunWith(AndroidJUnit4::class)
+class DatabaseMediaFileHashIndexTest {
+
+    private val dbDir = TempFiles.createTempDir()
+    private val formsDir = TempFiles.createTempDir()
+
+    @Test
+    fun `#getMd5Hash returns hash of file`() {
+        val file = File(formsDir, "file").also { it.writeText("blah") }
+
+        val index = createIndex()
+        assertThat(index.getMd5Hash(file), equalTo("blah".getMd5Hash()))
+    }
+
+    @Test
+    fun `#getMd5Hash returns null when file does not exist`() {
+        val index = createIndex()
+        assertThat(index.getMd5Hash(File(formsDir, "file")), nullValue())
+    }
+
+    @Test
+    fun `#getMd5Hash does not read file again if size and last modified have not changed`() {
+        val file = File(formsDir, "file").also { it.writeText("blah") }
+        val lastModified = file.lastModified()
+        createIndex().getMd5Hash(file)
+
+        file.writeText("bleh")
+        file.setLastModified(lastModified)
+
+        val index = createIndex()
+        assertThat(index.getMd5Hash(file), equalTo("blah".getMd5Hash()))
+    }
+
+    @Test
+    fun `#getMd5Hash returns new hash when size changes`() {
+        val file = File(formsDir, "file").also { it.writeText("blah") }
+        val lastModified = file.lastModified()
+
+        val index = createIndex()
+        index.getMd5Hash(file)
+
+        file.writeText("blah blah")
+        file.setLastModified(lastModified)
+        assertThat(index.getMd5Hash(file), equalTo("blah blah".getMd5Hash()))
+    }
+
+    @Test
+    fun `#getMd5Hash returns new hash when last modified changes`() {
+        val file = File(formsDir, "file").also { it.writeText("blah") }
+        val lastModified = file.lastModified()
+
+        val index = createIndex()
+        index.getMd5Hash(file)
+
+        file.writeText("bleh")
+        file.setLastModified(lastModified + 1000)
+        assertThat(index.getMd5Hash(file), equalTo("bleh".getMd5Hash()))
+    }
+
+    @Test
+    fun `#removeMissingFiles removes hashes for files that no longer exist`() {
+        val deletedFile = File(formsDir, "deleted").also { it.writeText("blah") }
+        val keptFile = File(formsDir, "kept").also { it.writeText("bleh") }
+
+        val index = createIndex()
+        index.getMd5Hash(deletedFile)
+        index.getMd5Hash(keptFile)
+
+        deletedFile.delete()
+        index.removeMissingFiles()
+
+        assertThat(getHashedPaths(), equalTo(listOf("kept")))
+    }
+
+    private fun getHashedPaths(): List<String> {
+        return SQLiteDatabase.openDatabase(
+            File(dbDir, FORMS_DATABASE_NAME).absolutePath,
+            null,
+            SQLiteDatabase.OPEN_READONLY
+        ).use { db ->
+            db.rawQuery("SELECT path FROM $MEDIA_FILE_HASHES_TABLE_NAME", null)
+                .foldAndClose { it.getString(0) }
+        }
+    }
+
+    private fun createIndex(): DatabaseMediaFileHashIndex {
+        return DatabaseMediaFileHashIndex(
+            ApplicationProvider.getApplicationContext(),
+            dbDir.absolutePath,
+            formsDir.absolutePath
+        )
+    }
+}
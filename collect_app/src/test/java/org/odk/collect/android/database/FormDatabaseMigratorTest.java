@@ -17,6 +17,7 @@ import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertTrue;
 import static org.odk.collect.android.database.DatabaseConstants.FORMS_TABLE_NAME;
+import static org.odk.collect.android.database.DatabaseConstants.MEDIA_FILE_HASHES_TABLE_NAME;
 import static org.odk.collect.android.database.forms.DatabaseFormColumns.AUTO_DELETE;
 import static org.odk.collect.android.database.forms.DatabaseFormColumns.AUTO_SEND;
 import static org.odk.collect.android.database.forms.DatabaseFormColumns.BASE64_RSA_PUBLIC_KEY;
@@ -45,7 +46,7 @@ public class FormDatabaseMigratorTest {
 
     @Before
     public void setup() {
-        assertThat("Test expects different Forms DB version", DatabaseConstants.FORMS_DATABASE_VERSION, is(14));
+        assertThat("Test expects different Forms DB version", DatabaseConstants.FORMS_DATABASE_VERSION, is(15));
         database = SQLiteDatabase.create(null);
     }
 
@@ -76,6 +77,23 @@ public class FormDatabaseMigratorTest {
         }
     }
 
+    @Test
+    public void onUpgrade_fromVersion14() {
+        int oldVersion = 14;
+        database.setVersion(oldVersion);
+        FormDatabaseMigrator formDatabaseMigrator = new FormDatabaseMigrator();
+
+        formDatabaseMigrator.onCreate(database);
+        database.execSQL("DROP TABLE " + MEDIA_FILE_HASHES_TABLE_NAME);
+
+        formDatabaseMigrator.onUpgrade(database, oldVersion);
+
+        try (Cursor cursor = database.rawQuery("SELECT * FROM " + MEDIA_FILE_HASHES_TABLE_NAME + ";", new String[]{})) {
+            assertThat(cursor.getColumnCount(), is(4));
+            assertThat(cursor.getCount(), is(0));
+        }
+    }
+
     @Test
     public void onUpgrade_fromVersion13() {
         int oldVersion = 13;
@@ -0,0 +1,115 @@
+package org.odk.collect.android.entities
+
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
+import org.junit.Test
+import org.odk.collect.entities.javarosa.parse.EntitySchema
+import org.odk.collect.entities.storage.CachingEntitiesRepository
+import org.odk.collect.entities.storage.EntitiesRepository
+import org.odk.collect.entities.storage.Entity
+import org.odk.collect.entities.storage.InMemEntitiesRepository
+import org.odk.collect.shared.Query
+
+class CachingEntitiesRepositoryTest : EntitiesRepositoryTest() {
+
+    override fun buildSubject(): EntitiesRepository {
+        return CachingEntitiesRepository(InMemEntitiesRepository())
+    }
+
+    @Test
+    fun `#query only queries wrapped repository once for the same query`() {
+        val wrapped = CountingEntitiesRepository(InMemEntitiesRepository())
+        val repository = CachingEntitiesRepository(wrapped)
+        repository.save("wines", Entity.New("1", "Léoville Barton 2008"))
+
+        repository.query("wines", Query.StringEq(EntitySchema.ID, "1"))
+        repository.query("wines", Query.StringEq(EntitySchema.ID, "1"))
+        assertThat(wrapped.queries, equalTo(1))
+
+        repository.query("wines", Query.StringEq(EntitySchema.ID, "2"))
+        assertThat(wrapped.queries, equalTo(2))
+    }
+
+    @Test
+    fun `#query returns updated results after a write`() {
+        val repository = CachingEntitiesRepository(InMemEntitiesRepository())
+        repository.save("wines", Entity.New("1", "Léoville Barton 2008"))
+
+        val query = Query.StringEq(EntitySchema.ID, "1")
+        assertThat(repository.query("wines", query)[0].label, equalTo("Léoville Barton 2008"))
+
+        repository.save("wines", Entity.New("1", "Léoville Barton 2009", version = 2))
+        assertThat(repository.query("wines", query)[0].label, equalTo("Léoville Barton 2009"))
+
+        repository.delete("wines", "1")
+        assertThat(repository.query("wines", query).isEmpty(), equalTo(true))
+    }
+
+    @Test
+    fun `#query returns updated results after a write to the wrapped repository`() {
+        val wrapped = InMemEntitiesRepository()
+        val repository = CachingEntitiesRepository(wrapped)
+        wrapped.save("wines", Entity.New("1", "Léoville Barton 2008"))
+
+        val query = Query.StringEq(EntitySchema.ID, "1")
+        assertThat(repository.query("wines", query)[0].label, equalTo("Léoville Barton 2008"))
+
+        wrapped.save("wines", Entity.New("1", "Léoville Barton 2009", version = 2))
+        assertThat(repository.query("wines", query)[0].label, equalTo("Léoville Barton 2009"))
+
+        wrapped.delete("wines", "1")
+        assertThat(repository.query("wines", query).isEmpty(), equalTo(true))
+    }
+
+    @Test
+    fun `#query evicts least recently used queries when more than max rows are cached`() {
+        val wrapped = CountingEntitiesRepository(InMemEntitiesRepository())
+        val repository = CachingEntitiesRepository(wrapped, maxRows = 2)
+        repository.save(
+            "wines",
+            Entity.New("1", "Léoville Barton 2008"),
+            Entity.New("2", "Pontet-Canet 2009"),
+            Entity.New("3", "Lynch-Bages 2010")
+        )
+
+        repository.query("wines", Query.StringEq(EntitySchema.ID, "1"))
+        repository.query("wines", Query.StringEq(EntitySchema.ID, "2"))
+        repository.query("wines", Query.StringEq(EntitySchema.ID, "1"))
+        repository.query("wines", Query.StringEq(EntitySchema.ID, "3"))
+        assertThat(wrapped.queries, equalTo(3))
+
+        repository.query("wines", Query.StringEq(EntitySchema.ID, "1"))
+        assertThat(wrapped.queries, equalTo(3))
+
+        repository.query("wines", Query.StringEq(EntitySchema.ID, "2"))
+        assertThat(wrapped.queries, equalTo(4))
+    }
+
+    @Test
+    fun `#query does not cache results with more than max rows`() {
+        val wrapped = CountingEntitiesRepository(InMemEntitiesRepository())
+        val repository = CachingEntitiesRepository(wrapped, maxRows = 1)
+        repository.save(
+            "wines",
+            Entity.New("1", "Léoville Barton 2008"),
+            Entity.New("2", "Pontet-Canet 2009")
+        )
+
+        val query = Query.StringStartsWith(EntitySchema.ID, "")
+        repository.query("wines", query)
+        repository.query("wines", query)
+        assertThat(wrapped.queries, equalTo(2))
+    }
+}
+
+private class CountingEntitiesRepository(private val wrapped: EntitiesRepository) :
+    EntitiesRepository by wrapped {
+
+    var queries = 0
+        private set
+
+    override fun query(list: String, query: Query?, projection: Set<String>?): List<Entity.Saved> {
+        queries += 1
+        return wrapped.query(list, query, projection)
+    }
+}
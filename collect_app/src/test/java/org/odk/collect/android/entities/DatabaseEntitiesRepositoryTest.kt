@@ -1,15 +1,24 @@
 package org.odk.collect.android.entities
 
+import android.database.sqlite.SQLiteDatabase
 import androidx.test.core.app.ApplicationProvider
 import androidx.test.ext.junit.runners.AndroidJUnit4
 import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.contains
+import org.hamcrest.Matchers.equalTo
+import org.hamcrest.Matchers.hasItem
+import org.hamcrest.Matchers.hasItems
+import org.hamcrest.Matchers.not
 import org.junit.Test
 import org.junit.runner.RunWith
 import org.odk.collect.android.database.entities.DatabaseEntitiesRepository
 import org.odk.collect.android.entities.support.EntitySameAsMatcher.Companion.sameEntityAs
+import org.odk.collect.db.sqlite.CursorExt.foldAndClose
 import org.odk.collect.entities.storage.EntitiesRepository
 import org.odk.collect.entities.storage.Entity
+import org.odk.collect.shared.Query
 import org.odk.collect.shared.TempFiles
+import java.io.File
 
 @RunWith(AndroidJUnit4::class)
 class DatabaseEntitiesRepositoryTest : EntitiesRepositoryTest() {
@@ -36,4 +45,85 @@ class DatabaseEntitiesRepositoryTest : EntitiesRepositoryTest() {
         repository.save("things", savedEntity)
         assertThat(repository.query("things")[0], sameEntityAs(savedEntity))
     }
+
+    @Test
+    fun `#getWriteVersion changes after writes made by another repository for the same database`() {
+        val dbDir = TempFiles.createTempDir()
+        val repository = DatabaseEntitiesRepository(
+            ApplicationProvider.getApplicationContext(),
+            dbDir.absolutePath
+        )
+        val otherRepository = DatabaseEntitiesRepository(
+            ApplicationProvider.getApplicationContext(),
+            dbDir.absolutePath
+        )
+
+        val before = repository.getWriteVersion()
+        otherRepository.save("things", Entity.New("1", "One"))
+        assertThat(repository.getWriteVersion(), not(equalTo(before)))
+    }
+
+    @Test
+    fun `#save does not create indexes for property columns`() {
+        val dbDir = TempFiles.createTempDir()
+        val repository = DatabaseEntitiesRepository(
+            ApplicationProvider.getApplicationContext(),
+            dbDir.absolutePath
+        )
+
+        repository.save("things", Entity.New("1", "One", properties = listOf(Pair("village", "Springfield"))))
+        assertThat(getIndexes(dbDir), not(hasItem("things_p_village_index")))
+    }
+
+    @Test
+    fun `#query creates indexes for properties it filters on`() {
+        val dbDir = TempFiles.createTempDir()
+        val repository = DatabaseEntitiesRepository(
+            ApplicationProvider.getApplicationContext(),
+            dbDir.absolutePath,
+            { it.run() }
+        )
+
+        val properties = listOf(Pair("village", "Springfield"), Pair("size", "3"), Pair("color", "red"))
+        repository.save("things", Entity.New("1", "One", properties = properties))
+
+        val query = Query.And(
+            Query.StringEq("village", "Springfield"),
+            Query.NumericGt("size", 2.0)
+        )
+        assertThat(repository.query("things", query).map { it.id }, contains("1"))
+
+        val indexes = getIndexes(dbDir)
+        assertThat(indexes, hasItems("things_p_village_index", "things_p_size_numeric_index"))
+        assertThat(indexes, not(hasItem("things_p_color_index")))
+    }
+
+    @Test
+    fun `#query creates indexes for properties that are added after they are first filtered on`() {
+        val dbDir = TempFiles.createTempDir()
+        val repository = DatabaseEntitiesRepository(
+            ApplicationProvider.getApplicationContext(),
+            dbDir.absolutePath,
+            { it.run() }
+        )
+
+        repository.save("things", Entity.New("1", "One"))
+        repository.query("things", Query.StringEq("village", "Springfield"))
+        assertThat(getIndexes(dbDir), not(hasItem("things_p_village_index")))
+
+        repository.save("things", Entity.New("2", "Two", properties = listOf(Pair("village", "Springfield"))))
+        repository.query("things", Query.StringEq("village", "Springfield"))
+        assertThat(getIndexes(dbDir), hasItem("things_p_village_index"))
+    }
+
+    private fun getIndexes(dbDir: File): List<String> {
+        return SQLiteDatabase.openDatabase(
+            File(dbDir, "entities.db").absolutePath,
+            null,
+            SQLiteDatabase.OPEN_READONLY
+        ).use { db ->
+            db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index'", null)
+                .foldAndClose { it.getString(0) }
+        }
+    }
 }
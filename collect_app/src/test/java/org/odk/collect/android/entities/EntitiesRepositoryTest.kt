@@ -7,6 +7,7 @@ import org.hamcrest.Matchers.equalTo
 import org.junit.Ignore
 import org.junit.Test
 import org.odk.collect.android.entities.support.EntitySameAsMatcher.Companion.sameEntityAs
+import org.odk.collect.entities.javarosa.parse.EntitySchema
 import org.odk.collect.entities.storage.EntitiesRepository
 import org.odk.collect.entities.storage.Entity
 import org.odk.collect.entities.storage.EntityList
@@ -139,6 +140,20 @@ abstract class EntitiesRepositoryTest {
         assertThat(wines[0].properties, contains("window" to "2019-2038", "score" to "92"))
     }
 
+    @Test
+    fun `#save adds new properties from every entity being saved`() {
+        val repository = buildSubject()
+
+        val wine1 = Entity.New("1", "Léoville Barton 2008", properties = listOf("window" to "2019-2038"))
+        val wine2 = Entity.New("2", "Chateau Pontet Canet", properties = listOf("score" to "92"))
+        repository.save("wines", wine1, wine2)
+
+        val wines = repository.query("wines")
+        assertThat(wines.size, equalTo(2))
+        assertThat(wines[0].properties, contains("window" to "2019-2038", "score" to ""))
+        assertThat(wines[1].properties, contains("window" to "", "score" to "92"))
+    }
+
     @Test
     fun `#save adds new properties for lists with dashes`() {
         val repository = buildSubject()
@@ -301,6 +316,21 @@ abstract class EntitiesRepositoryTest {
         assertThat(repository.query("wines").size, equalTo(2))
     }
 
+    @Test
+    fun `#save can update existing entities and save new ones at the same time`() {
+        val repository = buildSubject()
+
+        val wine1 = Entity.New("1", "Léoville Barton 2008", properties = listOf(Pair("vintage", "2008")))
+        repository.save("wines", wine1)
+
+        val updatedWine1 = wine1.copy(version = 2, properties = listOf(Pair("vintage", "2009")))
+        val wine2 = Entity.New("2", "Chateau Pontet Canet", properties = listOf(Pair("vintage", "2014")))
+        repository.save("wines", updatedWine1, wine2)
+
+        val wines = repository.query("wines")
+        assertThat(wines, contains(sameEntityAs(updatedWine1), sameEntityAs(wine2)))
+    }
+
     @Test
     fun `#save assigns an index to each entity in insert order when saving multiple entities`() {
         /**
@@ -497,6 +527,49 @@ abstract class EntitiesRepositoryTest {
         assertThat(repository.getByIndex("wine", 0), equalTo(null))
     }
 
+    @Test
+    fun `#getByIndexRange returns entities in range`() {
+        val repository = buildSubject()
+
+        val springbank = Entity.New("1", "Springbank 10")
+        val aultmore = Entity.New("2", "Aultmore 12")
+        val glenfarclas = Entity.New("3", "Glenfarclas 15")
+        val ardbeg = Entity.New("4", "Ardbeg 10")
+        repository.save("whiskys", springbank, aultmore, glenfarclas, ardbeg)
+
+        assertThat(
+            repository.getByIndexRange("whiskys", 1, 2),
+            contains(sameEntityAs(aultmore), sameEntityAs(glenfarclas))
+        )
+        assertThat(
+            repository.getByIndexRange("whiskys", 3, 2),
+            contains(sameEntityAs(ardbeg))
+        )
+        assertThat(repository.getByIndexRange("whiskys", 4, 2).isEmpty(), equalTo(true))
+    }
+
+    @Test
+    fun `#getByIndexRange returns empty list when the list does not exist`() {
+        val repository = buildSubject()
+        assertThat(repository.getByIndexRange("wine", 0, 10).isEmpty(), equalTo(true))
+    }
+
+    @Test
+    fun `#query returns matching entities with in selection arguments`() {
+        val repository = buildSubject()
+
+        val springbank = Entity.New("1", "Springbank 10")
+        val aultmore = Entity.New("2", "Aultmore 12")
+        val glenfarclas = Entity.New("3", "Glenfarclas 15")
+        repository.save("whiskys", springbank, aultmore, glenfarclas)
+
+        val query = Query.StringIn(EntitySchema.ID, listOf("1", "3"))
+        assertThat(
+            repository.query("whiskys", query),
+            contains(sameEntityAs(springbank), sameEntityAs(glenfarclas))
+        )
+    }
+
     @Test
     fun `#getByIndex supports list names with dots and dashes`() {
         val repository = buildSubject()
@@ -597,6 +670,96 @@ abstract class EntitiesRepositoryTest {
         assertThat(wines, containsInAnyOrder(sameEntityAs(canet)))
     }
 
+    @Test
+    fun `#query with numeric comparisons does not match values that are not numbers`() {
+        val repository = buildSubject()
+
+        val three = Entity.New("1", "Three", properties = listOf("score" to "3"))
+        val text = Entity.New("2", "Text", properties = listOf("score" to "abc"))
+        val numericPrefix = Entity.New("3", "Numeric prefix", properties = listOf("score" to "2abc"))
+        val blank = Entity.New("4", "Blank", properties = listOf("score" to ""))
+        repository.save("things", three, text, numericPrefix, blank)
+
+        assertThat(
+            repository.query("things", Query.NumericLt("score", 5.0)),
+            containsInAnyOrder(sameEntityAs(three))
+        )
+        assertThat(
+            repository.query("things", Query.Not(Query.NumericLt("score", 5.0))),
+            containsInAnyOrder(sameEntityAs(text), sameEntityAs(numericPrefix), sameEntityAs(blank))
+        )
+    }
+
+    @Test
+    fun `#query with StringContainsToken matches values in space separated lists`() {
+        val repository = buildSubject()
+
+        val redAndBlue = Entity.New("1", "Red and blue", properties = listOf("tags" to "red blue"))
+        val reddish = Entity.New("2", "Reddish", properties = listOf("tags" to "reddish"))
+        val blueRedGreen = Entity.New("3", "Blue, red and green", properties = listOf("tags" to "blue red green"))
+        val upperCase = Entity.New("4", "Upper case", properties = listOf("tags" to "RED"))
+        repository.save("things", redAndBlue, reddish, blueRedGreen, upperCase)
+
+        assertThat(
+            repository.query("things", Query.StringContainsToken("tags", "red")),
+            containsInAnyOrder(sameEntityAs(redAndBlue), sameEntityAs(blueRedGreen))
+        )
+    }
+
+    @Test
+    fun `#query with StringIsTokenIn matches trimmed values that are in a space separated list`() {
+        val repository = buildSubject()
+
+        val red = Entity.New("1", "Red", properties = listOf("color" to "red"))
+        val blue = Entity.New("2", "Blue", properties = listOf("color" to " blue "))
+        val green = Entity.New("3", "Green", properties = listOf("color" to "green"))
+        val redBlue = Entity.New("4", "Red blue", properties = listOf("color" to "red blue"))
+        repository.save("things", red, blue, green, redBlue)
+
+        assertThat(
+            repository.query("things", Query.StringIsTokenIn("color", "red blue yellow")),
+            containsInAnyOrder(sameEntityAs(red), sameEntityAs(blue), sameEntityAs(redBlue))
+        )
+    }
+
+    @Test
+    fun `#query with projection only includes projected properties`() {
+        val repository = buildSubject()
+
+        val leoville = Entity.New(
+            "1",
+            "Léoville Barton 2008",
+            properties = listOf("vintage" to "2008", "score" to "92", "window" to "2019-2038")
+        )
+        repository.save("wines", leoville)
+
+        val wines = repository.query(
+            "wines",
+            Query.StringEq("vintage", "2008"),
+            projection = setOf("score", "window")
+        )
+        assertThat(wines.size, equalTo(1))
+        assertThat(wines[0].id, equalTo("1"))
+        assertThat(wines[0].label, equalTo("Léoville Barton 2008"))
+        assertThat(wines[0].properties, containsInAnyOrder("score" to "92", "window" to "2019-2038"))
+    }
+
+    @Test
+    fun `#query with projection ignores properties that do not exist`() {
+        val repository = buildSubject()
+
+        val leoville = Entity.New(
+            "1",
+            "Léoville Barton 2008",
+            properties = listOf("vintage" to "2008")
+        )
+        repository.save("wines", leoville)
+
+        val wines = repository.query("wines", projection = setOf("score"))
+        assertThat(wines.size, equalTo(1))
+        assertThat(wines[0].properties.isEmpty(), equalTo(true))
+    }
+
     @Test
     fun `#query returns empty list when there are no matches`() {
         val repository = buildSubject()
@@ -789,6 +952,26 @@ abstract class EntitiesRepositoryTest {
         assertThat(whiskys[0], sameEntityAs(whisky))
     }
 
+    @Test
+    fun `#getWriteVersion changes after each write`() {
+        val repository = buildSubject()
+        val versions = mutableListOf(repository.getWriteVersion())
+
+        repository.addList("wines")
+        versions.add(repository.getWriteVersion())
+
+        repository.save("wines", Entity.New("1", "Léoville Barton 2008"))
+        versions.add(repository.getWriteVersion())
+
+        repository.updateList("wines", "hash", false)
+        versions.add(repository.getWriteVersion())
+
+        repository.delete("wines", "1")
+        versions.add(repository.getWriteVersion())
+
+        assertThat(versions.distinct().size, equalTo(versions.size))
+    }
+
     @Test
     @Ignore("https://github.com/getodk/collect/issues/6615")
     fun `#query returns entities when searching for empty string for property that doesn't exist`() {
@@ -24,7 +24,6 @@ import org.javarosa.core.model.instance.TreeReference;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.robolectric.annotation.LooperMode;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -48,8 +47,7 @@ import static org.odk.collect.android.formentry.audit.AuditEvent.AuditEventType.
 import static org.odk.collect.android.formentry.audit.AuditEvent.AuditEventType.QUESTION;
 
 @RunWith(AndroidJUnit4.class)
-@LooperMode(LooperMode.Mode.LEGACY)
-public class AsyncTaskAuditEventWriterTest {
+public class BufferedAuditEventWriterTest {
 
     private File auditFile;
 
@@ -60,8 +58,9 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void saveAuditWithLocation() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, true, false, false, false);
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, true, false, false, false);
         writer.writeEvents(getSampleAuditEventsWithLocations());
+        writer.flush(true);
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end,latitude,longitude,accuracy\n" +
@@ -84,8 +83,9 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void saveAuditWithLocationAndTrackingChanges() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, true, true, false, false);
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, true, true, false, false);
         writer.writeEvents(getSampleAuditEventsWithLocationsAndTrackingChanges());
+        writer.flush(true);
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end,latitude,longitude,accuracy,old-value,new-value\n" +
@@ -104,8 +104,9 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void saveAuditWithUser() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, true, false);
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, false, false, true, false);
         writer.writeEvents(getSampleAuditEventsWithUser());
+        writer.flush(true);
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end,user\n" +
@@ -126,11 +127,12 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void saveAuditWithChangeReason() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, false, true);
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, false, false, false, true);
         writer.writeEvents(asList(
                 new AuditEvent(1548108900606L, FORM_RESUME, null, null, null, null),
                 new AuditEvent(1548108900606L, CHANGE_REASON, null, null, null, "A good reason")
         ));
+        writer.flush(true);
 
         String auditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end,change-reason\n" +
@@ -141,11 +143,12 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void whenChangeReasonHasCommaOrQuotes_escapesThem() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, false, true);
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, false, false, false, true);
         writer.writeEvents(asList(
                 new AuditEvent(1548108900606L, FORM_RESUME, null, null, null, null),
                 new AuditEvent(1548108900606L, CHANGE_REASON, null, null, null, "A \"good\", reason")
         ));
+        writer.flush(true);
 
         String auditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end,change-reason\n" +
@@ -156,11 +159,12 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void whenUserHasCommaOrQuotes_escapesThem() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, true, false);
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, false, false, true, false);
 
         List<AuditEvent> auditEvents = getSampleAuditEventsWithUser().subList(0, 1);
         auditEvents.get(0).setUser("User,\"1\"");
         writer.writeEvents(auditEvents);
+        writer.flush(true);
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end,user\n" +
@@ -168,6 +172,21 @@ public class AsyncTaskAuditEventWriterTest {
         assertEquals(expectedData, expectedAuditContent);
     }
 
+    @Test
+    public void whenWritingAfterFlush_appendsToExistingLog() throws Exception {
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, false, false, false, false);
+        writer.writeEvents(asList(new AuditEvent(1548108900606L, FORM_RESUME, null, null, null, null)));
+        writer.flush(true);
+        writer.writeEvents(asList(new AuditEvent(1548108900607L, FORM_EXIT, null, null, null, null)));
+        writer.flush(true);
+
+        String auditContent = FileUtils.readFileToString(auditFile);
+        String expectedData = "event,node,start,end\n" +
+                "form resume,,1548108900606,\n" +
+                "form exit,,1548108900607,\n";
+        assertEquals(expectedData, auditContent);
+    }
+
     /**
      * A user could update the app and then resume form entry. In this case it would be possible
      * for the form to have an audit config that wasn't supported by the old app. In this case
@@ -176,8 +195,9 @@ public class AsyncTaskAuditEventWriterTest {
     @Test
     public void whenAppUpdatedBetweenInstances_updatesHeader() throws Exception {
         // Use a form with enabled audit but without location
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, false, false);
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, false, false, false, false);
         writer.writeEvents(getSampleAuditEventsWithoutLocations());
+        writer.flush(true);
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end\n" +
@@ -195,8 +215,9 @@ public class AsyncTaskAuditEventWriterTest {
         assertEquals(expectedData, expectedAuditContent);
 
         // Upgrade a form to use location
-        writer = new AsyncTaskAuditEventWriter(auditFile, true, false, false, false);
+        writer = new BufferedAuditEventWriter(auditFile, true, false, false, false);
         writer.writeEvents(getMoreSampleAuditEventsWithLocations());
+        writer.flush(true);
 
         expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData2 = "event,node,start,end,latitude,longitude,accuracy\n" +
@@ -223,8 +244,9 @@ public class AsyncTaskAuditEventWriterTest {
         assertEquals(expectedData2, expectedAuditContent);
 
         // Upgrade a form to use location and tracking changes
-        writer = new AsyncTaskAuditEventWriter(auditFile, true, true, false, false);
+        writer = new BufferedAuditEventWriter(auditFile, true, true, false, false);
         writer.writeEvents(getMoreSampleAuditEventsWithLocationsAndTrackingChanges());
+        writer.flush(true);
 
         expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData3 = "event,node,start,end,latitude,longitude,accuracy,old-value,new-value\n" +
@@ -259,8 +281,9 @@ public class AsyncTaskAuditEventWriterTest {
         assertEquals(expectedData3, expectedAuditContent);
 
         // Upgrade a form to use location and tracking changes and user
-        writer = new AsyncTaskAuditEventWriter(auditFile, true, true, true, false);
+        writer = new BufferedAuditEventWriter(auditFile, true, true, true, false);
         writer.writeEvents(getMoreSampleAuditEventsWithLocationsAndTrackingChangesAndUser());
+        writer.flush(true);
 
         expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData4 = "event,node,start,end,latitude,longitude,accuracy,old-value,new-value,user\n" +
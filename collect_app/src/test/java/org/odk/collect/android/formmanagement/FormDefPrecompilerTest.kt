@@ -0,0 +1,81 @@
+package org.odk.collect.android.formmanagement
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
+import org.hamcrest.Matchers.`is`
+import org.hamcrest.Matchers.notNullValue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.odk.collect.android.utilities.ExternalizableFormDefCache
+import org.odk.collect.formstest.FormUtils
+import org.odk.collect.shared.TempFiles
+import java.util.concurrent.Executor
+
+@RunWith(AndroidJUnit4::class)
+class FormDefPrecompilerTest {
+
+    private val cacheDir = TempFiles.createTempDir()
+    private val formDefCache = ExternalizableFormDefCache(cacheDir)
+    private val queued = mutableListOf<Runnable>()
+
+    private val precompiler = FormDefPrecompiler(formDefCache, Executor { queued.add(it) })
+
+    @Test
+    fun `schedule() parses the form and writes it to the cache in the background`() {
+        val formFile = FormUtils.createXFormFile("formId", "1")
+
+        precompiler.schedule(formFile)
+        assertThat(formDefCache.isCached(formFile), `is`(false))
+
+        runQueued()
+        assertThat(formDefCache.isCached(formFile), `is`(true))
+        assertThat(formDefCache.readCache(formFile)?.mainInstance, notNullValue())
+    }
+
+    @Test
+    fun `schedule() only queues a form once while it is waiting to be precompiled`() {
+        val formFile = FormUtils.createXFormFile("formId", "1")
+
+        precompiler.schedule(formFile)
+        precompiler.schedule(formFile)
+        assertThat(queued.size, equalTo(1))
+
+        runQueued()
+        precompiler.schedule(formFile)
+        assertThat(queued.size, equalTo(1))
+    }
+
+    @Test
+    fun `schedule() does not cache forms with external secondary instances`() {
+        val formFile = TempFiles.createTempFile(".xml")
+        formFile.writeText(
+            FormUtils.createXFormBody("formId", "1").replace(
+                "</instance>",
+                "</instance><instance id=\"things\" src=\"jr://file/things.xml\"/>"
+            )
+        )
+
+        precompiler.schedule(formFile)
+        runQueued()
+
+        assertThat(formDefCache.isCached(formFile), `is`(false))
+    }
+
+    @Test
+    fun `schedule() does not cache forms that can't be parsed`() {
+        val formFile = TempFiles.createTempFile(".xml")
+        formFile.writeText("<h:html>")
+
+        precompiler.schedule(formFile)
+        runQueued()
+
+        assertThat(formDefCache.isCached(formFile), `is`(false))
+    }
+
+    private fun runQueued() {
+        val tasks = queued.toList()
+        queued.clear()
+        tasks.forEach { it.run() }
+    }
+}
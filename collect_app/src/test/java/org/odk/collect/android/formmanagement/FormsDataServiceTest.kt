@@ -30,10 +30,12 @@ import org.odk.collect.forms.FormListItem
 import org.odk.collect.forms.FormSource
 import org.odk.collect.forms.FormSourceException
 import org.odk.collect.formstest.FormUtils
+import org.odk.collect.formstest.InMemMediaFileHashIndex
 import org.odk.collect.projects.Project
 import org.odk.collect.settings.keys.ProjectKeys
 import org.odk.collect.shared.locks.BooleanChangeLock
 import org.odk.collect.shared.strings.Md5.getMd5Hash
+import java.io.File
 
 @RunWith(AndroidJUnit4::class)
 class FormsDataServiceTest {
@@ -74,6 +76,8 @@ class FormsDataServiceTest {
             { formSource },
             mock(),
             mock(),
+            mock(),
+            { InMemMediaFileHashIndex() },
             mock()
         )
 
@@ -260,6 +264,20 @@ class FormsDataServiceTest {
         whenever(formSource.fetchForm("http://$formId")).doAnswer { updatedXForm.byteInputStream() }
     }
 
+    @Test
+    fun `refresh() evicts cached FormDefs for forms that are no longer on the device`() {
+        addFormLocally(project, "formId", "1")
+        val form = formsRepositoryProvider.create(project.uuid).all.first()
+
+        val cacheDir = File(storagePathProvider.getOdkDirPath(StorageSubdirectory.CACHE, project.uuid)).also { it.mkdirs() }
+        val formFormDef = File(cacheDir, form.mD5Hash + ".formdef").also { it.createNewFile() }
+        val deletedFormFormDef = File(cacheDir, "deleted.formdef").also { it.createNewFile() }
+
+        formsDataService.refresh(project.uuid)
+        assertThat(formFormDef.exists(), equalTo(true))
+        assertThat(deletedFormFormDef.exists(), equalTo(false))
+    }
+
     private fun addFormLocally(project: Project.Saved, formId: String, formVersion: String) {
         val formsDir = storagePathProvider.getOdkDirPath(StorageSubdirectory.FORMS, project.uuid)
         val formsRepository = formsRepositoryProvider.create(project.uuid)
@@ -1,19 +1,31 @@
 package org.odk.collect.android.formmanagement;
 
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.apache.commons.io.FileUtils;
 import org.junit.Test;
+import org.junit.runner.RunWith;
 import org.odk.collect.forms.Form;
 import org.odk.collect.forms.instances.Instance;
 import org.odk.collect.formstest.FormUtils;
 import org.odk.collect.formstest.InMemFormsRepository;
 import org.odk.collect.formstest.InMemInstancesRepository;
+import org.odk.collect.formstest.InMemMediaFileHashIndex;
 import org.odk.collect.shared.TempFiles;
 
+import java.io.File;
+import java.nio.charset.Charset;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.is;
 import static org.odk.collect.formstest.InstanceUtils.buildInstance;
 
+@RunWith(AndroidJUnit4.class)
 public class LocalFormUseCasesTest {
 
     private final InMemFormsRepository formsRepository = new InMemFormsRepository();
@@ -127,4 +139,85 @@ public class LocalFormUseCasesTest {
         assertThat(forms.size(), is(1));
         assertThat(forms.get(0).getDbId(), is(2L));
     }
+
+    @Test
+    public void synchronizeWithDisk_addsFormsInFormsDir() throws Exception {
+        File formsDir = TempFiles.createTempDir();
+        for (int i = 0; i < 5; i++) {
+            FileUtils.writeStringToFile(new File(formsDir, "form" + i + ".xml"), FormUtils.createXFormBody("id" + i, "1", "Form " + i), Charset.defaultCharset());
+        }
+
+        String result = LocalFormUseCases.synchronizeWithDisk(formsRepository, formsDir.getAbsolutePath());
+        assertThat(result, is(""));
+
+        List<Form> forms = formsRepository.getAll();
+        assertThat(forms.size(), is(5));
+        assertThat(forms.stream().map(Form::getFormId).sorted().collect(Collectors.toList()), contains("id0", "id1", "id2", "id3", "id4"));
+    }
+
+    @Test
+    public void synchronizeWithDisk_updatesChangedFormsAndRemovesMissingOnes() throws Exception {
+        File formsDir = TempFiles.createTempDir();
+        File changedForm = new File(formsDir, "changed.xml");
+        File deletedForm = new File(formsDir, "deleted.xml");
+        FileUtils.writeStringToFile(changedForm, FormUtils.createXFormBody("changed", "1", "Old title"), Charset.defaultCharset());
+        FileUtils.writeStringToFile(deletedForm, FormUtils.createXFormBody("deleted", "1"), Charset.defaultCharset());
+        LocalFormUseCases.synchronizeWithDisk(formsRepository, formsDir.getAbsolutePath());
+
+        FileUtils.writeStringToFile(changedForm, FormUtils.createXFormBody("changed", "1", "New title"), Charset.defaultCharset());
+        deletedForm.delete();
+        LocalFormUseCases.synchronizeWithDisk(formsRepository, formsDir.getAbsolutePath());
+
+        List<Form> forms = formsRepository.getAll();
+        assertThat(forms.size(), is(1));
+        assertThat(forms.get(0).getDisplayName(), is("New title"));
+    }
+
+    @Test
+    public void synchronizeWithDisk_renamesFormsThatCanNotBeParsedAndReturnsError() throws Exception {
+        File formsDir = TempFiles.createTempDir();
+        FileUtils.writeStringToFile(new File(formsDir, "good.xml"), FormUtils.createXFormBody("good", "1"), Charset.defaultCharset());
+        FileUtils.writeStringToFile(new File(formsDir, "bad.xml"), "<blah>", Charset.defaultCharset());
+
+        String result = LocalFormUseCases.synchronizeWithDisk(formsRepository, formsDir.getAbsolutePath());
+        assertThat(result, containsString("bad.xml"));
+        assertThat(formsRepository.getAll().size(), is(1));
+        assertThat(new File(formsDir, "bad.xml.bad").exists(), is(true));
+    }
+
+    @Test
+    public void synchronizeWithDisk_whenHashIndexIsPassed_doesNotHashUnchangedFormsAgain() throws Exception {
+        File formsDir = TempFiles.createTempDir();
+        for (int i = 0; i < 3; i++) {
+            FileUtils.writeStringToFile(new File(formsDir, "form" + i + ".xml"), FormUtils.createXFormBody("id" + i, "1"), Charset.defaultCharset());
+        }
+
+        InMemMediaFileHashIndex hashIndex = new InMemMediaFileHashIndex();
+        LocalFormUseCases.synchronizeWithDisk(formsRepository, formsDir.getAbsolutePath(), hashIndex);
+        LocalFormUseCases.synchronizeWithDisk(formsRepository, formsDir.getAbsolutePath(), hashIndex);
+
+        hashIndex.getHashedFiles().clear();
+        LocalFormUseCases.synchronizeWithDisk(formsRepository, formsDir.getAbsolutePath(), hashIndex);
+        assertThat(hashIndex.getHashedFiles(), is(empty()));
+        assertThat(formsRepository.getAll().size(), is(3));
+    }
+
+    @Test
+    public void synchronizeWithDisk_whenHashIndexIsPassed_removesHashesForDeletedForms() throws Exception {
+        File formsDir = TempFiles.createTempDir();
+        File deletedForm = new File(formsDir, "deleted.xml");
+        File keptForm = new File(formsDir, "kept.xml");
+        FileUtils.writeStringToFile(deletedForm, FormUtils.createXFormBody("deleted", "1"), Charset.defaultCharset());
+        FileUtils.writeStringToFile(keptForm, FormUtils.createXFormBody("kept", "1"), Charset.defaultCharset());
+
+        InMemMediaFileHashIndex hashIndex = new InMemMediaFileHashIndex();
+        LocalFormUseCases.synchronizeWithDisk(formsRepository, formsDir.getAbsolutePath(), hashIndex);
+        LocalFormUseCases.synchronizeWithDisk(formsRepository, formsDir.getAbsolutePath(), hashIndex);
+        assertThat(hashIndex.contains(deletedForm), is(true));
+
+        deletedForm.delete();
+        LocalFormUseCases.synchronizeWithDisk(formsRepository, formsDir.getAbsolutePath(), hashIndex);
+        assertThat(hashIndex.contains(deletedForm), is(false));
+        assertThat(hashIndex.contains(keptForm), is(true));
+    }
 }
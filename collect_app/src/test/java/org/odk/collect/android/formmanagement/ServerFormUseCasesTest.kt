@@ -8,6 +8,8 @@ import org.mockito.Mockito.doAnswer
 import org.mockito.invocation.InvocationOnMock
 import org.mockito.kotlin.doReturn
 import org.mockito.kotlin.mock
+import org.mockito.kotlin.times
+import org.mockito.kotlin.verify
 import org.mockito.stubbing.Answer
 import org.odk.collect.android.formmanagement.download.FormDownloadException
 import org.odk.collect.android.formmanagement.download.FormDownloader
@@ -23,6 +25,11 @@ import org.odk.collect.formstest.InMemFormsRepository
 import org.odk.collect.shared.TempFiles
 import org.odk.collect.shared.strings.Md5.getMd5Hash
 import java.io.File
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Supplier
 
 class ServerFormUseCasesTest {
 
@@ -51,13 +58,79 @@ class ServerFormUseCasesTest {
 
         val results = ServerFormUseCases.downloadForms(
             serverForms,
-            formDownloader
+            formDownloader,
+            maxConcurrentDownloads = 1
         )
 
         assertThat(results.size, equalTo(1))
         assertThat(results[serverForms[0]], equalTo(null))
     }
 
+    @Test
+    fun `downloadForms downloads multiple forms at the same time`() {
+        val serverForms = listOf(
+            ServerFormDetails("1", "", "1", "", "", false, true, ManifestFile("", emptyList())),
+            ServerFormDetails("2", "", "2", "", "", false, true, ManifestFile("", emptyList()))
+        )
+
+        val bothDownloading = CountDownLatch(2)
+        val formDownloader = object : FormDownloader {
+            override fun downloadForm(
+                form: ServerFormDetails?,
+                progressReporter: FormDownloader.ProgressReporter?,
+                isCancelled: Supplier<Boolean?>?
+            ) {
+                bothDownloading.countDown()
+                if (!bothDownloading.await(1, TimeUnit.SECONDS)) {
+                    throw FormDownloadException.DiskError()
+                }
+            }
+        }
+
+        val results = ServerFormUseCases.downloadForms(
+            serverForms,
+            formDownloader,
+            maxConcurrentDownloads = 2
+        )
+
+        assertThat(results.size, equalTo(2))
+        assertThat(results[serverForms[0]], equalTo(null))
+        assertThat(results[serverForms[1]], equalTo(null))
+    }
+
+    @Test
+    fun `downloadForms returns exceptions for failed forms along with successful ones`() {
+        val serverForms = listOf(
+            ServerFormDetails("1", "", "1", "", "", false, true, ManifestFile("", emptyList())),
+            ServerFormDetails("2", "", "2", "", "", false, true, ManifestFile("", emptyList())),
+            ServerFormDetails("3", "", "3", "", "", false, true, ManifestFile("", emptyList()))
+        )
+
+        val exception = FormDownloadException.DiskError()
+        val formDownloader = object : FormDownloader {
+            override fun downloadForm(
+                form: ServerFormDetails?,
+                progressReporter: FormDownloader.ProgressReporter?,
+                isCancelled: Supplier<Boolean?>?
+            ) {
+                if (form == serverForms[1]) {
+                    throw exception
+                }
+            }
+        }
+
+        val results = ServerFormUseCases.downloadForms(
+            serverForms,
+            formDownloader,
+            maxConcurrentDownloads = 3
+        )
+
+        assertThat(results.keys.toList(), equalTo(serverForms))
+        assertThat(results[serverForms[0]], equalTo(null))
+        assertThat(results[serverForms[1]], equalTo(exception))
+        assertThat(results[serverForms[2]], equalTo(null))
+    }
+
     @Test
     fun `copySavedFileFromPreviousFormVersionIfExists does not copy any file if there is no matching last-saved file`() {
         val destinationMediaDirPath = TempFiles.createTempDir().absolutePath
@@ -226,4 +299,92 @@ class ServerFormUseCasesTest {
 
         assertThat(result, equalTo(MediaFilesDownloadResult(false, false)))
     }
+
+    @Test
+    fun `downloadMediaFiles downloads every media file when downloading concurrently`() {
+        val mediaFiles = 0.until(5).map { MediaFile("file$it", "hash$it", "downloadUrl$it") }
+        val serverFormDetails = ServerFormDetails(
+            null,
+            null,
+            "formId",
+            "1",
+            null,
+            true,
+            false,
+            ManifestFile(null, mediaFiles)
+        )
+
+        val formSource = mock<FormSource> {
+            mediaFiles.forEachIndexed { index, mediaFile ->
+                on { fetchMediaFile(mediaFile.downloadUrl) } doReturn "contents$index".toByteArray()
+                    .inputStream()
+            }
+        }
+
+        val tempMediaPath = File(TempFiles.createTempDir(), "temp").absolutePath
+        val result = ServerFormUseCases.downloadMediaFiles(
+            serverFormDetails,
+            formSource,
+            InMemFormsRepository(),
+            tempMediaPath,
+            TempFiles.createTempDir(),
+            InMemEntitiesRepository(),
+            mock(),
+            mock(),
+            executor = Executors.newFixedThreadPool(3)
+        )
+
+        assertThat(result, equalTo(MediaFilesDownloadResult(true, false)))
+        mediaFiles.forEachIndexed { index, mediaFile ->
+            assertThat(File(tempMediaPath, mediaFile.filename).readText(), equalTo("contents$index"))
+        }
+    }
+
+    @Test
+    fun `downloadMediaFiles does not download more files at once than the executor allows across forms`() {
+        val executor = Executors.newFixedThreadPool(2)
+        val inFlight = AtomicInteger(0)
+        val maxInFlight = AtomicInteger(0)
+
+        val formSource = mock<FormSource> {
+            on { fetchMediaFile(any()) }.thenAnswer {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet()) { a, b -> maxOf(a, b) }
+                Thread.sleep(20)
+                inFlight.decrementAndGet()
+                "contents".toByteArray().inputStream()
+            }
+        }
+
+        val downloads = listOf("form1", "form2").map { formId ->
+            val mediaFiles = 0.until(3).map { MediaFile("file$it", "hash$it", "$formId/downloadUrl$it") }
+            val serverFormDetails = ServerFormDetails(
+                null,
+                null,
+                formId,
+                "1",
+                null,
+                true,
+                false,
+                ManifestFile(null, mediaFiles)
+            )
+
+            Thread {
+                ServerFormUseCases.downloadMediaFiles(
+                    serverFormDetails,
+                    formSource,
+                    InMemFormsRepository(),
+                    File(TempFiles.createTempDir(), "temp").absolutePath,
+                    TempFiles.createTempDir(),
+                    InMemEntitiesRepository(),
+                    mock(),
+                    mock(),
+                    executor = executor
+                )
+            }.also { it.start() }
+        }
+
+        downloads.forEach { it.join() }
+        assertThat(maxInFlight.get() <= 2, equalTo(true))
+        verify(formSource, times(6)).fetchMediaFile(any())
+    }
 }
@@ -2,26 +2,34 @@ package org.odk.collect.android.formmanagement
 
 import org.hamcrest.MatcherAssert.assertThat
 import org.hamcrest.Matchers.contains
+import org.hamcrest.Matchers.empty
 import org.hamcrest.Matchers.`is`
+import org.hamcrest.Matchers.notNullValue
 import org.hamcrest.Matchers.nullValue
 import org.junit.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.doAnswer
 import org.mockito.kotlin.doReturn
 import org.mockito.kotlin.mock
 import org.mockito.kotlin.whenever
 import org.odk.collect.forms.Form
 import org.odk.collect.forms.FormListItem
 import org.odk.collect.forms.FormSource
+import org.odk.collect.forms.FormSourceException
 import org.odk.collect.forms.FormsRepository
 import org.odk.collect.forms.ManifestFile
 import org.odk.collect.forms.MediaFile
 import org.odk.collect.formstest.FormUtils
 import org.odk.collect.formstest.InMemFormsRepository
+import org.odk.collect.formstest.InMemMediaFileHashIndex
 import org.odk.collect.shared.TempFiles
 import org.odk.collect.shared.strings.Md5.getMd5Hash
 import java.io.BufferedWriter
 import java.io.ByteArrayInputStream
 import java.io.File
 import java.io.FileWriter
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
 
 class ServerFormsDetailsFetcherTest {
 
@@ -35,8 +43,10 @@ class ServerFormsDetailsFetcherTest {
         )
     }
 
+    private val mediaFileHashIndex = InMemMediaFileHashIndex()
+
     private val fetcher =
-        ServerFormsDetailsFetcher(formsRepository, formSource)
+        ServerFormsDetailsFetcher(formsRepository, formSource, mediaFileHashIndex)
 
     @Test
     fun whenFormHasManifestUrl_returnsMediaFilesInDetails() {
@@ -52,6 +62,31 @@ class ServerFormsDetailsFetcherTest {
         )
     }
 
+    @Test
+    fun fetchesManifestsAtTheSameTime() {
+        val otherFormWithManifest = FORM_WITH_MANIFEST.copy(
+            formID = "form-3",
+            manifestURL = "http://example.com/form-3-other-manifest"
+        )
+        whenever(formSource.fetchFormList()).thenReturn(
+            listOf(FORM_WITH_MANIFEST, otherFormWithManifest)
+        )
+
+        val bothFetching = CountDownLatch(2)
+        whenever(formSource.fetchManifest(any())).doAnswer {
+            bothFetching.countDown()
+            if (bothFetching.await(1, TimeUnit.SECONDS)) {
+                ManifestFile("manifest-hash", listOf(MEDIA_FILE))
+            } else {
+                throw FormSourceException.FetchError()
+            }
+        }
+
+        val serverFormDetails = fetcher.fetchFormDetails()
+        assertThat(getFormFromList(serverFormDetails, "form-2").manifest, notNullValue())
+        assertThat(getFormFromList(serverFormDetails, "form-3").manifest, notNullValue())
+    }
+
     @Test
     fun whenFormDoesNotExist_isNotOnDevice() {
         whenever(formSource.fetchFormList()).thenReturn(listOf(FORM_WITHOUT_MANIFEST))
@@ -273,6 +308,31 @@ class ServerFormsDetailsFetcherTest {
         assertThat(form.isUpdated, `is`(false))
     }
 
+    @Test
+    fun whenFormExists_andMediaFilesExist_andHaveNotChanged_doesNotHashMediaFilesAgain() {
+        whenever(formSource.fetchFormList()).thenReturn(listOf(FORM_WITH_MANIFEST))
+
+        val mediaDir = TempFiles.createTempDir()
+        formsRepository.save(
+            Form.Builder()
+                .formId("form-2")
+                .version("2")
+                .md5Hash("form-2-hash")
+                .formFilePath(FormUtils.createXFormFile("form-2", "2").absolutePath)
+                .formMediaPath(mediaDir.absolutePath)
+                .build()
+        )
+        val mediaFile = TempFiles.createTempFile(mediaDir, "blah", ".csv")
+        writeToFile(mediaFile, FILE_CONTENT)
+
+        fetcher.fetchFormDetails()
+        mediaFileHashIndex.hashedFiles.clear()
+
+        val serverFormDetails = fetcher.fetchFormDetails()
+        assertThat(getFormFromList(serverFormDetails, "form-2").isUpdated, `is`(false))
+        assertThat(mediaFileHashIndex.hashedFiles, empty())
+    }
+
     @Test
     fun whenAFormExists_andIsUpdatedOnServer_andDoesNotHaveNewMedia_isUpdated() {
         whenever(formSource.fetchFormList()).thenReturn(listOf(FORM_WITH_MANIFEST))
@@ -0,0 +1,226 @@
+package org.odk.collect.android.formmanagement.download
+
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.contains
+import org.hamcrest.Matchers.emptyArray
+import org.hamcrest.Matchers.equalTo
+import org.junit.Assert.assertThrows
+import org.junit.Test
+import org.odk.collect.async.OngoingWorkListener
+import org.odk.collect.forms.FormListItem
+import org.odk.collect.forms.FormSource
+import org.odk.collect.forms.ManifestFile
+import org.odk.collect.forms.MediaFile
+import org.odk.collect.forms.MediaFileResponse
+import org.odk.collect.shared.TempFiles
+import org.odk.collect.shared.strings.Md5.getMd5Hash
+import java.io.File
+import java.io.IOException
+import java.io.InputStream
+
+class ResumableMediaFileDownloaderTest {
+
+    private val partialDownloadsDir = TempFiles.createTempDir()
+    private val destinationFile = File(TempFiles.createTempDir(), "file")
+    private val downloader = ResumableMediaFileDownloader(partialDownloadsDir)
+
+    @Test
+    fun `downloads file to destination and does not leave anything in partial downloads dir`() {
+        val formSource = RangeFormSource("contents")
+        val mediaFile = MediaFile("file", "contents".getMd5Hash()!!, "http://file")
+
+        downloader.download("formId", mediaFile, formSource, destinationFile, StubOngoingWorkListener())
+
+        assertThat(destinationFile.readText(), equalTo("contents"))
+        assertThat(partialDownloadsDir.listFiles(), emptyArray())
+    }
+
+    @Test
+    fun `when download fails part way, resumes from where it left off`() {
+        val formSource = RangeFormSource("contents", failAfter = listOf(3))
+        val mediaFile = MediaFile("file", "contents".getMd5Hash()!!, "http://file")
+
+        downloader.download("formId", mediaFile, formSource, destinationFile, StubOngoingWorkListener())
+
+        assertThat(destinationFile.readText(), equalTo("contents"))
+        assertThat(formSource.requestedOffsets, contains(0L, 3L))
+    }
+
+    @Test
+    fun `when download is cancelled, the next download resumes from where it left off`() {
+        val listener = StubOngoingWorkListener()
+        val formSource = RangeFormSource("contents", onRead = { if (it == 3) listener.isCancelled = true })
+        val mediaFile = MediaFile("file", "contents".getMd5Hash()!!, "http://file")
+
+        assertThrows(InterruptedException::class.java) {
+            downloader.download("formId", mediaFile, formSource, destinationFile, listener)
+        }
+
+        listener.isCancelled = false
+        downloader.download("formId", mediaFile, formSource, destinationFile, listener)
+
+        assertThat(destinationFile.readText(), equalTo("contents"))
+        assertThat(formSource.requestedOffsets, contains(0L, 3L))
+    }
+
+    @Test
+    fun `when resumed download does not match manifest hash, downloads the whole file again`() {
+        val formSource = RangeFormSource("contents", failAfter = listOf(3))
+        val mediaFile = MediaFile("file", "something else".getMd5Hash()!!, "http://file")
+
+        downloader.download("formId", mediaFile, formSource, destinationFile, StubOngoingWorkListener())
+
+        assertThat(destinationFile.readText(), equalTo("contents"))
+        assertThat(formSource.requestedOffsets, contains(0L, 3L, 0L))
+    }
+
+    @Test
+    fun `when server returns the whole file instead of the rest of it, does not append it`() {
+        val formSource = RangeFormSource("contents", failAfter = listOf(3), supportsRanges = false)
+        val mediaFile = MediaFile("file", "contents".getMd5Hash()!!, "http://file")
+
+        downloader.download("formId", mediaFile, formSource, destinationFile, StubOngoingWorkListener())
+
+        assertThat(destinationFile.readText(), equalTo("contents"))
+    }
+
+    @Test
+    fun `removeStalePartialDownloads removes partial downloads for the form that are not for requested media files`() {
+        val listener = StubOngoingWorkListener()
+        val formSource = RangeFormSource("contents", onRead = { if (it == 3) listener.isCancelled = true })
+        val oldMediaFile = MediaFile("file", "old".getMd5Hash()!!, "http://file")
+        val newMediaFile = MediaFile("file", "contents".getMd5Hash()!!, "http://file")
+
+        assertThrows(InterruptedException::class.java) {
+            downloader.download("formId", oldMediaFile, formSource, destinationFile, listener)
+        }
+        assertThat(partialDownloadsDir.listFiles()!!.size, equalTo(2))
+
+        downloader.removeStalePartialDownloads("formId", listOf(newMediaFile))
+        assertThat(partialDownloadsDir.listFiles(), emptyArray())
+    }
+
+    @Test
+    fun `removeStalePartialDownloads keeps partial downloads for requested media files and other forms`() {
+        val listener = StubOngoingWorkListener()
+        val formSource = RangeFormSource("contents", onRead = { if (it == 3) listener.isCancelled = true })
+        val mediaFile = MediaFile("file", "contents".getMd5Hash()!!, "http://file")
+
+        assertThrows(InterruptedException::class.java) {
+            downloader.download("formId", mediaFile, formSource, destinationFile, listener)
+        }
+
+        listener.isCancelled = false
+        assertThrows(InterruptedException::class.java) {
+            downloader.download("otherFormId", mediaFile, formSource, destinationFile, listener)
+        }
+        assertThat(partialDownloadsDir.listFiles()!!.size, equalTo(4))
+
+        downloader.removeStalePartialDownloads("formId", listOf(mediaFile))
+        assertThat(partialDownloadsDir.listFiles()!!.size, equalTo(4))
+
+        listener.isCancelled = false
+        downloader.download("formId", mediaFile, formSource, destinationFile, listener)
+        assertThat(formSource.requestedOffsets.last(), equalTo(3L))
+    }
+
+    @Test
+    fun `removeStalePartialDownloads removes old partial downloads for any form`() {
+        val listener = StubOngoingWorkListener()
+        val formSource = RangeFormSource("contents", onRead = { if (it == 3) listener.isCancelled = true })
+        val mediaFile = MediaFile("file", "contents".getMd5Hash()!!, "http://file")
+
+        assertThrows(InterruptedException::class.java) {
+            downloader.download("otherFormId", mediaFile, formSource, destinationFile, listener)
+        }
+
+        partialDownloadsDir.listFiles()!!.forEach { it.setLastModified(0) }
+        downloader.removeStalePartialDownloads("formId", emptyList())
+        assertThat(partialDownloadsDir.listFiles(), emptyArray())
+    }
+
+    private class RangeFormSource(
+        private val contents: String,
+        failAfter: List<Int> = emptyList(),
+        private val supportsRanges: Boolean = true,
+        private val onRead: (Int) -> Unit = {}
+    ) : FormSource {
+
+        val requestedOffsets = mutableListOf<Long>()
+        private val failAfter = failAfter.toMutableList()
+
+        override fun fetchMediaFile(
+            mediaFileURL: String,
+            offset: Long,
+            validator: String?
+        ): MediaFileResponse {
+            requestedOffsets.add(offset)
+
+            val partial = supportsRanges && offset > 0 && validator == VALIDATOR
+            val start = if (partial) offset.toInt() else 0
+            val failAt = failAfter.removeFirstOrNull()
+
+            return MediaFileResponse(
+                ContentsInputStream(contents.toByteArray(), start, failAt, onRead),
+                partial,
+                VALIDATOR
+            )
+        }
+
+        override fun fetchMediaFile(mediaFileURL: String): InputStream {
+            throw UnsupportedOperationException()
+        }
+
+        override fun fetchFormList(): List<FormListItem> {
+            throw UnsupportedOperationException()
+        }
+
+        override fun fetchManifest(manifestURL: String?): ManifestFile {
+            throw UnsupportedOperationException()
+        }
+
+        override fun fetchForm(formURL: String): InputStream {
+            throw UnsupportedOperationException()
+        }
+
+        companion object {
+            private const val VALIDATOR = "\"etag\""
+        }
+    }
+
+    /**
+     * Returns one byte per read so that failures and cancellation can happen at a specific point
+     */
+    private class ContentsInputStream(
+        private val contents: ByteArray,
+        private var position: Int,
+        private val failAt: Int?,
+        private val onRead: (Int) -> Unit
+    ) : InputStream() {
+
+        override fun read(): Int {
+            throw UnsupportedOperationException()
+        }
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int {
+            if (position == failAt) {
+                throw IOException()
+            }
+
+            if (position >= contents.size) {
+                return -1
+            }
+
+            b[off] = contents[position]
+            position++
+            onRead(position)
+            return 1
+        }
+    }
+
+    private class StubOngoingWorkListener : OngoingWorkListener {
+        override var isCancelled: Boolean = false
+
+        override fun progressUpdate(progress: Int) = Unit
+    }
+}
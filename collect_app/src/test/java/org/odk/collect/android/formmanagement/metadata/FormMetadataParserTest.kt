@@ -2,8 +2,12 @@ package org.odk.collect.android.formmanagement.metadata
 
 import org.hamcrest.MatcherAssert.assertThat
 import org.hamcrest.Matchers.equalTo
+import org.hamcrest.Matchers.`is`
+import org.junit.Assert.assertThrows
 import org.junit.Test
+import org.odk.collect.android.formmanagement.metadata.FormMetadataParser.hasExternalSecondaryInstances
 import org.odk.collect.android.formmanagement.metadata.FormMetadataParser.readMetadata
+import org.odk.collect.shared.TempFiles
 
 class FormMetadataParserTest {
 
@@ -421,4 +425,110 @@ class FormMetadataParserTest {
 
         assertThat(formMetadata.geometryXPath, equalTo("/data/location2"))
     }
+
+    @Test
+    fun readMetadata_ignoresElementsInSecondaryInstances() {
+        val formMetadata = readMetadata(
+            """
+                <?xml version="1.0"?>
+                <h:html xmlns:h="http://www.w3.org/1999/xhtml"
+                        xmlns="http://www.w3.org/2002/xforms">
+                    <h:head>
+                        <h:title>Secondary instance</h:title>
+                        <model>
+                            <instance>
+                                <data id="secondary-instance">
+                                    <location />
+                                </data>
+                            </instance>
+                            <instance id="things">
+                                <root>
+                                    <submission action="foo" />
+                                    <bind nodeset="/data/location" type="geopoint" />
+                                    <title>Not the title</title>
+                                </root>
+                            </instance>
+                        </model>
+                    </h:head>
+                    <h:body>
+                    </h:body>
+                </h:html>
+            """.trimIndent().byteInputStream()
+        )
+
+        assertThat(formMetadata.title, equalTo("Secondary instance"))
+        assertThat(formMetadata.id, equalTo("secondary-instance"))
+        assertThat(formMetadata.submissionUri, equalTo(null))
+        assertThat(formMetadata.geometryXPath, equalTo(null))
+    }
+
+    @Test
+    fun readMetadata_withInvalidXml_throwsRuntimeException() {
+        assertThrows(RuntimeException::class.java) {
+            readMetadata(
+                """
+                    <?xml version="1.0"?>
+                    <h:html xmlns:h="http://www.w3.org/1999/xhtml"
+                            xmlns="http://www.w3.org/2002/xforms">
+                        <h:head>
+                            <h:title>Broken</h:title>
+                            <model>
+                    </h:html>
+                """.trimIndent().byteInputStream()
+            )
+        }
+    }
+
+    @Test
+    fun hasExternalSecondaryInstances_returnsWhetherAnyInstancesHaveASrc() {
+        val formWithoutExternalInstances = TempFiles.createTempFile(".xml")
+        formWithoutExternalInstances.writeText(
+            """
+                <?xml version="1.0"?>
+                <h:html xmlns:h="http://www.w3.org/1999/xhtml"
+                        xmlns="http://www.w3.org/2002/xforms">
+                    <h:head>
+                        <h:title>Internal</h:title>
+                        <model>
+                            <instance>
+                                <data id="internal">
+                                    <instance src="jr://file/not-an-instance.xml" />
+                                </data>
+                            </instance>
+                            <instance id="things">
+                                <root />
+                            </instance>
+                        </model>
+                    </h:head>
+                    <h:body>
+                    </h:body>
+                </h:html>
+            """.trimIndent()
+        )
+
+        val formWithExternalInstances = TempFiles.createTempFile(".xml")
+        formWithExternalInstances.writeText(
+            """
+                <?xml version="1.0"?>
+                <h:html xmlns:h="http://www.w3.org/1999/xhtml"
+                        xmlns="http://www.w3.org/2002/xforms">
+                    <h:head>
+                        <h:title>External</h:title>
+                        <model>
+                            <instance>
+                                <data id="external">
+                                </data>
+                            </instance>
+                            <instance id="things" src="jr://file/things.xml" />
+                        </model>
+                    </h:head>
+                    <h:body>
+                    </h:body>
+                </h:html>
+            """.trimIndent()
+        )
+
+        assertThat(hasExternalSecondaryInstances(formWithoutExternalInstances), `is`(false))
+        assertThat(hasExternalSecondaryInstances(formWithExternalInstances), `is`(true))
+    }
 }
@@ -6,12 +6,17 @@ import org.hamcrest.MatcherAssert.assertThat
 import org.junit.Test
 import org.junit.runner.RunWith
 import org.mockito.kotlin.any
+import org.mockito.kotlin.anyOrNull
+import org.mockito.kotlin.doAnswer
 import org.mockito.kotlin.doReturn
 import org.mockito.kotlin.mock
+import org.mockito.kotlin.times
+import org.mockito.kotlin.verify
 import org.mockito.kotlin.verifyNoInteractions
 import org.mockito.kotlin.whenever
 import org.odk.collect.android.notifications.Notifier
 import org.odk.collect.android.projects.ProjectDependencyModule
+import org.odk.collect.android.upload.SubmissionTargetCache
 import org.odk.collect.android.utilities.ChangeLocks
 import org.odk.collect.androidshared.data.AppState
 import org.odk.collect.forms.instances.Instance.STATUS_COMPLETE
@@ -23,14 +28,22 @@ import org.odk.collect.forms.instances.Instance.STATUS_VALID
 import org.odk.collect.formstest.FormFixtures
 import org.odk.collect.formstest.InMemFormsRepository
 import org.odk.collect.formstest.InMemInstancesRepository
+import org.odk.collect.formstest.InMemMediaFileHashIndex
 import org.odk.collect.formstest.InstanceFixtures
+import org.odk.collect.openrosa.http.CaseInsensitiveEmptyHeaders
 import org.odk.collect.openrosa.http.HttpGetResult
+import org.odk.collect.openrosa.http.HttpHeadResult
+import org.odk.collect.openrosa.http.HttpPostResult
 import org.odk.collect.openrosa.http.OpenRosaHttpInterface
 import org.odk.collect.projects.ProjectDependencyFactory
 import org.odk.collect.settings.keys.ProjectKeys
+import org.odk.collect.shared.TempFiles
 import org.odk.collect.shared.locks.BooleanChangeLock
 import org.odk.collect.shared.settings.InMemSettings
 import java.io.File
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
 
 @RunWith(AndroidJUnit4::class)
 class InstancesDataServiceTest {
@@ -49,7 +62,9 @@ class InstancesDataServiceTest {
             mock(),
             mock(),
             mock(),
-            mock()
+            mock(),
+            { InMemMediaFileHashIndex() },
+            { SubmissionTargetCache(File(TempFiles.createTempDir(), "submission_targets.json")) }
         )
     }
 
@@ -116,6 +131,121 @@ class InstancesDataServiceTest {
         assertThat(result, equalTo(false))
     }
 
+    @Test
+    fun `sendInstances() sends instances for different forms at the same time`() {
+        val formsRepository = projectDependencyModule.formsRepository
+        val form1 = formsRepository.save(FormFixtures.form(formId = "form1"))
+        val form2 = formsRepository.save(FormFixtures.form(formId = "form2"))
+
+        val instancesRepository = projectDependencyModule.instancesRepository
+        instancesRepository.save(InstanceFixtures.instance(form = form1, status = STATUS_COMPLETE))
+        instancesRepository.save(InstanceFixtures.instance(form = form2, status = STATUS_COMPLETE))
+
+        whenever(httpInterface.executeHeadRequest(any(), anyOrNull()))
+            .doReturn(HttpHeadResult(204, CaseInsensitiveEmptyHeaders()))
+
+        val bothUploading = CountDownLatch(2)
+        whenever(httpInterface.uploadSubmissionAndFiles(any(), any(), any(), anyOrNull(), any()))
+            .doAnswer {
+                bothUploading.countDown()
+                bothUploading.await(1, TimeUnit.SECONDS)
+                HttpPostResult("", 500, "")
+            }
+
+        instancesDataService.sendInstances(projectId)
+        assertThat(bothUploading.count, equalTo(0L))
+    }
+
+    @Test
+    fun `sendInstances() sends instances for the same form one after another in the order they were finalized`() {
+        val formsRepository = projectDependencyModule.formsRepository
+        val form = formsRepository.save(FormFixtures.form())
+
+        val instancesRepository = projectDependencyModule.instancesRepository
+        val second = instancesRepository.save(InstanceFixtures.instance(form = form, status = STATUS_COMPLETE, lastStatusChangeDate = 2))
+        val first = instancesRepository.save(InstanceFixtures.instance(form = form, status = STATUS_COMPLETE, lastStatusChangeDate = 1))
+
+        whenever(httpInterface.executeHeadRequest(any(), anyOrNull()))
+            .doReturn(HttpHeadResult(204, CaseInsensitiveEmptyHeaders()))
+
+        val events = Collections.synchronizedList(mutableListOf<String>())
+        whenever(httpInterface.uploadSubmissionAndFiles(any(), any(), any(), anyOrNull(), any()))
+            .doAnswer {
+                val instanceDir = it.getArgument<File>(0).parentFile
+                events.add("start $instanceDir")
+                Thread.sleep(100)
+                events.add("end $instanceDir")
+                HttpPostResult("", 500, "")
+            }
+
+        instancesDataService.sendInstances(projectId)
+
+        val firstDir = File(first.instanceFilePath).parentFile
+        val secondDir = File(second.instanceFilePath).parentFile
+        assertThat(
+            events,
+            equalTo(listOf("start $firstDir", "end $firstDir", "start $secondDir", "end $secondDir"))
+        )
+    }
+
+    @Test
+    fun `sendInstances() only makes one HEAD request for instances sent to the same URL`() {
+        val formsRepository = projectDependencyModule.formsRepository
+        val form1 = formsRepository.save(FormFixtures.form(formId = "form1"))
+        val form2 = formsRepository.save(FormFixtures.form(formId = "form2"))
+
+        val instancesRepository = projectDependencyModule.instancesRepository
+        instancesRepository.save(InstanceFixtures.instance(form = form1, status = STATUS_COMPLETE))
+        instancesRepository.save(InstanceFixtures.instance(form = form1, status = STATUS_COMPLETE))
+        instancesRepository.save(InstanceFixtures.instance(form = form2, status = STATUS_COMPLETE))
+
+        whenever(httpInterface.executeHeadRequest(any(), anyOrNull()))
+            .doReturn(HttpHeadResult(204, CaseInsensitiveEmptyHeaders()))
+        whenever(httpInterface.uploadSubmissionAndFiles(any(), any(), any(), anyOrNull(), any()))
+            .doReturn(HttpPostResult("", 500, ""))
+
+        instancesDataService.sendInstances(projectId)
+        verify(httpInterface, times(1)).executeHeadRequest(any(), anyOrNull())
+    }
+
+    @Test
+    fun `sendInstances() does not make a HEAD request when one was made in a previous run`() {
+        val formsRepository = projectDependencyModule.formsRepository
+        val form = formsRepository.save(FormFixtures.form())
+
+        val instancesRepository = projectDependencyModule.instancesRepository
+        instancesRepository.save(InstanceFixtures.instance(form = form, status = STATUS_COMPLETE))
+
+        whenever(httpInterface.executeHeadRequest(any(), anyOrNull()))
+            .doReturn(HttpHeadResult(204, CaseInsensitiveEmptyHeaders()))
+        whenever(httpInterface.uploadSubmissionAndFiles(any(), any(), any(), anyOrNull(), any()))
+            .doReturn(HttpPostResult("", 500, ""))
+
+        instancesDataService.sendInstances(projectId)
+        instancesDataService.sendInstances(projectId)
+        verify(httpInterface, times(1)).executeHeadRequest(any(), anyOrNull())
+        verify(httpInterface, times(2)).uploadSubmissionAndFiles(any(), any(), any(), anyOrNull(), any())
+    }
+
+    @Test
+    fun `sendInstances() makes a HEAD request again when sending with the result from a previous run fails`() {
+        val formsRepository = projectDependencyModule.formsRepository
+        val form = formsRepository.save(FormFixtures.form())
+
+        val instancesRepository = projectDependencyModule.instancesRepository
+        instancesRepository.save(InstanceFixtures.instance(form = form, status = STATUS_COMPLETE))
+
+        whenever(httpInterface.executeHeadRequest(any(), anyOrNull()))
+            .doReturn(HttpHeadResult(204, CaseInsensitiveEmptyHeaders()))
+        whenever(httpInterface.uploadSubmissionAndFiles(any(), any(), any(), anyOrNull(), any()))
+            .doReturn(HttpPostResult("", 500, ""))
+
+        instancesDataService.sendInstances(projectId)
+        instancesDataService.sendInstances(projectId)
+        instancesDataService.sendInstances(projectId)
+        verify(httpInterface, times(2)).executeHeadRequest(any(), anyOrNull())
+    }
+
     @Test
     fun `#reset does not reset instances that can't be deleted before sending`() {
         val formsRepository = projectDependencyModule.formsRepository
@@ -0,0 +1,92 @@
+package org.odk.collect.android.savepoints
+
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
+import org.javarosa.core.model.data.StringData
+import org.javarosa.core.model.instance.TreeElement
+import org.junit.Test
+import org.odk.collect.shared.TempFiles
+import java.io.File
+import java.io.RandomAccessFile
+
+class SavepointJournalTest {
+
+    private val journalFile = File(TempFiles.createTempDir(), "instance.xml.save.journal")
+    private val journal = SavepointJournal(journalFile)
+
+    @Test
+    fun `applyTo() replays changed values, new elements and new attributes`() {
+        val checkpoint = createInstance()
+        val current = checkpoint.deepCopy(true)
+
+        current.getChild("question", 0).setValue(StringData("changed"))
+        current.addChild(
+            TreeElement("repeat", 1).also { repeat ->
+                repeat.addChild(TreeElement("answer", 0).also { it.setValue(StringData("new")) })
+            }
+        )
+        current.getChild("repeat", 0).setAttribute(null, "status", "done")
+
+        journal.append(SavepointJournal.diff(SavepointJournal.snapshot(checkpoint), SavepointJournal.snapshot(current)))
+
+        val restored = checkpoint.deepCopy(true)
+        journal.applyTo(restored)
+        assertThat(SavepointJournal.snapshot(restored), equalTo(SavepointJournal.snapshot(current)))
+    }
+
+    @Test
+    fun `applyTo() replays removed elements`() {
+        val checkpoint = createInstance()
+        val current = checkpoint.deepCopy(true)
+
+        current.removeChild(current.getChild("repeat", 0))
+        journal.append(SavepointJournal.diff(SavepointJournal.snapshot(checkpoint), SavepointJournal.snapshot(current)))
+
+        val restored = checkpoint.deepCopy(true)
+        journal.applyTo(restored)
+        assertThat(restored.getChild("repeat", 0), equalTo(null))
+        assertThat(SavepointJournal.snapshot(restored), equalTo(SavepointJournal.snapshot(current)))
+    }
+
+    @Test
+    fun `applyTo() applies batches in order and ignores a batch that was only partly written`() {
+        val checkpoint = createInstance()
+
+        val first = checkpoint.deepCopy(true)
+        first.getChild("question", 0).setValue(StringData("first"))
+        journal.append(SavepointJournal.diff(SavepointJournal.snapshot(checkpoint), SavepointJournal.snapshot(first)))
+
+        val second = first.deepCopy(true)
+        second.getChild("question", 0).setValue(StringData("second"))
+        journal.append(SavepointJournal.diff(SavepointJournal.snapshot(first), SavepointJournal.snapshot(second)))
+
+        val complete = checkpoint.deepCopy(true)
+        journal.applyTo(complete)
+        assertThat(complete.getChild("question", 0).value!!.displayText, equalTo("second"))
+
+        RandomAccessFile(journalFile, "rw").use { it.setLength(it.length() - 2) }
+        val partial = checkpoint.deepCopy(true)
+        journal.applyTo(partial)
+        assertThat(partial.getChild("question", 0).value!!.displayText, equalTo("first"))
+    }
+
+    @Test
+    fun `diff() is empty when nothing has changed`() {
+        val instance = createInstance()
+        assertThat(
+            SavepointJournal.diff(SavepointJournal.snapshot(instance), SavepointJournal.snapshot(instance.deepCopy(true))),
+            equalTo(emptyMap<String, String?>())
+        )
+    }
+
+    private fun createInstance(): TreeElement {
+        return TreeElement("data", 0).also { root ->
+            root.addChild(TreeElement("question", 0).also { it.setValue(StringData("original")) })
+            root.addChild(
+                TreeElement("repeat", 0).also { repeat ->
+                    repeat.addChild(TreeElement("answer", 0).also { it.setValue(StringData("answer")) })
+                }
+            )
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.odk.collect.android.tasks
+
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.contains
+import org.hamcrest.Matchers.equalTo
+import org.junit.Test
+
+class InstanceUploaderTaskTest {
+
+    @Test
+    fun `PercentProgressListener only reports percentages when they change`() {
+        val percentages = mutableListOf<Int>()
+        val listener = InstanceUploaderTask.PercentProgressListener { percentages.add(it) }
+
+        listener.onProgress(0, 1000)
+        listener.onProgress(1, 1000)
+        listener.onProgress(500, 1000)
+        listener.onProgress(505, 1000)
+        listener.onProgress(1000, 1000)
+
+        assertThat(percentages, contains(0, 50, 100))
+    }
+
+    @Test
+    fun `PercentProgressListener ignores progress when total is unknown`() {
+        val percentages = mutableListOf<Int>()
+        val listener = InstanceUploaderTask.PercentProgressListener { percentages.add(it) }
+
+        listener.onProgress(500, 0)
+        assertThat(percentages.isEmpty(), equalTo(true))
+    }
+}
@@ -0,0 +1,59 @@
+package org.odk.collect.android.upload
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.contains
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.kotlin.any
+import org.mockito.kotlin.anyOrNull
+import org.mockito.kotlin.doAnswer
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.whenever
+import org.odk.collect.android.utilities.WebCredentialsUtils
+import org.odk.collect.forms.instances.Instance.STATUS_COMPLETE
+import org.odk.collect.formstest.InMemInstancesRepository
+import org.odk.collect.formstest.InstanceFixtures
+import org.odk.collect.openrosa.http.CaseInsensitiveEmptyHeaders
+import org.odk.collect.openrosa.http.HttpHeadResult
+import org.odk.collect.openrosa.http.HttpPostResult
+import org.odk.collect.openrosa.http.OpenRosaHttpInterface
+import org.odk.collect.openrosa.http.OpenRosaHttpInterface.UploadProgressListener
+import org.odk.collect.shared.settings.InMemSettings
+
+@RunWith(AndroidJUnit4::class)
+class InstanceServerUploaderTest {
+
+    private val httpInterface = mock<OpenRosaHttpInterface>()
+    private val instancesRepository = InMemInstancesRepository()
+    private val settings = InMemSettings()
+    private val uploader = InstanceServerUploader(
+        httpInterface,
+        WebCredentialsUtils(settings),
+        settings,
+        instancesRepository
+    )
+
+    @Test
+    fun `#uploadOneSubmission reports upload progress to the listener`() {
+        val instance = instancesRepository.save(InstanceFixtures.instance(status = STATUS_COMPLETE))
+
+        whenever(httpInterface.executeHeadRequest(any(), anyOrNull()))
+            .doReturn(HttpHeadResult(204, CaseInsensitiveEmptyHeaders()))
+        whenever(httpInterface.uploadSubmissionAndFiles(any(), any(), any(), anyOrNull(), any(), any()))
+            .doAnswer {
+                val listener = it.getArgument<UploadProgressListener>(5)
+                listener.onProgress(50, 100)
+                listener.onProgress(100, 100)
+                HttpPostResult("", 201, "")
+            }
+
+        val progress = mutableListOf<Pair<Long, Long>>()
+        uploader.uploadOneSubmission(instance, "https://example.com/submission") { bytesSent, totalBytes ->
+            progress.add(Pair(bytesSent, totalBytes))
+        }
+
+        assertThat(progress, contains(Pair(50L, 100L), Pair(100L, 100L)))
+    }
+}
@@ -0,0 +1,72 @@
+package org.odk.collect.android.upload
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
+import org.hamcrest.Matchers.nullValue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.odk.collect.android.upload.SubmissionTargetCache.Entry
+import org.odk.collect.shared.TempFiles
+import java.io.File
+import java.util.function.Supplier
+
+@RunWith(AndroidJUnit4::class)
+class SubmissionTargetCacheTest {
+
+    private val file = File(TempFiles.createTempDir(), "submission_targets.json")
+    private var currentTime = 0L
+    private val clock = Supplier { currentTime }
+
+    @Test
+    fun `#get returns entry that was put for URL`() {
+        val cache = SubmissionTargetCache(file, clock, 10)
+        cache.put("http://example.com/submission", Entry("https://example.com/submission", 5))
+
+        assertThat(
+            cache.get("http://example.com/submission"),
+            equalTo(Entry("https://example.com/submission", 5))
+        )
+        assertThat(cache.get("http://example.com/other"), nullValue())
+    }
+
+    @Test
+    fun `#get returns entries put by another cache using the same file`() {
+        SubmissionTargetCache(file, clock, 10)
+            .put("http://example.com/submission", Entry("https://example.com/submission", 5))
+
+        assertThat(
+            SubmissionTargetCache(file, clock, 10).get("http://example.com/submission"),
+            equalTo(Entry("https://example.com/submission", 5))
+        )
+    }
+
+    @Test
+    fun `#get returns null when entry has expired`() {
+        val cache = SubmissionTargetCache(file, clock, 10)
+        cache.put("http://example.com/submission", Entry("https://example.com/submission", 5))
+
+        currentTime = 9
+        assertThat(cache.get("http://example.com/submission"), equalTo(Entry("https://example.com/submission", 5)))
+
+        currentTime = 10
+        assertThat(cache.get("http://example.com/submission"), nullValue())
+    }
+
+    @Test
+    fun `#remove removes entry for URL`() {
+        val cache = SubmissionTargetCache(file, clock, 10)
+        cache.put("http://example.com/submission", Entry("https://example.com/submission", 5))
+        cache.remove("http://example.com/submission")
+
+        assertThat(cache.get("http://example.com/submission"), nullValue())
+        assertThat(SubmissionTargetCache(file, clock, 10).get("http://example.com/submission"), nullValue())
+    }
+
+    @Test
+    fun `#get returns null when file is corrupt`() {
+        file.writeText("blah")
+
+        assertThat(SubmissionTargetCache(file, clock, 10).get("http://example.com/submission"), nullValue())
+    }
+}
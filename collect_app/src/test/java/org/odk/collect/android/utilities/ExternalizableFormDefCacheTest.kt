@@ -0,0 +1,30 @@
+package org.odk.collect.android.utilities
+
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.containsInAnyOrder
+import org.hamcrest.Matchers.equalTo
+import org.junit.Test
+import org.odk.collect.shared.TempFiles
+import java.io.File
+
+class ExternalizableFormDefCacheTest {
+
+    private val cacheDir = TempFiles.createTempDir()
+    private val formDefCache = ExternalizableFormDefCache(cacheDir)
+
+    @Test
+    fun `evictAllExcept() deletes formdef files for other forms and leaves everything else`() {
+        File(cacheDir, "keep.formdef").createNewFile()
+        File(cacheDir, "evict.formdef").createNewFile()
+        File(cacheDir, "other-file").createNewFile()
+        File(cacheDir, "download-dir").mkdir()
+
+        val deletedCount = formDefCache.evictAllExcept(listOf("keep"))
+
+        assertThat(deletedCount, equalTo(1))
+        assertThat(
+            cacheDir.list()!!.toList(),
+            containsInAnyOrder("keep.formdef", "other-file", "download-dir")
+        )
+    }
+}
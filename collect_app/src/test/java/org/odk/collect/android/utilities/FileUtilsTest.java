@@ -2,13 +2,20 @@ package org.odk.collect.android.utilities;
 
 import org.hamcrest.Matchers;
 import org.junit.Test;
+import org.odk.collect.shared.TempFiles;
+import org.odk.collect.shared.files.FileExt;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -46,4 +53,23 @@ public class FileUtilsTest {
         when(file.exists()).thenReturn(false);
         assertThat(FileUtils.listFiles(file), Matchers.is(empty()));
     }
+
+    @Test
+    public void linkOrCopyFile_replacesDestWithSourceContents() throws IOException {
+        File dir = TempFiles.createTempDir();
+        File source = new File(dir, "instance.xml");
+        File dest = new File(dir, "last-saved.xml");
+        FileExt.saveToFile(source, new ByteArrayInputStream("<data>new</data>".getBytes(StandardCharsets.UTF_8)));
+        FileExt.saveToFile(dest, new ByteArrayInputStream("<data>old</data>".getBytes(StandardCharsets.UTF_8)));
+
+        FileUtils.linkOrCopyFile(source, dest);
+        assertThat(readText(dest), equalTo("<data>new</data>"));
+
+        FileExt.saveToFile(source, new ByteArrayInputStream("<data>newer</data>".getBytes(StandardCharsets.UTF_8)));
+        assertThat(readText(dest), equalTo("<data>new</data>"));
+    }
+
+    private static String readText(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
 }
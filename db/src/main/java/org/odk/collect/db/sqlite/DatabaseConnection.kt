@@ -14,6 +14,8 @@ import java.io.File
  * [DatabaseConnection] that refer to the same file.
  *
  * @param migrator used to migrate or create the database automatically before access
+ * @param writeAheadLogging enables write-ahead logging for the database. As the underlying
+ * connection is shared, this is determined by the first [DatabaseConnection] for a file.
  */
 open class DatabaseConnection @JvmOverloads constructor(
     private val context: Context,
@@ -21,7 +23,8 @@ open class DatabaseConnection @JvmOverloads constructor(
     private val name: String,
     private val migrator: DatabaseMigrator,
     private val databaseVersion: Int,
-    private val strict: Boolean = false
+    private val strict: Boolean = false,
+    private val writeAheadLogging: Boolean = false
 ) {
 
     private val databasePath = path + File.separator + name
@@ -62,7 +65,9 @@ open class DatabaseConnection @JvmOverloads constructor(
                         null,
                         databaseVersion,
                         migrator
-                    )
+                    ).also {
+                        it.setWriteAheadLoggingEnabled(writeAheadLogging)
+                    }
                 }
             }
         }
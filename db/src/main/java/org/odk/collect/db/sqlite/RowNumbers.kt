@@ -5,42 +5,78 @@ import org.odk.collect.db.sqlite.SQLiteColumns.ROW_ID
 import org.odk.collect.db.sqlite.SQLiteColumns.ROW_NUMBER
 
 object RowNumbers {
-    fun SynchronizedDatabaseConnection.rawQueryWithRowNumber(table: String, selection: String? = null, selectionArgs: Array<String>? = null): Cursor {
+    /**
+     * Queries [table] with an attached [ROW_NUMBER] column and passes the resulting cursor to
+     * [block] (closing it afterwards). Cursors are filled lazily as they are read, so [block] is
+     * run while the read connection is still held. This means a schema change (which needs
+     * exclusive access to the database) can't reset the connection while the results are still
+     * being read.
+     *
+     * @param columns the columns from [table] to include in the result. All columns are included
+     * if this is `null`.
+     */
+    fun <T> SynchronizedDatabaseConnection.rawQueryWithRowNumber(
+        table: String,
+        selection: String? = null,
+        selectionArgs: Array<String>? = null,
+        columns: List<String>? = null,
+        block: (Cursor) -> T
+    ): T {
         this.ensureRowIdTable(table)
 
-        val cursor = if (selection != null) {
-            this.withConnection {
-                readableDatabase
-                    .rawQuery(
-                        """
-                        SELECT *, i.$ROW_ID as $ROW_NUMBER
-                        FROM "$table" e, "${getRowIdTableName(table)}" i
-                        WHERE e._id = i._id AND $selection
-                        ORDER BY i.$ROW_ID
-                        """.trimIndent(),
-                        selectionArgs
-                    )
-            }
+        val projection = columns?.joinToString { "e.\"$it\"" } ?: "*"
+        val sql = if (selection != null) {
+            """
+            SELECT $projection, i.$ROW_ID as $ROW_NUMBER
+            FROM "$table" e, "${getRowIdTableName(table)}" i
+            WHERE e._id = i._id AND $selection
+            ORDER BY i.$ROW_ID
+            """.trimIndent()
         } else {
-            this.withConnection {
-                readableDatabase
-                    .rawQuery(
-                        """
-                        SELECT *, i.$ROW_ID as $ROW_NUMBER
-                        FROM "$table" e, "${getRowIdTableName(table)}" i
-                        WHERE e._id = i._id
-                        ORDER BY i.$ROW_ID
-                        """.trimIndent(),
-                        null
-                    )
-            }
+            """
+            SELECT $projection, i.$ROW_ID as $ROW_NUMBER
+            FROM "$table" e, "${getRowIdTableName(table)}" i
+            WHERE e._id = i._id
+            ORDER BY i.$ROW_ID
+            """.trimIndent()
+        }
+
+        return this.withReadConnection {
+            readableDatabase
+                .rawQuery(sql, if (selection != null) selectionArgs else null)
+                .use(block)
         }
+    }
+
+    /**
+     * Adds row numbers for any rows inserted into [table] since its row numbers were last
+     * calculated without having to rebuild them. This relies on new rows having a higher `_id`
+     * than existing ones, so [invalidateRowNumbers] still needs to be used after deleting rows.
+     */
+    fun SynchronizedDatabaseConnection.appendRowNumbers(table: String) {
+        this.transaction {
+            val rowIdTableExists = rawQuery(
+                """
+                SELECT name FROM sqlite_master WHERE type = 'table' AND name = ?
+                """.trimIndent(),
+                arrayOf(getRowIdTableName(table))
+            ).use { it.count > 0 }
 
-        return cursor
+            if (rowIdTableExists) {
+                execSQL(
+                    """
+                    INSERT INTO "${getRowIdTableName(table)}" (_id)
+                    SELECT _id FROM "$table"
+                    WHERE _id > IFNULL((SELECT _id FROM "${getRowIdTableName(table)}" ORDER BY $ROW_ID DESC LIMIT 1), 0)
+                    ORDER BY _id;
+                    """.trimIndent()
+                )
+            }
+        }
     }
 
     fun SynchronizedDatabaseConnection.invalidateRowNumbers(table: String) {
-        this.resetTransaction {
+        this.transaction {
             execSQL(
                 """
                 DROP TABLE IF EXISTS "${getRowIdTableName(table)}";
@@ -50,7 +86,20 @@ object RowNumbers {
     }
 
     private fun SynchronizedDatabaseConnection.ensureRowIdTable(table: String) {
-        resetTransaction {
+        val rowIdTableExists = withReadConnection {
+            readableDatabase.rawQuery(
+                """
+                SELECT name FROM sqlite_master WHERE type = 'table' AND name = ?
+                """.trimIndent(),
+                arrayOf(getRowIdTableName(table))
+            ).use { it.count > 0 }
+        }
+
+        if (rowIdTableExists) {
+            return
+        }
+
+        transaction {
             execSQL(
                 """
                 CREATE TABLE IF NOT EXISTS "${getRowIdTableName(table)}" AS SELECT _id FROM "$table" ORDER BY _id;
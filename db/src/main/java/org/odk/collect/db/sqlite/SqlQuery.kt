@@ -11,8 +11,17 @@ fun Query.toSql(): SqlQuery {
     return when (this) {
         is Query.StringEq -> SqlQuery("$column = ?", arrayOf(value))
         is Query.StringNotEq -> SqlQuery("$column != ?", arrayOf(value))
+        is Query.StringIn -> SqlQuery("$column IN (${values.joinToString { "?" }})", values.toTypedArray())
+        is Query.StringStartsWith -> SqlQuery("$column GLOB ?", arrayOf(escapeGlob(value) + "*"))
+        is Query.StringContains -> SqlQuery("instr($column, ?) > 0", arrayOf(value))
+        is Query.StringContainsToken -> SqlQuery("instr(' ' || $column || ' ', ?) > 0", arrayOf(" $value "))
+        is Query.StringIsTokenIn -> SqlQuery("instr(?, ' ' || trim($column) || ' ') > 0", arrayOf(" $values "))
         is Query.NumericEq -> SqlQuery("CAST($column AS REAL) = CAST(? AS REAL)", arrayOf(value.toString()))
         is Query.NumericNotEq -> SqlQuery("CAST($column AS REAL) != CAST(? AS REAL)", arrayOf(value.toString()))
+        is Query.NumericLt -> numericComparison(column, "<", value)
+        is Query.NumericLte -> numericComparison(column, "<=", value)
+        is Query.NumericGt -> numericComparison(column, ">", value)
+        is Query.NumericGte -> numericComparison(column, ">=", value)
         is Query.And -> {
             val sqlA = queryA.toSql()
             val sqlB = queryB.toSql()
@@ -29,5 +38,30 @@ fun Query.toSql(): SqlQuery {
                 sqlA.selectionArgs + sqlB.selectionArgs
             )
         }
+        is Query.Not -> {
+            val sql = query.toSql()
+            SqlQuery("NOT (${sql.selection})", sql.selectionArgs)
+        }
     }
 }
+
+/**
+ * `CAST` converts values that aren't numbers to `0` (or whatever numeric prefix they have), but
+ * they should never match numeric comparisons (in the same way that XPath treats them as `NaN`).
+ * Values are only compared if they are made up of characters that can appear in a number and
+ * include at least one digit.
+ */
+private fun numericComparison(column: String, operator: String, value: Double): SqlQuery {
+    return SqlQuery(
+        "(trim($column) GLOB '*[0-9]*' AND trim($column) NOT GLOB '*[^0-9.eE+-]*' AND CAST($column AS REAL) $operator CAST(? AS REAL))",
+        arrayOf(value.toString())
+    )
+}
+
+/**
+ * `GLOB` is used for prefix matching (rather than `LIKE`) as it's case sensitive and can still
+ * make use of indexes. Special characters are escaped by wrapping them in a character class.
+ */
+private fun escapeGlob(value: String): String {
+    return value.replace(Regex("[*?\\[]")) { "[${it.value}]" }
+}
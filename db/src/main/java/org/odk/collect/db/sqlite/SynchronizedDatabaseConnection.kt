@@ -3,13 +3,25 @@ package org.odk.collect.db.sqlite
 import android.content.Context
 import android.database.sqlite.SQLiteDatabase
 import androidx.core.database.sqlite.transaction
+import java.io.File
+import java.util.concurrent.locks.ReentrantLock
+import java.util.concurrent.locks.ReentrantReadWriteLock
+import kotlin.concurrent.read
+import kotlin.concurrent.withLock
 
-class SynchronizedDatabaseConnection(
+/**
+ * @param concurrentReads if `true`, the database will use write-ahead logging and reads made
+ * with [withReadConnection] will be able to run at the same time as each other and as writes
+ * (which are still serialized). Schema changes made with [resetTransaction] still get exclusive
+ * access to the database. If `false`, all access is serialized.
+ */
+class SynchronizedDatabaseConnection @JvmOverloads constructor(
     context: Context,
     path: String,
     name: String,
     migrator: DatabaseMigrator,
-    databaseVersion: Int
+    databaseVersion: Int,
+    concurrentReads: Boolean = false
 ) {
     private val databaseConnection = DatabaseConnection(
         context,
@@ -17,11 +29,34 @@ class SynchronizedDatabaseConnection(
         name,
         migrator,
         databaseVersion,
-        true
+        true,
+        concurrentReads
     )
 
+    private val locks = if (concurrentReads) {
+        getLocks(path + File.separator + name)
+    } else {
+        null
+    }
+
     fun <T> withConnection(block: DatabaseConnection.() -> T): T {
-        return databaseConnection.withSynchronizedConnection(block)
+        return if (locks != null) {
+            locks.write { block(databaseConnection) }
+        } else {
+            databaseConnection.withSynchronizedConnection(block)
+        }
+    }
+
+    /**
+     * Like [withConnection], but should only be used for blocks that don't write to the
+     * database so that they can be run concurrently when `concurrentReads` is enabled.
+     */
+    fun <T> withReadConnection(block: DatabaseConnection.() -> T): T {
+        return if (locks != null) {
+            locks.read { block(databaseConnection) }
+        } else {
+            databaseConnection.withSynchronizedConnection(block)
+        }
     }
 
     fun <T> transaction(
@@ -36,12 +71,61 @@ class SynchronizedDatabaseConnection(
 
     /**
      * Runs a transaction and then calls [DatabaseConnection.reset]. Useful for transactions
-     * that will mutate the DB schema.
+     * that will change the columns of existing tables (as statements that have already been
+     * prepared, like `SELECT *`, will otherwise keep returning the old columns). Creating or
+     * dropping tables and indexes doesn't require this and can just use [transaction]. Resetting
+     * throws away the connection's caches, so it's best to batch schema changes into as few
+     * reset transactions as possible.
      */
     fun <T> resetTransaction(
         body: SQLiteDatabase.() -> T
     ) {
-        transaction(body)
-        databaseConnection.reset()
+        if (locks != null) {
+            locks.exclusive {
+                transaction(body)
+                databaseConnection.reset()
+            }
+        } else {
+            transaction(body)
+            databaseConnection.reset()
+        }
+    }
+
+    /**
+     * Reads hold a shared "schema" lock, writes additionally hold a writer lock (so only one
+     * write happens at once) and schema changes hold the "schema" lock exclusively so that
+     * the connection can be reset without any other thread using it.
+     */
+    private class ConcurrentLocks {
+        private val schemaLock = ReentrantReadWriteLock()
+        private val writerLock = ReentrantLock()
+
+        fun <T> read(block: () -> T): T {
+            return schemaLock.read(block)
+        }
+
+        fun <T> write(block: () -> T): T {
+            return schemaLock.read {
+                writerLock.withLock(block)
+            }
+        }
+
+        fun <T> exclusive(block: () -> T): T {
+            check(schemaLock.readHoldCount == 0) {
+                "Schema changes can't be made from inside another read or write"
+            }
+
+            return schemaLock.writeLock().withLock(block)
+        }
+    }
+
+    companion object {
+        private val locks = mutableMapOf<String, ConcurrentLocks>()
+
+        private fun getLocks(databasePath: String): ConcurrentLocks {
+            return synchronized(locks) {
+                locks.getOrPut(databasePath) { ConcurrentLocks() }
+            }
+        }
     }
 }
@@ -0,0 +1,8 @@
+package org.odk.collect.db.sqlite
+
+import android.database.sqlite.SQLiteDatabase
+
+class NoopMigrator : DatabaseMigrator {
+    override fun onCreate(db: SQLiteDatabase?) {}
+    override fun onUpgrade(db: SQLiteDatabase?, oldVersion: Int) {}
+}
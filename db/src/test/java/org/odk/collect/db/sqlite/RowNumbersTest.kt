@@ -2,7 +2,6 @@ package org.odk.collect.db.sqlite
 
 import android.content.ContentValues
 import android.content.Context
-import android.database.sqlite.SQLiteDatabase
 import android.provider.BaseColumns._ID
 import androidx.test.core.app.ApplicationProvider
 import androidx.test.ext.junit.runners.AndroidJUnit4
@@ -12,10 +11,14 @@ import org.junit.Test
 import org.junit.runner.RunWith
 import org.odk.collect.db.sqlite.CursorExt.foldAndClose
 import org.odk.collect.db.sqlite.CursorExt.rowToMap
+import org.odk.collect.db.sqlite.RowNumbers.appendRowNumbers
 import org.odk.collect.db.sqlite.RowNumbers.invalidateRowNumbers
 import org.odk.collect.db.sqlite.RowNumbers.rawQueryWithRowNumber
 import org.odk.collect.db.sqlite.SQLiteColumns.ROW_NUMBER
 import org.odk.collect.shared.TempFiles
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
 
 @RunWith(AndroidJUnit4::class)
 class RowNumbersTest {
@@ -42,7 +45,7 @@ class RowNumbersTest {
         }
 
         val rows =
-            dbConnection.rawQueryWithRowNumber("test_table").foldAndClose { it.rowToMap() }
+            dbConnection.rawQueryWithRowNumber("test_table") { it.foldAndClose { row -> row.rowToMap() } }
         assertThat(rows.size, equalTo(2))
 
         assertThat(rows[0]["position"], equalTo("first"))
@@ -73,7 +76,7 @@ class RowNumbersTest {
         }
 
         val beforeRows =
-            dbConnection.rawQueryWithRowNumber("test_table").foldAndClose { it.rowToMap() }
+            dbConnection.rawQueryWithRowNumber("test_table") { it.foldAndClose { row -> row.rowToMap() } }
         assertThat(beforeRows.size, equalTo(3))
 
         dbConnection.transaction {
@@ -83,7 +86,7 @@ class RowNumbersTest {
         dbConnection.invalidateRowNumbers("test_table")
 
         val afterRows =
-            dbConnection.rawQueryWithRowNumber("test_table").foldAndClose { it.rowToMap() }
+            dbConnection.rawQueryWithRowNumber("test_table") { it.foldAndClose { row -> row.rowToMap() } }
         assertThat(afterRows.size, equalTo(2))
 
         assertThat(afterRows[0]["position"], equalTo("first"))
@@ -92,9 +95,120 @@ class RowNumbersTest {
         assertThat(afterRows[1]["position"], equalTo("third"))
         assertThat(afterRows[1][ROW_NUMBER], equalTo("2"))
     }
-}
 
-private class NoopMigrator : DatabaseMigrator {
-    override fun onCreate(db: SQLiteDatabase?) {}
-    override fun onUpgrade(db: SQLiteDatabase?, oldVersion: Int) {}
+    @Test
+    fun `#rawQueryWithRowNumber returns results ordered by updated row_number column after row inserted and append`() {
+        val dbConnection = SynchronizedDatabaseConnection(
+            context,
+            TempFiles.createTempDir().absolutePath,
+            "temp.db",
+            NoopMigrator(),
+            1
+        )
+
+        dbConnection.resetTransaction {
+            execSQL("CREATE TABLE test_table ($_ID integer PRIMARY KEY, position text)")
+        }
+
+        dbConnection.transaction {
+            insertOrThrow("test_table", null, ContentValues().also { it.put("position", "first") })
+            insertOrThrow("test_table", null, ContentValues().also { it.put("position", "second") })
+        }
+
+        val beforeRows =
+            dbConnection.rawQueryWithRowNumber("test_table") { it.foldAndClose { row -> row.rowToMap() } }
+        assertThat(beforeRows.size, equalTo(2))
+
+        dbConnection.transaction {
+            insertOrThrow("test_table", null, ContentValues().also { it.put("position", "third") })
+        }
+
+        dbConnection.appendRowNumbers("test_table")
+
+        val afterRows =
+            dbConnection.rawQueryWithRowNumber("test_table") { it.foldAndClose { row -> row.rowToMap() } }
+        assertThat(afterRows.size, equalTo(3))
+
+        assertThat(afterRows[0]["position"], equalTo("first"))
+        assertThat(afterRows[0][ROW_NUMBER], equalTo("1"))
+
+        assertThat(afterRows[1]["position"], equalTo("second"))
+        assertThat(afterRows[1][ROW_NUMBER], equalTo("2"))
+
+        assertThat(afterRows[2]["position"], equalTo("third"))
+        assertThat(afterRows[2][ROW_NUMBER], equalTo("3"))
+    }
+
+    @Test
+    fun `#appendRowNumbers does nothing if row numbers have not been calculated`() {
+        val dbConnection = SynchronizedDatabaseConnection(
+            context,
+            TempFiles.createTempDir().absolutePath,
+            "temp.db",
+            NoopMigrator(),
+            1
+        )
+
+        dbConnection.resetTransaction {
+            execSQL("CREATE TABLE test_table ($_ID integer PRIMARY KEY, position text)")
+        }
+
+        dbConnection.transaction {
+            insertOrThrow("test_table", null, ContentValues().also { it.put("position", "first") })
+        }
+
+        dbConnection.appendRowNumbers("test_table")
+
+        val rows =
+            dbConnection.rawQueryWithRowNumber("test_table") { it.foldAndClose { row -> row.rowToMap() } }
+        assertThat(rows.size, equalTo(1))
+        assertThat(rows[0][ROW_NUMBER], equalTo("1"))
+    }
+
+    @Test
+    fun `#rawQueryWithRowNumber holds the read connection until the results have been read`() {
+        val dbConnection = SynchronizedDatabaseConnection(
+            context,
+            TempFiles.createTempDir().absolutePath,
+            "temp.db",
+            NoopMigrator(),
+            1,
+            concurrentReads = true
+        )
+
+        dbConnection.resetTransaction {
+            execSQL("CREATE TABLE test_table ($_ID integer PRIMARY KEY, position text)")
+        }
+
+        dbConnection.transaction {
+            insertOrThrow("test_table", null, ContentValues().also { it.put("position", "first") })
+        }
+
+        val readStarted = CountDownLatch(1)
+        val finishRead = CountDownLatch(1)
+        val reader = thread {
+            dbConnection.rawQueryWithRowNumber("test_table") {
+                readStarted.countDown()
+                finishRead.await()
+                it.foldAndClose { row -> row.rowToMap() }
+            }
+        }
+
+        readStarted.await()
+        val reset = CountDownLatch(1)
+        val resetter = thread {
+            dbConnection.resetTransaction {
+                execSQL("ALTER TABLE test_table ADD size text")
+            }
+
+            reset.countDown()
+        }
+
+        assertThat(reset.await(100, TimeUnit.MILLISECONDS), equalTo(false))
+        finishRead.countDown()
+        assertThat(reset.await(1, TimeUnit.SECONDS), equalTo(true))
+
+        reader.join()
+        resetter.join()
+    }
 }
@@ -22,6 +22,82 @@ class SqlQueryTest {
         assertThat(query.selectionArgs, equalTo(arrayOf("30")))
     }
 
+    @Test
+    fun `In query generates correct selection and arguments`() {
+        val query = Query.StringIn("name", listOf("John", "Jane")).toSql()
+
+        assertThat(query.selection, equalTo("name IN (?, ?)"))
+        assertThat(query.selectionArgs, equalTo(arrayOf("John", "Jane")))
+    }
+
+    @Test
+    fun `StartsWith query generates correct selection and arguments`() {
+        val query = Query.StringStartsWith("name", "Jo").toSql()
+
+        assertThat(query.selection, equalTo("name GLOB ?"))
+        assertThat(query.selectionArgs, equalTo(arrayOf("Jo*")))
+    }
+
+    @Test
+    fun `StartsWith query escapes glob characters in arguments`() {
+        val query = Query.StringStartsWith("name", "J*?[").toSql()
+
+        assertThat(query.selectionArgs, equalTo(arrayOf("J[*][?][[]*")))
+    }
+
+    @Test
+    fun `Contains query generates correct selection and arguments`() {
+        val query = Query.StringContains("name", "oh").toSql()
+
+        assertThat(query.selection, equalTo("instr(name, ?) > 0"))
+        assertThat(query.selectionArgs, equalTo(arrayOf("oh")))
+    }
+
+    @Test
+    fun `ContainsToken query generates correct selection and arguments`() {
+        val query = Query.StringContainsToken("tags", "red").toSql()
+
+        assertThat(query.selection, equalTo("instr(' ' || tags || ' ', ?) > 0"))
+        assertThat(query.selectionArgs, equalTo(arrayOf(" red ")))
+    }
+
+    @Test
+    fun `IsTokenIn query generates correct selection and arguments`() {
+        val query = Query.StringIsTokenIn("name", "John Jane").toSql()
+
+        assertThat(query.selection, equalTo("instr(?, ' ' || trim(name) || ' ') > 0"))
+        assertThat(query.selectionArgs, equalTo(arrayOf(" John Jane ")))
+    }
+
+    @Test
+    fun `Numeric comparison queries generate correct selection and arguments`() {
+        assertThat(
+            Query.NumericLt("age", 30.0).toSql().selection,
+            equalTo("(trim(age) GLOB '*[0-9]*' AND trim(age) NOT GLOB '*[^0-9.eE+-]*' AND CAST(age AS REAL) < CAST(? AS REAL))")
+        )
+        assertThat(
+            Query.NumericLte("age", 30.0).toSql().selection,
+            equalTo("(trim(age) GLOB '*[0-9]*' AND trim(age) NOT GLOB '*[^0-9.eE+-]*' AND CAST(age AS REAL) <= CAST(? AS REAL))")
+        )
+        assertThat(
+            Query.NumericGt("age", 30.0).toSql().selection,
+            equalTo("(trim(age) GLOB '*[0-9]*' AND trim(age) NOT GLOB '*[^0-9.eE+-]*' AND CAST(age AS REAL) > CAST(? AS REAL))")
+        )
+        assertThat(
+            Query.NumericGte("age", 30.0).toSql().selection,
+            equalTo("(trim(age) GLOB '*[0-9]*' AND trim(age) NOT GLOB '*[^0-9.eE+-]*' AND CAST(age AS REAL) >= CAST(? AS REAL))")
+        )
+        assertThat(Query.NumericGte("age", 30.0).toSql().selectionArgs, equalTo(arrayOf("30.0")))
+    }
+
+    @Test
+    fun `Not query generates correct selection and arguments`() {
+        val query = Query.Not(Query.StringEq("name", "John")).toSql()
+
+        assertThat(query.selection, equalTo("NOT (name = ?)"))
+        assertThat(query.selectionArgs, equalTo(arrayOf("John")))
+    }
+
     @Test
     fun `And query generates correct selection and arguments`() {
         val queryA = Query.StringEq("name", "John")
@@ -0,0 +1,146 @@
+package org.odk.collect.db.sqlite
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.hamcrest.CoreMatchers.equalTo
+import org.hamcrest.MatcherAssert.assertThat
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.odk.collect.shared.TempFiles
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+
+@RunWith(AndroidJUnit4::class)
+class SynchronizedDatabaseConnectionTest {
+
+    private val context = ApplicationProvider.getApplicationContext<Context>()
+    private val dbDir = TempFiles.createTempDir().absolutePath
+
+    @Test
+    fun `#withReadConnection is not blocked by a write when concurrentReads is enabled`() {
+        val dbConnection = createConnection(concurrentReads = true)
+        val writeStarted = CountDownLatch(1)
+        val finishWrite = CountDownLatch(1)
+
+        val writer = thread {
+            dbConnection.withConnection {
+                writeStarted.countDown()
+                finishWrite.await()
+            }
+        }
+
+        writeStarted.await()
+        val read = CountDownLatch(1)
+        thread {
+            dbConnection.withReadConnection {
+                read.countDown()
+            }
+        }
+
+        assertThat(read.await(1, TimeUnit.SECONDS), equalTo(true))
+        finishWrite.countDown()
+        writer.join()
+    }
+
+    @Test
+    fun `#withConnection is blocked by another write when concurrentReads is enabled`() {
+        val dbConnection = createConnection(concurrentReads = true)
+        val writeStarted = CountDownLatch(1)
+        val finishWrite = CountDownLatch(1)
+
+        val writer = thread {
+            dbConnection.withConnection {
+                writeStarted.countDown()
+                finishWrite.await()
+            }
+        }
+
+        writeStarted.await()
+        val write = CountDownLatch(1)
+        val otherWriter = thread {
+            dbConnection.withConnection {
+                write.countDown()
+            }
+        }
+
+        assertThat(write.await(100, TimeUnit.MILLISECONDS), equalTo(false))
+        finishWrite.countDown()
+        assertThat(write.await(1, TimeUnit.SECONDS), equalTo(true))
+
+        writer.join()
+        otherWriter.join()
+    }
+
+    @Test
+    fun `#resetTransaction waits for reads to finish when concurrentReads is enabled`() {
+        val dbConnection = createConnection(concurrentReads = true)
+        val readStarted = CountDownLatch(1)
+        val finishRead = CountDownLatch(1)
+
+        val reader = thread {
+            dbConnection.withReadConnection {
+                readStarted.countDown()
+                finishRead.await()
+            }
+        }
+
+        readStarted.await()
+        val reset = CountDownLatch(1)
+        val resetter = thread {
+            dbConnection.resetTransaction {
+                execSQL("CREATE TABLE test_table (position text)")
+            }
+
+            reset.countDown()
+        }
+
+        assertThat(reset.await(100, TimeUnit.MILLISECONDS), equalTo(false))
+        finishRead.countDown()
+        assertThat(reset.await(1, TimeUnit.SECONDS), equalTo(true))
+
+        reader.join()
+        resetter.join()
+    }
+
+    @Test
+    fun `#withReadConnection is blocked by a write when concurrentReads is disabled`() {
+        val dbConnection = createConnection(concurrentReads = false)
+        val writeStarted = CountDownLatch(1)
+        val finishWrite = CountDownLatch(1)
+
+        val writer = thread {
+            dbConnection.withConnection {
+                writeStarted.countDown()
+                finishWrite.await()
+            }
+        }
+
+        writeStarted.await()
+        val read = CountDownLatch(1)
+        val reader = thread {
+            dbConnection.withReadConnection {
+                read.countDown()
+            }
+        }
+
+        assertThat(read.await(100, TimeUnit.MILLISECONDS), equalTo(false))
+        finishWrite.countDown()
+        assertThat(read.await(1, TimeUnit.SECONDS), equalTo(true))
+
+        writer.join()
+        reader.join()
+    }
+
+    private fun createConnection(concurrentReads: Boolean): SynchronizedDatabaseConnection {
+        return SynchronizedDatabaseConnection(
+            context,
+            dbDir,
+            "temp.db",
+            NoopMigrator(),
+            1,
+            concurrentReads
+        )
+    }
+}
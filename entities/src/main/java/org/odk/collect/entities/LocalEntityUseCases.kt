@@ -1,5 +1,6 @@
 package org.odk.collect.entities
 
+import org.apache.commons.csv.CSVParser
 import org.apache.commons.csv.CSVRecord
 import org.javarosa.core.model.instance.SecondaryInstanceCSVParserBuilder
 import org.odk.collect.entities.javarosa.finalization.EntitiesExtra
@@ -15,6 +16,13 @@ import java.util.UUID
 
 object LocalEntityUseCases {
 
+    /**
+     * The number of entities from a server entity list that are held in memory and written
+     * at once. This needs to stay below SQLite's limit of 999 variables per statement as each
+     * batch is looked up with a single `IN` query.
+     */
+    private const val BATCH_SIZE = 500
+
     @JvmStatic
     fun updateLocalEntitiesFromForm(
         formEntities: EntitiesExtra?,
@@ -76,56 +84,39 @@ object LocalEntityUseCases {
             return
         }
 
-        val csvParser = try {
-            SecondaryInstanceCSVParserBuilder()
-                .path(serverList.absolutePath)
-                .build()
-        } catch (_: Exception) {
-            return
+        // Check every record before saving anything so an invalid one can't leave the local list
+        // partially updated
+        val serverIds = HashSet<String>()
+        val validationParser = openServerList(serverList) ?: return
+        validationParser.use {
+            it.forEach { record ->
+                val serverEntity = parseEntityFromRecord(record) ?: return
+                serverIds.add(serverEntity.id)
+            }
         }
 
-        val localEntities = entitiesRepository.query(list)
-
-        val missingFromServer = localEntities.associateBy { it.id }.toMutableMap()
-        val newAndUpdated = ArrayList<Entity>()
+        val csvParser = openServerList(serverList) ?: return
         csvParser.use {
+            val batch = ArrayList<ServerEntity>(BATCH_SIZE)
             it.forEach { record ->
-                val serverEntity = parseEntityFromRecord(record) ?: return
-                val existing = missingFromServer.remove(serverEntity.id)
-
-                if (existing == null) {
-                    newAndUpdated.add(
-                        Entity.New(
-                            serverEntity.id,
-                            serverEntity.label,
-                            serverEntity.version,
-                            serverEntity.properties.toList(),
-                            state = Entity.State.ONLINE,
-                            trunkVersion = serverEntity.version,
-                            branchId = UUID.randomUUID().toString()
-                        )
-                    )
-                } else if (existing.version < serverEntity.version) {
-                    newAndUpdated.add(serverEntity.updateLocal(existing))
-                } else if (existing.version == serverEntity.version) {
-                    if (existing.isDirty()) {
-                        newAndUpdated.add(serverEntity.updateLocal(existing))
-                    }
-                } else if (existing.state == Entity.State.OFFLINE) {
-                    val update = existing.copy(state = Entity.State.ONLINE)
-                    newAndUpdated.add(update)
+                batch.add(parseEntityFromRecord(record)!!)
+
+                if (batch.size == BATCH_SIZE) {
+                    saveServerEntities(list, batch, entitiesRepository)
+                    batch.clear()
                 }
             }
+
+            saveServerEntities(list, batch, entitiesRepository)
         }
 
         handleMissingEntities(
             list,
-            missingFromServer.values,
+            serverIds,
             entitiesRepository,
             entitySource,
             mediaFile.integrityUrl
         )
-        entitiesRepository.save(list, *newAndUpdated.toTypedArray())
         entitiesRepository.updateList(
             list,
             newListHash,
@@ -133,22 +124,92 @@ object LocalEntityUseCases {
         )
     }
 
+    private fun openServerList(serverList: File): CSVParser? {
+        return try {
+            SecondaryInstanceCSVParserBuilder()
+                .path(serverList.absolutePath)
+                .build()
+        } catch (_: Exception) {
+            null
+        }
+    }
+
+    private fun saveServerEntities(
+        list: String,
+        serverEntities: List<ServerEntity>,
+        entitiesRepository: EntitiesRepository
+    ) {
+        if (serverEntities.isEmpty()) {
+            return
+        }
+
+        val localEntities = entitiesRepository.query(
+            list,
+            Query.StringIn(EntitySchema.ID, serverEntities.map { it.id })
+        ).associateBy { it.id }
+
+        val newAndUpdated = ArrayList<Entity>()
+        serverEntities.forEach { serverEntity ->
+            val existing = localEntities[serverEntity.id]
+
+            if (existing == null) {
+                newAndUpdated.add(
+                    Entity.New(
+                        serverEntity.id,
+                        serverEntity.label,
+                        serverEntity.version,
+                        serverEntity.properties.toList(),
+                        state = Entity.State.ONLINE,
+                        trunkVersion = serverEntity.version,
+                        branchId = UUID.randomUUID().toString()
+                    )
+                )
+            } else if (existing.version < serverEntity.version) {
+                newAndUpdated.add(serverEntity.updateLocal(existing))
+            } else if (existing.version == serverEntity.version) {
+                if (existing.isDirty()) {
+                    newAndUpdated.add(serverEntity.updateLocal(existing))
+                }
+            } else if (existing.state == Entity.State.OFFLINE) {
+                val update = existing.copy(state = Entity.State.ONLINE)
+                newAndUpdated.add(update)
+            }
+        }
+
+        entitiesRepository.save(list, *newAndUpdated.toTypedArray())
+    }
+
     private fun handleMissingEntities(
         list: String,
-        missingFromServer: Collection<Entity.Saved>,
+        serverIds: Set<String>,
         entitiesRepository: EntitiesRepository,
         entitySource: EntitySource,
         integrityUrl: String?
     ) {
-        val missingOnline = missingFromServer.filter { it.state == Entity.State.ONLINE }
-        val missingOffline = missingFromServer.filter { it.state == Entity.State.OFFLINE }
+        val missingOnline = ArrayList<String>()
+        val missingOffline = ArrayList<String>()
+
+        var startIndex = 0
+        do {
+            val localEntities = entitiesRepository.getByIndexRange(list, startIndex, BATCH_SIZE)
+            localEntities.forEach {
+                if (!serverIds.contains(it.id)) {
+                    when (it.state) {
+                        Entity.State.ONLINE -> missingOnline.add(it.id)
+                        Entity.State.OFFLINE -> missingOffline.add(it.id)
+                    }
+                }
+            }
+
+            startIndex += BATCH_SIZE
+        } while (localEntities.size == BATCH_SIZE)
 
         missingOnline.forEach {
-            entitiesRepository.delete(list, it.id)
+            entitiesRepository.delete(list, it)
         }
 
         if (integrityUrl != null && missingOffline.isNotEmpty()) {
-            entitySource.fetchDeletedStates(integrityUrl, missingOffline.map { it.id }).forEach {
+            entitySource.fetchDeletedStates(integrityUrl, missingOffline).forEach {
                 if (it.second) {
                     entitiesRepository.delete(list, it.first)
                 }
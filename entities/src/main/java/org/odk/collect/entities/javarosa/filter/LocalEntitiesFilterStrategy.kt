@@ -6,8 +6,13 @@ import org.javarosa.core.model.condition.FilterStrategy
 import org.javarosa.core.model.instance.DataInstance
 import org.javarosa.core.model.instance.TreeReference
 import org.javarosa.xpath.expr.XPathBoolExpr
+import org.javarosa.xpath.expr.XPathCmpExpr
 import org.javarosa.xpath.expr.XPathEqExpr
 import org.javarosa.xpath.expr.XPathExpression
+import org.javarosa.xpath.expr.XPathFuncExpr
+import org.javarosa.xpath.expr.XPathNumericLiteral
+import org.javarosa.xpath.expr.XPathPathExpr
+import org.javarosa.xpath.expr.XPathStringLiteral
 import org.odk.collect.entities.javarosa.intance.LocalEntitiesInstanceAdapter
 import org.odk.collect.entities.javarosa.intance.LocalEntitiesInstanceProvider
 import org.odk.collect.entities.storage.EntitiesRepository
@@ -60,6 +65,8 @@ class LocalEntitiesFilterStrategy(entitiesRepository: EntitiesRepository) :
         return when (predicate) {
             is XPathBoolExpr -> xPathBoolExprToQuery(predicate, sourceInstance, evaluationContext)
             is XPathEqExpr -> xPathEqExprToQuery(predicate, sourceInstance, evaluationContext)
+            is XPathCmpExpr -> xPathCmpExprToQuery(predicate, sourceInstance, evaluationContext)
+            is XPathFuncExpr -> xPathFuncExprToQuery(predicate, sourceInstance, evaluationContext)
             else -> null
         }
     }
@@ -112,6 +119,126 @@ class LocalEntitiesFilterStrategy(entitiesRepository: EntitiesRepository) :
         }
     }
 
+    private fun xPathCmpExprToQuery(
+        predicate: XPathCmpExpr,
+        sourceInstance: DataInstance<*>,
+        evaluationContext: EvaluationContext,
+    ): Query? {
+        val childA = getChildName(predicate.a)
+        val childB = getChildName(predicate.b)
+
+        // Flip the comparison if the node is on the right (`5 < age` is the same as `age > 5`)
+        val (child, contextSide, op) = if (childA != null && isContextSide(predicate.b)) {
+            Triple(childA, predicate.b, predicate.op)
+        } else if (childB != null && isContextSide(predicate.a)) {
+            val flippedOp = when (predicate.op) {
+                XPathCmpExpr.LT -> XPathCmpExpr.GT
+                XPathCmpExpr.GT -> XPathCmpExpr.LT
+                XPathCmpExpr.LTE -> XPathCmpExpr.GTE
+                else -> XPathCmpExpr.LTE
+            }
+
+            Triple(childB, predicate.a, flippedOp)
+        } else {
+            return null
+        }
+
+        val value = when (val contextValue = contextSide.eval(sourceInstance, evaluationContext)) {
+            is Double -> contextValue
+            else -> XPathFuncExpr.toString(contextValue).toDoubleOrNull()
+        } ?: return null
+
+        return when (op) {
+            XPathCmpExpr.LT -> Query.NumericLt(child, value)
+            XPathCmpExpr.LTE -> Query.NumericLte(child, value)
+            XPathCmpExpr.GT -> Query.NumericGt(child, value)
+            XPathCmpExpr.GTE -> Query.NumericGte(child, value)
+            else -> null
+        }
+    }
+
+    private fun xPathFuncExprToQuery(
+        predicate: XPathFuncExpr,
+        sourceInstance: DataInstance<*>,
+        evaluationContext: EvaluationContext,
+    ): Query? {
+        val args = predicate.args
+
+        return when (predicate.id.name) {
+            "not" -> {
+                if (args.size == 1) {
+                    xPathExpressionToQuery(args[0], sourceInstance, evaluationContext)?.let {
+                        Query.Not(it)
+                    }
+                } else {
+                    null
+                }
+            }
+
+            "starts-with", "contains" -> {
+                val child = if (args.size == 2) getChildName(args[0]) else null
+                if (child != null && isContextSide(args[1])) {
+                    val value = XPathFuncExpr.toString(args[1].eval(sourceInstance, evaluationContext))
+
+                    if (predicate.id.name == "starts-with") {
+                        Query.StringStartsWith(child, value)
+                    } else {
+                        Query.StringContains(child, value)
+                    }
+                } else {
+                    null
+                }
+            }
+
+            "selected" -> {
+                val listChild = if (args.size == 2) getChildName(args[0]) else null
+                val valueChild = if (args.size == 2) getChildName(args[1]) else null
+
+                // selected() checks for " value " in " list " (with value trimmed)
+                if (listChild != null && isContextSide(args[1])) {
+                    val value = XPathFuncExpr.toString(args[1].eval(sourceInstance, evaluationContext))
+                    Query.StringContainsToken(listChild, value.trim { it <= ' ' })
+                } else if (valueChild != null && isContextSide(args[0])) {
+                    val values = XPathFuncExpr.toString(args[0].eval(sourceInstance, evaluationContext))
+                    Query.StringIsTokenIn(valueChild, values)
+                } else {
+                    null
+                }
+            }
+
+            else -> null
+        }
+    }
+
+    /**
+     * Returns the name of the child if [expression] is a reference to a direct child of the
+     * nodes being filtered (`name` in `item[starts-with(name, 'a')]` for example).
+     */
+    private fun getChildName(expression: XPathExpression): String? {
+        return if (
+            expression is XPathPathExpr &&
+            expression.init_context == XPathPathExpr.INIT_CONTEXT_RELATIVE &&
+            expression.steps.size == 1 &&
+            expression.steps[0].name != null
+        ) {
+            expression.steps[0].name.name
+        } else {
+            null
+        }
+    }
+
+    /**
+     * Whether [expression] can be evaluated once for the whole filter rather than for each node
+     * (it's a literal or a reference that doesn't depend on the node being filtered).
+     */
+    private fun isContextSide(expression: XPathExpression): Boolean {
+        return when (expression) {
+            is XPathStringLiteral, is XPathNumericLiteral -> true
+            is XPathPathExpr -> expression.init_context != XPathPathExpr.INIT_CONTEXT_RELATIVE
+            else -> false
+        }
+    }
+
     private fun queryToTreeReferences(query: Query, sourceInstance: DataInstance<*>): List<TreeReference> {
         val results = instanceAdapter.query(sourceInstance.instanceId, query)
         sourceInstance.replacePartialElements(results)
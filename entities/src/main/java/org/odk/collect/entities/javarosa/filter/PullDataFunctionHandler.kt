@@ -38,8 +38,11 @@ class PullDataFunctionHandler(
             val filterChild = XPathFuncExpr.toString(args[2])
             val filterValue = XPathFuncExpr.toString(args[3])
 
-            instanceAdapter.query(instanceId, Query.StringEq(filterChild, filterValue)).firstOrNull()
-                ?.getFirstChild(child)?.value?.value ?: ""
+            instanceAdapter.query(
+                instanceId,
+                Query.StringEq(filterChild, filterValue),
+                projection = setOf(child)
+            ).firstOrNull()?.getFirstChild(child)?.value?.value ?: ""
         } else {
             fallback?.eval(args, ec) ?: ""
         }
@@ -7,11 +7,22 @@ import org.odk.collect.entities.storage.EntitiesRepository
 import org.odk.collect.entities.storage.Entity
 import org.odk.collect.entities.storage.getListNames
 import org.odk.collect.shared.Query
+import java.util.Collections
+import java.util.WeakHashMap
 
 class LocalEntitiesInstanceAdapter(private val entitiesRepository: EntitiesRepository) {
 
     private val lists = entitiesRepository.getListNames()
 
+    /**
+     * Elements built for entities returned by [query]. When [entitiesRepository] caches query
+     * results (like [org.odk.collect.entities.storage.CachingEntitiesRepository]), the same
+     * entities are returned each time a filter is evaluated, so this avoids rebuilding their
+     * elements as well. Keys are weak so elements are dropped along with the entities once the
+     * repository no longer holds on to them.
+     */
+    private val elements = Collections.synchronizedMap(WeakHashMap<Entity.Saved, TreeElement>())
+
     fun supportsInstance(instanceId: String): Boolean {
         return lists.contains(instanceId)
     }
@@ -40,10 +51,10 @@ class LocalEntitiesInstanceAdapter(private val entitiesRepository: EntitiesRepos
         }
     }
 
-    fun query(list: String, query: Query): List<TreeElement> {
+    fun query(list: String, query: Query, projection: Set<String>? = null): List<TreeElement> {
         return entitiesRepository
-            .query(list, query)
-            .map { convertToElement(it) }
+            .query(list, query, projection)
+            .map { entity -> elements.getOrPut(entity) { convertToElement(entity) } }
     }
 
     private fun convertToElement(entity: Entity.Saved): TreeElement {
@@ -0,0 +1,72 @@
+package org.odk.collect.entities.storage
+
+import org.odk.collect.shared.Query
+
+/**
+ * Wraps an [EntitiesRepository] and caches the results of [query] calls so that repeatedly
+ * evaluated filters and `pulldata` calls in a form don't need to hit the wrapped repository each
+ * time. The cache holds up to [maxRows] entities in total (evicting the least recently used
+ * queries first) and is cleared whenever the wrapped repository's
+ * [EntitiesRepository.getWriteVersion] changes, so writes made directly to the wrapped repository
+ * (or another one backed by the same storage) are picked up as well as those made through this
+ * one.
+ */
+class CachingEntitiesRepository(
+    private val wrapped: EntitiesRepository,
+    private val maxRows: Int = DEFAULT_MAX_ROWS
+) : EntitiesRepository by wrapped {
+
+    private val cache = LinkedHashMap<Triple<String, Query, Set<String>?>, List<Entity.Saved>>(16, 0.75f, true)
+    private var cachedRows = 0
+    private var cacheWriteVersion: Long? = null
+
+    /**
+     * Queries without a [query] (which return the whole list) are not cached to avoid holding
+     * large lists in memory.
+     */
+    override fun query(list: String, query: Query?, projection: Set<String>?): List<Entity.Saved> {
+        if (query == null) {
+            return wrapped.query(list, null, projection)
+        }
+
+        val key = Triple(list, query, projection)
+        val writeVersion = wrapped.getWriteVersion()
+        synchronized(cache) {
+            if (writeVersion != cacheWriteVersion) {
+                cache.clear()
+                cachedRows = 0
+                cacheWriteVersion = writeVersion
+            }
+
+            cache[key]?.let { return it }
+        }
+
+        return wrapped.query(list, query, projection).also {
+            synchronized(cache) {
+                if (writeVersion == cacheWriteVersion && it.rows <= maxRows) {
+                    cache.put(key, it)?.let { replaced -> cachedRows -= replaced.rows }
+                    cachedRows += it.rows
+                    evict()
+                }
+            }
+        }
+    }
+
+    private fun evict() {
+        val iterator = cache.values.iterator()
+        while (cachedRows > maxRows && iterator.hasNext()) {
+            cachedRows -= iterator.next().rows
+            iterator.remove()
+        }
+    }
+
+    /**
+     * Empty results still count as a row so that the number of cached queries is bounded too.
+     */
+    private val List<Entity.Saved>.rows: Int
+        get() = maxOf(size, 1)
+
+    companion object {
+        const val DEFAULT_MAX_ROWS = 10000
+    }
+}
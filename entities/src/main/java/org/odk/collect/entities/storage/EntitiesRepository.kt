@@ -8,10 +8,28 @@ interface EntitiesRepository {
     fun getCount(list: String): Int
     fun addList(list: String)
     fun delete(list: String, id: String)
-    fun query(list: String, query: Query? = null): List<Entity.Saved>
+
+    /**
+     * @param projection the properties to include in the returned entities. All properties are
+     * included if this is `null`.
+     */
+    fun query(list: String, query: Query? = null, projection: Set<String>? = null): List<Entity.Saved>
     fun getByIndex(list: String, index: Int): Entity.Saved?
+
+    /**
+     * Returns the (up to) [count] entities with an [Entity.Saved.index] starting at [startIndex].
+     * This allows walking through a whole list without loading it into memory in one go.
+     */
+    fun getByIndexRange(list: String, startIndex: Int, count: Int): List<Entity.Saved>
     fun updateList(list: String, hash: String, needsApproval: Boolean)
     fun getList(list: String): EntityList?
+
+    /**
+     * Returns a number that changes whenever the repository is written to (including by other
+     * instances backed by the same storage) so that callers can tell when results they've held
+     * on to might be stale.
+     */
+    fun getWriteVersion(): Long
 }
 
 fun EntitiesRepository.getListNames(): List<String> {
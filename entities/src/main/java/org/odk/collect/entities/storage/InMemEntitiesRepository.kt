@@ -8,6 +8,7 @@ class InMemEntitiesRepository : EntitiesRepository {
     private val lists = mutableListOf<EntityList>()
     private val listProperties = mutableMapOf<String, MutableSet<String>>()
     private val entities = mutableMapOf<String, MutableList<Entity.New>>()
+    private var writeVersion = 0L
 
     override fun getLists(): List<EntityList> {
         return lists
@@ -20,14 +21,22 @@ class InMemEntitiesRepository : EntitiesRepository {
     override fun addList(list: String) {
         if (lists.none { it.name == list }) {
             lists.add(EntityList(list))
+            writeVersion += 1
         }
     }
 
     override fun delete(list: String, id: String) {
         entities[list]?.removeIf { it.id == id }
+        writeVersion += 1
     }
 
-    override fun query(list: String, query: Query?): List<Entity.Saved> {
+    override fun query(list: String, query: Query?, projection: Set<String>?): List<Entity.Saved> {
+        if (projection != null) {
+            return query(list, query).map { entity ->
+                entity.copy(properties = entity.properties.filter { projection.contains(it.first) })
+            }
+        }
+
         val entities = (entities[list] ?: emptyList()).mapIndexed { index, entity ->
             Entity.Saved(
                 entity.id,
@@ -52,10 +61,20 @@ class InMemEntitiesRepository : EntitiesRepository {
         return when (query) {
             is Query.StringEq -> entities.filter { it.getFieldValue(query.column) == query.value }
             is Query.StringNotEq -> entities.filter { it.getFieldValue(query.column) != query.value }
+            is Query.StringIn -> entities.filter { query.values.contains(it.getFieldValue(query.column)) }
+            is Query.StringStartsWith -> entities.filter { it.getFieldValue(query.column).startsWith(query.value) }
+            is Query.StringContains -> entities.filter { it.getFieldValue(query.column).contains(query.value) }
+            is Query.StringContainsToken -> entities.filter { " ${it.getFieldValue(query.column)} ".contains(" ${query.value} ") }
+            is Query.StringIsTokenIn -> entities.filter { " ${query.values} ".contains(" ${it.getFieldValue(query.column).trim(' ')} ") }
             is Query.NumericEq -> entities.filter { it.getFieldValue(query.column).toDoubleOrNull() == query.value }
             is Query.NumericNotEq -> entities.filter { it.getFieldValue(query.column).toDoubleOrNull() != query.value }
+            is Query.NumericLt -> entities.filter { it.getFieldValue(query.column).toDoubleOrNull()?.let { value -> value < query.value } ?: false }
+            is Query.NumericLte -> entities.filter { it.getFieldValue(query.column).toDoubleOrNull()?.let { value -> value <= query.value } ?: false }
+            is Query.NumericGt -> entities.filter { it.getFieldValue(query.column).toDoubleOrNull()?.let { value -> value > query.value } ?: false }
+            is Query.NumericGte -> entities.filter { it.getFieldValue(query.column).toDoubleOrNull()?.let { value -> value >= query.value } ?: false }
             is Query.And -> query(list, query.queryA).intersect(query(list, query.queryB)).toList()
             is Query.Or -> query(list, query.queryA).union(query(list, query.queryB)).toList()
+            is Query.Not -> entities.minus(query(list, query.query).toSet())
             null -> entities
         }
     }
@@ -64,12 +83,17 @@ class InMemEntitiesRepository : EntitiesRepository {
         return query(list).firstOrNull { it.index == index }
     }
 
+    override fun getByIndexRange(list: String, startIndex: Int, count: Int): List<Entity.Saved> {
+        return query(list).filter { it.index >= startIndex && it.index < startIndex + count }
+    }
+
     override fun updateList(list: String, hash: String, needsApproval: Boolean) {
         val existing = lists.firstOrNull { it.name == list }
         if (existing != null) {
             val update = existing.copy(hash = hash, needsApproval = needsApproval)
             lists.remove(existing)
             lists.add(update)
+            writeVersion += 1
         }
     }
 
@@ -77,6 +101,10 @@ class InMemEntitiesRepository : EntitiesRepository {
         return lists.firstOrNull { it.name == list }
     }
 
+    override fun getWriteVersion(): Long {
+        return writeVersion
+    }
+
     override fun save(list: String, vararg entities: Entity) {
         val entityList = this.entities.getOrPut(list) { mutableListOf() }
 
@@ -116,6 +144,8 @@ class InMemEntitiesRepository : EntitiesRepository {
                 )
             }
         }
+
+        writeVersion += 1
     }
 
     private fun updateLists(list: String, entity: Entity) {
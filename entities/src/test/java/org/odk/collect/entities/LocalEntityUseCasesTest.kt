@@ -651,6 +651,54 @@ class LocalEntityUseCasesTest {
         assertThat(songs.isEmpty(), equalTo(true))
     }
 
+    @Test
+    fun `updateLocalEntitiesFromServer updates, adds and removes entities in lists bigger than a single batch`() {
+        val local = (0 until 1200).map { Entity.New("id-$it", "Label $it", state = Entity.State.ONLINE) }
+        entitiesRepository.save("songs", *local.toTypedArray())
+
+        val server = (100 until 1300).map { Entity.New("id-$it", "New Label $it", version = 2) }
+        val csv = createEntityList(*server.toTypedArray())
+        LocalEntityUseCases.updateLocalEntitiesFromServer(
+            "songs",
+            csv,
+            entitiesRepository,
+            entitySource,
+            FormFixtures.mediaFile()
+        )
+
+        val songs = entitiesRepository.query("songs")
+        assertThat(songs.size, equalTo(1200))
+        assertThat(songs.map { it.id }, containsInAnyOrder(*server.map { it.id }.toTypedArray()))
+        assertThat(songs.all { it.version == 2 && it.label!!.startsWith("New Label") }, equalTo(true))
+    }
+
+    @Test
+    fun `updateLocalEntitiesFromServer does nothing if a record in a later batch is invalid`() {
+        val local = (0 until 1200).map { Entity.New("id-$it", "Label $it", state = Entity.State.ONLINE) }
+        entitiesRepository.save("songs", *local.toTypedArray())
+        val listHash = entitiesRepository.getList("songs")?.hash
+
+        val server = (100 until 1300).map { listOf("id-$it", "New Label $it", "2") }
+        val csv = createCsv(
+            listOf(EntitySchema.ID, EntitySchema.LABEL, EntitySchema.VERSION),
+            *server.toTypedArray(),
+            listOf("invalid")
+        )
+        LocalEntityUseCases.updateLocalEntitiesFromServer(
+            "songs",
+            csv,
+            entitiesRepository,
+            entitySource,
+            FormFixtures.mediaFile(hash = "hash")
+        )
+
+        val songs = entitiesRepository.query("songs")
+        assertThat(songs.size, equalTo(1200))
+        assertThat(songs.map { it.id }, containsInAnyOrder(*local.map { it.id }.toTypedArray()))
+        assertThat(songs.all { it.version == 1 && it.label!!.startsWith("Label") }, equalTo(true))
+        assertThat(entitiesRepository.getList("songs")?.hash, equalTo(listHash))
+    }
+
     @Test
     fun `updateLocalEntitiesFromServer updates the list hash with server prefix`() {
         val csv = createEntityList(Entity.New("cathedrals", "Cathedrals"))
@@ -743,9 +791,9 @@ private class MeasurableEntitiesRepository(private val wrapped: EntitiesReposito
         wrapped.delete(list, id)
     }
 
-    override fun query(list: String, query: Query?): List<Entity.Saved> {
+    override fun query(list: String, query: Query?, projection: Set<String>?): List<Entity.Saved> {
         accesses += 1
-        return wrapped.query(list, query)
+        return wrapped.query(list, query, projection)
     }
 
     override fun getByIndex(list: String, index: Int): Entity.Saved? {
@@ -753,6 +801,11 @@ private class MeasurableEntitiesRepository(private val wrapped: EntitiesReposito
         return wrapped.getByIndex(list, index)
     }
 
+    override fun getByIndexRange(list: String, startIndex: Int, count: Int): List<Entity.Saved> {
+        accesses += 1
+        return wrapped.getByIndexRange(list, startIndex, count)
+    }
+
     override fun updateList(list: String, hash: String, needsApproval: Boolean) {
         accesses += 1
         wrapped.updateList(list, hash, false)
@@ -762,6 +815,10 @@ private class MeasurableEntitiesRepository(private val wrapped: EntitiesReposito
         accesses += 1
         return wrapped.getList(list)
     }
+
+    override fun getWriteVersion(): Long {
+        return wrapped.getWriteVersion()
+    }
 }
 
 private class FakeEntitySource : EntitySource {
@@ -34,6 +34,7 @@ import org.junit.After
 import org.junit.Before
 import org.junit.Test
 import org.odk.collect.entities.javarosa.intance.LocalEntitiesInstanceProvider
+import org.odk.collect.entities.storage.CachingEntitiesRepository
 import org.odk.collect.entities.storage.Entity
 import org.odk.collect.entities.storage.InMemEntitiesRepository
 import java.util.function.Supplier
@@ -227,7 +228,7 @@ class LocalEntitiesFilterStrategyTest {
                         t("instance id=\"things\" src=\"jr://file-csv/things.csv\""),
                         bind("/data/question").type("string"),
                         bind("/data/calculate").type("string")
-                            .calculate("instance('things')/root/item[starts-with(name, 'thing')]/label")
+                            .calculate("instance('things')/root/item[string-length(name) > 3]/label")
                     )
                 ),
                 body(
@@ -595,6 +596,356 @@ class LocalEntitiesFilterStrategyTest {
         assertThat(instanceProvider.fullParsePerformed, equalTo(false))
     }
 
+    @Test
+    fun `works correctly in the optimized way with property < number`() {
+        entitiesRepository.save(
+            "things",
+            Entity.New("thing1", "Thing1", properties = listOf("age" to "25", "village" to "Springfield")),
+            Entity.New("thing2", "Thing2", properties = listOf("age" to "30", "village" to "Shelbyville")),
+            Entity.New("thing3", "Thing3", properties = listOf("age" to "", "village" to "Capital City"))
+        )
+
+        val scenario = Scenario.init(
+            "Secondary instance form",
+            html(
+                head(
+                    title("Secondary instance form"),
+                    model(
+                        mainInstance(
+                            t(
+                                "data id=\"create-entity-form\"",
+                                t("question"),
+                            )
+                        ),
+                        t("instance id=\"things\" src=\"jr://file-csv/things.csv\""),
+                        bind("/data/question").type("string")
+                    )
+                ),
+                body(
+                    select1Dynamic(
+                        "/data/question",
+                        "instance('things')/root/item[age < 30]",
+                        "name",
+                        "label"
+                    )
+                )
+            ),
+            controllerSupplier
+        )
+
+        val choices = scenario.choicesOf("/data/question").map { it.value }
+        assertThat(choices, containsInAnyOrder("thing1"))
+        assertThat(fallthroughFilterStrategy.fellThrough, equalTo(false))
+    }
+
+    @Test
+    fun `works correctly in the optimized way with number <= property`() {
+        entitiesRepository.save(
+            "things",
+            Entity.New("thing1", "Thing1", properties = listOf("age" to "25", "village" to "Springfield")),
+            Entity.New("thing2", "Thing2", properties = listOf("age" to "30", "village" to "Shelbyville")),
+            Entity.New("thing3", "Thing3", properties = listOf("age" to "", "village" to "Capital City"))
+        )
+
+        val scenario = Scenario.init(
+            "Secondary instance form",
+            html(
+                head(
+                    title("Secondary instance form"),
+                    model(
+                        mainInstance(
+                            t(
+                                "data id=\"create-entity-form\"",
+                                t("question"),
+                            )
+                        ),
+                        t("instance id=\"things\" src=\"jr://file-csv/things.csv\""),
+                        bind("/data/question").type("string")
+                    )
+                ),
+                body(
+                    select1Dynamic(
+                        "/data/question",
+                        "instance('things')/root/item[25 <= age]",
+                        "name",
+                        "label"
+                    )
+                )
+            ),
+            controllerSupplier
+        )
+
+        val choices = scenario.choicesOf("/data/question").map { it.value }
+        assertThat(choices, containsInAnyOrder("thing1", "thing2"))
+        assertThat(fallthroughFilterStrategy.fellThrough, equalTo(false))
+    }
+
+    @Test
+    fun `works correctly in the optimized way with starts-with`() {
+        entitiesRepository.save(
+            "things",
+            Entity.New("thing1", "Thing1", properties = listOf("age" to "25", "village" to "Springfield")),
+            Entity.New("thing2", "Thing2", properties = listOf("age" to "30", "village" to "Shelbyville")),
+            Entity.New("thing3", "Thing3", properties = listOf("age" to "", "village" to "Capital City"))
+        )
+
+        val scenario = Scenario.init(
+            "Secondary instance form",
+            html(
+                head(
+                    title("Secondary instance form"),
+                    model(
+                        mainInstance(
+                            t(
+                                "data id=\"create-entity-form\"",
+                                t("question"),
+                            )
+                        ),
+                        t("instance id=\"things\" src=\"jr://file-csv/things.csv\""),
+                        bind("/data/question").type("string")
+                    )
+                ),
+                body(
+                    select1Dynamic(
+                        "/data/question",
+                        "instance('things')/root/item[starts-with(village, 'S')]",
+                        "name",
+                        "label"
+                    )
+                )
+            ),
+            controllerSupplier
+        )
+
+        val choices = scenario.choicesOf("/data/question").map { it.value }
+        assertThat(choices, containsInAnyOrder("thing1", "thing2"))
+        assertThat(fallthroughFilterStrategy.fellThrough, equalTo(false))
+    }
+
+    @Test
+    fun `works correctly in the optimized way with contains`() {
+        entitiesRepository.save(
+            "things",
+            Entity.New("thing1", "Thing1", properties = listOf("age" to "25", "village" to "Springfield")),
+            Entity.New("thing2", "Thing2", properties = listOf("age" to "30", "village" to "Shelbyville")),
+            Entity.New("thing3", "Thing3", properties = listOf("age" to "", "village" to "Capital City"))
+        )
+
+        val scenario = Scenario.init(
+            "Secondary instance form",
+            html(
+                head(
+                    title("Secondary instance form"),
+                    model(
+                        mainInstance(
+                            t(
+                                "data id=\"create-entity-form\"",
+                                t("question"),
+                            )
+                        ),
+                        t("instance id=\"things\" src=\"jr://file-csv/things.csv\""),
+                        bind("/data/question").type("string")
+                    )
+                ),
+                body(
+                    select1Dynamic(
+                        "/data/question",
+                        "instance('things')/root/item[contains(village, 'ring')]",
+                        "name",
+                        "label"
+                    )
+                )
+            ),
+            controllerSupplier
+        )
+
+        val choices = scenario.choicesOf("/data/question").map { it.value }
+        assertThat(choices, containsInAnyOrder("thing1"))
+        assertThat(fallthroughFilterStrategy.fellThrough, equalTo(false))
+    }
+
+    @Test
+    fun `works correctly in the optimized way with selected`() {
+        entitiesRepository.save(
+            "things",
+            Entity.New("thing1", "Thing1", properties = listOf("age" to "25", "village" to "Springfield")),
+            Entity.New("thing2", "Thing2", properties = listOf("age" to "30", "village" to "Shelbyville")),
+            Entity.New("thing3", "Thing3", properties = listOf("age" to "", "village" to "Capital City"))
+        )
+
+        val scenario = Scenario.init(
+            "Secondary instance form",
+            html(
+                head(
+                    title("Secondary instance form"),
+                    model(
+                        mainInstance(
+                            t(
+                                "data id=\"create-entity-form\"",
+                                t("question"),
+                            )
+                        ),
+                        t("instance id=\"things\" src=\"jr://file-csv/things.csv\""),
+                        bind("/data/question").type("string")
+                    )
+                ),
+                body(
+                    select1Dynamic(
+                        "/data/question",
+                        "instance('things')/root/item[selected('thing1 thing3', name)]",
+                        "name",
+                        "label"
+                    )
+                )
+            ),
+            controllerSupplier
+        )
+
+        val choices = scenario.choicesOf("/data/question").map { it.value }
+        assertThat(choices, containsInAnyOrder("thing1", "thing3"))
+        assertThat(fallthroughFilterStrategy.fellThrough, equalTo(false))
+    }
+
+    @Test
+    fun `works correctly in the optimized way with selected on a property list`() {
+        entitiesRepository.save(
+            "things",
+            Entity.New("thing1", "Thing1", properties = listOf("tags" to "red blue")),
+            Entity.New("thing2", "Thing2", properties = listOf("tags" to "reddish")),
+            Entity.New("thing3", "Thing3", properties = listOf("tags" to "blue red"))
+        )
+
+        val scenario = Scenario.init(
+            "Secondary instance form",
+            html(
+                head(
+                    title("Secondary instance form"),
+                    model(
+                        mainInstance(
+                            t(
+                                "data id=\"create-entity-form\"",
+                                t("question"),
+                            )
+                        ),
+                        t("instance id=\"things\" src=\"jr://file-csv/things.csv\""),
+                        bind("/data/question").type("string")
+                    )
+                ),
+                body(
+                    select1Dynamic(
+                        "/data/question",
+                        "instance('things')/root/item[selected(tags, ' red ')]",
+                        "name",
+                        "label"
+                    )
+                )
+            ),
+            controllerSupplier
+        )
+
+        val choices = scenario.choicesOf("/data/question").map { it.value }
+        assertThat(choices, containsInAnyOrder("thing1", "thing3"))
+        assertThat(fallthroughFilterStrategy.fellThrough, equalTo(false))
+    }
+
+    @Test
+    fun `works correctly in the optimized way with not`() {
+        entitiesRepository.save(
+            "things",
+            Entity.New("thing1", "Thing1", properties = listOf("age" to "25", "village" to "Springfield")),
+            Entity.New("thing2", "Thing2", properties = listOf("age" to "30", "village" to "Shelbyville")),
+            Entity.New("thing3", "Thing3", properties = listOf("age" to "", "village" to "Capital City"))
+        )
+
+        val scenario = Scenario.init(
+            "Secondary instance form",
+            html(
+                head(
+                    title("Secondary instance form"),
+                    model(
+                        mainInstance(
+                            t(
+                                "data id=\"create-entity-form\"",
+                                t("question"),
+                            )
+                        ),
+                        t("instance id=\"things\" src=\"jr://file-csv/things.csv\""),
+                        bind("/data/question").type("string")
+                    )
+                ),
+                body(
+                    select1Dynamic(
+                        "/data/question",
+                        "instance('things')/root/item[not(village = 'Springfield')]",
+                        "name",
+                        "label"
+                    )
+                )
+            ),
+            controllerSupplier
+        )
+
+        val choices = scenario.choicesOf("/data/question").map { it.value }
+        assertThat(choices, containsInAnyOrder("thing2", "thing3"))
+        assertThat(fallthroughFilterStrategy.fellThrough, equalTo(false))
+    }
+
+    @Test
+    fun `works correctly in the optimized way when cached results are filtered again`() {
+        entitiesRepository.save(
+            "things",
+            Entity.New("thing1", "Thing1", properties = listOf("property" to "a")),
+            Entity.New("thing2", "Thing2", properties = listOf("property" to "b"))
+        )
+
+        val cachingRepository = CachingEntitiesRepository(entitiesRepository)
+        val scenario = Scenario.init(
+            "Secondary instance form",
+            html(
+                head(
+                    title("Secondary instance form"),
+                    model(
+                        mainInstance(
+                            t(
+                                "data id=\"create-entity-form\"",
+                                t("ref_question"),
+                                t("question")
+                            )
+                        ),
+                        t("instance id=\"things\" src=\"jr://file-csv/things.csv\""),
+                        bind("/data/ref_question").type("string"),
+                        bind("/data/question").type("string")
+                    )
+                ),
+                body(
+                    input("/data/ref_question"),
+                    select1Dynamic(
+                        "/data/question",
+                        "instance('things')/root/item[property=/data/ref_question]",
+                        "name",
+                        "label"
+                    )
+                )
+            )
+        ) { formDef ->
+            FormEntryController(FormEntryModel(formDef)).also {
+                it.addFilterStrategy(LocalEntitiesFilterStrategy(cachingRepository))
+                it.addFilterStrategy(fallthroughFilterStrategy)
+            }
+        }
+
+        scenario.answer("/data/ref_question", "a")
+        assertThat(scenario.choicesOf("/data/question").map { it.value }, containsInAnyOrder("thing1"))
+
+        scenario.answer("/data/ref_question", "b")
+        assertThat(scenario.choicesOf("/data/question").map { it.value }, containsInAnyOrder("thing2"))
+
+        scenario.answer("/data/ref_question", "a")
+        assertThat(scenario.choicesOf("/data/question").map { it.value }, containsInAnyOrder("thing1"))
+
+        assertThat(fallthroughFilterStrategy.fellThrough, equalTo(false))
+    }
+
     @Test
     fun `works correctly but not in the optimized way with unanswered question = ''`() {
         entitiesRepository.save("things", Entity.New("thing1", "Thing1"))
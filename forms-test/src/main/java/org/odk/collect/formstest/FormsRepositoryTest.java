@@ -13,6 +13,7 @@ import java.io.IOException;
 import java.util.List;
 import java.util.function.Supplier;
 
+import static java.util.Arrays.asList;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
@@ -176,6 +177,20 @@ public abstract class FormsRepositoryTest {
         assertEquals(form1, form2);
     }
 
+    @Test
+    public void saveAll_savesAllForms() {
+        FormsRepository formsRepository = buildSubject();
+        List<Form> savedForms = formsRepository.saveAll(asList(
+                FormUtils.buildForm("id1", "version", getFormFilesPath()).build(),
+                FormUtils.buildForm("id2", "version", getFormFilesPath()).build()
+        ));
+
+        assertThat(savedForms.size(), is(2));
+        assertThat(savedForms.get(0).getDbId(), notNullValue());
+        assertThat(formsRepository.getAll().size(), is(2));
+        assertThat(formsRepository.getAllByFormId("id2").get(0), equalTo(savedForms.get(1)));
+    }
+
     @Test
     public void save_addsId() {
         FormsRepository formsRepository = buildSubject();
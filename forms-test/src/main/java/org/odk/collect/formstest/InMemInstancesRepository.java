@@ -37,7 +37,7 @@ public final class InMemInstancesRepository implements InstancesRepository {
     }
 
     @Override
-    public Instance get(Long databaseId) {
+    public synchronized Instance get(Long databaseId) {
         for (Instance instance : instances) {
             if (instance.getDbId().equals(databaseId)) {
                 return instance;
@@ -48,7 +48,7 @@ public final class InMemInstancesRepository implements InstancesRepository {
     }
 
     @Override
-    public Instance getOneByPath(String instancePath) {
+    public synchronized Instance getOneByPath(String instancePath) {
         List<Instance> result = new ArrayList<>();
 
         for (Instance instance : instances) {
@@ -65,19 +65,19 @@ public final class InMemInstancesRepository implements InstancesRepository {
     }
 
     @Override
-    public List<Instance> getAll() {
+    public synchronized List<Instance> getAll() {
         return new ArrayList<>(instances);
     }
 
     @Override
-    public List<Instance> getAllNotDeleted() {
+    public synchronized List<Instance> getAllNotDeleted() {
         return instances.stream()
                 .filter(instance -> instance.getDeletedDate() == null)
                 .collect(Collectors.toList());
     }
 
     @Override
-    public List<Instance> getAllByStatus(String... status) {
+    public synchronized List<Instance> getAllByStatus(String... status) {
         List<String> statuses = Arrays.asList(status);
         List<Instance> result = new ArrayList<>();
 
@@ -91,12 +91,12 @@ public final class InMemInstancesRepository implements InstancesRepository {
     }
 
     @Override
-    public int getCountByStatus(String... status) {
+    public synchronized int getCountByStatus(String... status) {
         return getAllByStatus(status).size();
     }
 
     @Override
-    public List<Instance> getAllByFormId(String formId) {
+    public synchronized List<Instance> getAllByFormId(String formId) {
         List<Instance> result = new ArrayList<>();
 
         for (Instance instance : instances) {
@@ -109,7 +109,7 @@ public final class InMemInstancesRepository implements InstancesRepository {
     }
 
     @Override
-    public List<Instance> getAllNotDeletedByFormIdAndVersion(String formId, String version) {
+    public synchronized List<Instance> getAllNotDeletedByFormIdAndVersion(String formId, String version) {
         return instances.stream().filter(instance -> {
             return Objects.equals(instance.getFormId(), formId)
                     && Objects.equals(instance.getFormVersion(), version)
@@ -118,7 +118,7 @@ public final class InMemInstancesRepository implements InstancesRepository {
     }
 
     @Override
-    public void delete(Long id) {
+    public synchronized void delete(Long id) {
         Instance instance = get(id);
         deleteInstanceFiles(instance);
 
@@ -126,7 +126,7 @@ public final class InMemInstancesRepository implements InstancesRepository {
     }
 
     @Override
-    public void deleteAll() {
+    public synchronized void deleteAll() {
         for (Instance instance : instances) {
             deleteInstanceFiles(instance);
         }
@@ -135,7 +135,7 @@ public final class InMemInstancesRepository implements InstancesRepository {
     }
 
     @Override
-    public Instance save(Instance instance) {
+    public synchronized Instance save(Instance instance) {
         if (instance.getStatus() == null) {
             instance = new Instance.Builder(instance)
                     .status(Instance.STATUS_INCOMPLETE)
@@ -170,7 +170,7 @@ public final class InMemInstancesRepository implements InstancesRepository {
     }
 
     @Override
-    public void deleteWithLogging(Long id) {
+    public synchronized void deleteWithLogging(Long id) {
         Instance instance = new Instance.Builder(get(id))
                 .geometry(null)
                 .geometryType(null)
@@ -182,7 +182,7 @@ public final class InMemInstancesRepository implements InstancesRepository {
         deleteInstanceFiles(instance);
     }
 
-    public void removeInstanceById(Long databaseId) {
+    public synchronized void removeInstanceById(Long databaseId) {
         for (int i = 0; i < instances.size(); i++) {
             if (instances.get(i).getDbId().equals(databaseId)) {
                 instances.remove(i);
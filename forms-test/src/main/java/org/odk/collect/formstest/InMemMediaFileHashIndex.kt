@@ -0,0 +1,45 @@
+package org.odk.collect.formstest
+
+import org.odk.collect.forms.MediaFileHashIndex
+import org.odk.collect.shared.strings.Md5.getMd5Hash
+import java.io.File
+
+class InMemMediaFileHashIndex : MediaFileHashIndex {
+
+    private val hashes = mutableMapOf<String, Triple<Long, Long, String>>()
+
+    /**
+     * The files that have actually been read to calculate a hash (rather than using a
+     * remembered one)
+     */
+    val hashedFiles = mutableListOf<File>()
+
+    @Synchronized
+    override fun getMd5Hash(file: File): String? {
+        if (!file.exists()) {
+            return null
+        }
+
+        val size = file.length()
+        val lastModified = file.lastModified()
+        val existing = hashes[file.absolutePath]
+        if (existing != null && existing.first == size && existing.second == lastModified) {
+            return existing.third
+        }
+
+        hashedFiles.add(file)
+        return file.getMd5Hash()?.also {
+            hashes[file.absolutePath] = Triple(size, lastModified, it)
+        }
+    }
+
+    @Synchronized
+    override fun removeMissingFiles() {
+        hashes.keys.removeAll { !File(it).exists() }
+    }
+
+    @Synchronized
+    fun contains(file: File): Boolean {
+        return hashes.containsKey(file.absolutePath)
+    }
+}
@@ -27,6 +27,7 @@ class InMemSavepointsRepository : SavepointsRepository {
         val savepoint = get(formDbId, instanceDbId)
         if (savepoint != null) {
             File(savepoint.savepointFilePath).delete()
+            File(savepoint.journalFilePath).delete()
             savepoints.remove(get(formDbId, instanceDbId))
         }
     }
@@ -34,6 +35,7 @@ class InMemSavepointsRepository : SavepointsRepository {
     override fun deleteAll() {
         savepoints.forEach {
             File(it.savepointFilePath).delete()
+            File(it.journalFilePath).delete()
         }
         savepoints.clear()
     }
@@ -1,6 +1,7 @@
 package org.odk.collect.forms;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.InputStream;
 import java.util.List;
@@ -20,4 +21,16 @@ public interface FormSource {
 
     @NotNull
     InputStream fetchMediaFile(String mediaFileURL) throws FormSourceException;
+
+    /**
+     * Fetches a media file starting from {@code offset} bytes in so that an interrupted download
+     * can be resumed. The rest of the file will only be returned if {@code validator} (from a
+     * previous {@link MediaFileResponse}) still matches the file on the server - otherwise (or if
+     * partial downloads aren't supported) the whole file is returned and
+     * {@link MediaFileResponse#isPartial()} will be {@code false}.
+     */
+    @NotNull
+    default MediaFileResponse fetchMediaFile(String mediaFileURL, long offset, @Nullable String validator) throws FormSourceException {
+        return new MediaFileResponse(fetchMediaFile(mediaFileURL), false, null);
+    }
 }
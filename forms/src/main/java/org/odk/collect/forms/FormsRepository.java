@@ -3,6 +3,7 @@ package org.odk.collect.forms;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public interface FormsRepository {
@@ -31,6 +32,19 @@ public interface FormsRepository {
 
     Form save(@NotNull Form form);
 
+    /**
+     * Saves a batch of forms. Implementations should save them all at once (in a single
+     * transaction for example) where they can.
+     */
+    default List<Form> saveAll(@NotNull List<Form> forms) {
+        List<Form> savedForms = new ArrayList<>();
+        for (Form form : forms) {
+            savedForms.add(save(form));
+        }
+
+        return savedForms;
+    }
+
     void delete(Long id);
 
     void softDelete(Long id);
@@ -0,0 +1,21 @@
+package org.odk.collect.forms
+
+import java.io.File
+
+/**
+ * Remembers the MD5 hashes of media files so that a file only needs to be read again if it has
+ * changed (its size or last modified time is different from when it was last hashed).
+ */
+interface MediaFileHashIndex {
+
+    /**
+     * @return the MD5 hash of [file] or `null` if it doesn't exist
+     */
+    fun getMd5Hash(file: File): String?
+
+    /**
+     * Forgets the hashes of files that no longer exist so that the index doesn't keep growing
+     * as forms (and their media files) are deleted or replaced.
+     */
+    fun removeMissingFiles()
+}
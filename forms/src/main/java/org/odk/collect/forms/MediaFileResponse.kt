@@ -0,0 +1,16 @@
+package org.odk.collect.forms
+
+import java.io.InputStream
+
+/**
+ * @param isPartial `true` if [inputStream] only contains the file from the requested offset
+ * rather than the whole file
+ * @param validator identifies the version of the file on the server (an `ETag` or
+ * `Last-Modified` value) so that a partial download can be safely resumed later. Can be `null`
+ * if the server doesn't provide one.
+ */
+data class MediaFileResponse(
+    val inputStream: InputStream,
+    val isPartial: Boolean,
+    val validator: String?
+)
@@ -5,4 +5,10 @@ data class Savepoint(
     val instanceDbId: Long?,
     val savepointFilePath: String,
     val instanceFilePath: String
-)
+) {
+    /**
+     * Changes made since the savepoint file was written
+     */
+    val journalFilePath: String
+        get() = "$savepointFilePath.journal"
+}
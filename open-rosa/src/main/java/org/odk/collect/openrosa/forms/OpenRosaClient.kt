@@ -10,7 +10,9 @@ import org.odk.collect.forms.FormSourceException.FetchError
 import org.odk.collect.forms.FormSourceException.SecurityError
 import org.odk.collect.forms.FormSourceException.ServerNotOpenRosaError
 import org.odk.collect.forms.ManifestFile
+import org.odk.collect.forms.MediaFileResponse
 import org.odk.collect.openrosa.forms.OpenRosaXmlFetcher.WebCredentialsProvider
+import org.odk.collect.openrosa.http.HttpGetResult
 import org.odk.collect.openrosa.http.OpenRosaConstants
 import org.odk.collect.openrosa.http.OpenRosaHttpInterface
 import org.odk.collect.openrosa.parse.OpenRosaResponseParser
@@ -70,7 +72,14 @@ class OpenRosaClient(
             return null
         }
 
-        val result = mapException { openRosaXMLFetcher.getXML(manifestURL) }
+        /**
+         * Always revalidate manifests (rather than letting the HTTP cache decide they are still
+         * fresh) so that changes on the server are picked up. If the cache has a copy with an
+         * `ETag` or `Last-Modified`, this will be a conditional request and the cached copy will
+         * be used if the server responds with `304 Not Modified`.
+         */
+        val headers = mapOf("Cache-Control" to "max-age=0")
+        val result = mapException { openRosaXMLFetcher.getXML(manifestURL, headers) }
 
         if (result.errorMessage != null) {
             if (result.responseCode != HttpURLConnection.HTTP_OK) {
@@ -114,6 +123,31 @@ class OpenRosaClient(
         }
     }
 
+    @Throws(FormSourceException::class)
+    override fun fetchMediaFile(
+        mediaFileURL: String,
+        offset: Long,
+        validator: String?
+    ): MediaFileResponse {
+        val headers = if (offset > 0 && validator != null) {
+            mapOf("Range" to "bytes=$offset-", "If-Range" to validator)
+        } else {
+            emptyMap()
+        }
+
+        val result = mapException { openRosaXMLFetcher.fetch(mediaFileURL, null, headers) }
+
+        if (result.inputStream == null) {
+            throw FormSourceException.ServerError(result.statusCode, serverUrl)
+        } else {
+            return MediaFileResponse(
+                result.inputStream,
+                result.statusCode == HttpURLConnection.HTTP_PARTIAL,
+                getValidator(result)
+            )
+        }
+    }
+
     fun updateUrl(url: String) {
         this.serverUrl = url
     }
@@ -141,6 +175,18 @@ class OpenRosaClient(
         }
     }
 
+    /**
+     * `If-Range` requires a strong validator, so weak `ETag`s can't be used
+     */
+    private fun getValidator(result: HttpGetResult): String? {
+        val eTag = result.getHeader("ETag")
+        return if (eTag != null && !eTag.startsWith("W/")) {
+            eTag
+        } else {
+            result.getHeader("Last-Modified")
+        }
+    }
+
     private fun getFormListURL(): String {
         var downloadListUrl = serverUrl
 
@@ -15,6 +15,7 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Map;
 
 import timber.log.Timber;
 
@@ -42,14 +43,22 @@ public class OpenRosaXmlFetcher {
      * @return DocumentFetchResult - an object that contains the results of the "get" operation
      */
 
-    @SuppressWarnings("PMD.AvoidRethrowingException")
     public DocumentFetchResult getXML(String urlString) throws Exception {
+        return parseXML(urlString, fetch(urlString, HTTP_CONTENT_TYPE_TEXT_XML));
+    }
+
+    /**
+     * Like {@link #getXML(String)}, but sends additional {@code headers} with the request
+     */
+    public DocumentFetchResult getXML(String urlString, @NonNull Map<String, String> headers) throws Exception {
+        return parseXML(urlString, fetch(urlString, HTTP_CONTENT_TYPE_TEXT_XML, headers));
+    }
+
+    @SuppressWarnings("PMD.AvoidRethrowingException")
+    private static DocumentFetchResult parseXML(String urlString, HttpGetResult inputStreamResult) throws Exception {
 
         // parse response
         Document doc;
-        HttpGetResult inputStreamResult;
-
-        inputStreamResult = fetch(urlString, HTTP_CONTENT_TYPE_TEXT_XML);
 
         if (inputStreamResult.getStatusCode() != HttpURLConnection.HTTP_OK) {
             String error = "getXML failed while accessing "
@@ -73,6 +82,21 @@ public class OpenRosaXmlFetcher {
 
     @NonNull
     public HttpGetResult fetch(@NonNull String downloadUrl, @Nullable final String contentType) throws Exception {
+        URI uri = getUri(downloadUrl);
+        return httpInterface.executeGetRequest(uri, contentType, webCredentialsUtils.getCredentials(uri));
+    }
+
+    /**
+     * Like {@link #fetch(String, String)}, but sends additional {@code headers} with the request
+     */
+    @NonNull
+    public HttpGetResult fetch(@NonNull String downloadUrl, @Nullable final String contentType, @NonNull Map<String, String> headers) throws Exception {
+        URI uri = getUri(downloadUrl);
+        return httpInterface.executeGetRequest(uri, contentType, webCredentialsUtils.getCredentials(uri), headers);
+    }
+
+    @NonNull
+    private static URI getUri(@NonNull String downloadUrl) throws Exception {
         URI uri;
         try {
             // assume the downloadUrl is escaped properly
@@ -88,7 +112,7 @@ public class OpenRosaXmlFetcher {
             throw new Exception("Invalid server URL (no hostname): " + downloadUrl);
         }
 
-        return httpInterface.executeGetRequest(uri, contentType, webCredentialsUtils.getCredentials(uri));
+        return uri;
     }
 
     public void updateWebCredentialsProvider(WebCredentialsProvider webCredentialsUtils) {
@@ -17,6 +17,7 @@
 package org.odk.collect.openrosa.http;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.io.InputStream;
 import java.util.Map;
@@ -48,6 +49,21 @@ public class HttpGetResult {
         return hash;
     }
 
+    /**
+     * @return the value of the response header with the given name (ignoring case) or
+     * {@code null} if there isn't one
+     */
+    @Nullable
+    public String getHeader(@NonNull String name) {
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+
+        return null;
+    }
+
     public boolean isOpenRosaResponse() {
         boolean openRosaResponse = false;
 
@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.List;
+import java.util.Map;
 
 public interface OpenRosaHttpInterface {
 
@@ -38,6 +39,19 @@ public interface OpenRosaHttpInterface {
     @NonNull
     HttpGetResult executeGetRequest(@NonNull URI uri, @Nullable String contentType, @NonNull HttpCredentialsInterface credentials) throws Exception;
 
+    /**
+     * Like {@link #executeGetRequest(URI, String, HttpCredentialsInterface)}, but also sends
+     * {@code headers} with the request (such as {@code Range} and {@code If-Range} to resume a
+     * download). A {@code 206 Partial Content} response is treated as successful. Implementations
+     * that don't support extra headers can ignore them (as servers can ignore a {@code Range}).
+     *
+     * @param headers additional request headers
+     */
+    @NonNull
+    default HttpGetResult executeGetRequest(@NonNull URI uri, @Nullable String contentType, @NonNull HttpCredentialsInterface credentials, @NonNull Map<String, String> headers) throws Exception {
+        return executeGetRequest(uri, contentType, credentials);
+    }
+
     /**
      * Performs a Http Head request.
      *
@@ -66,6 +80,26 @@ public interface OpenRosaHttpInterface {
                                             @NonNull HttpCredentialsInterface credentials,
                                             @NonNull long contentLength) throws Exception;
 
+    /**
+     * Like {@link #uploadSubmissionAndFiles(File, List, URI, HttpCredentialsInterface, long)},
+     * but reports the number of bytes sent so far (across all the requests needed to upload
+     * the submission) to {@code progressListener} as the files are streamed to the server.
+     * Implementations that can't report progress can ignore the listener.
+     */
+    @NonNull
+    default HttpPostResult uploadSubmissionAndFiles(@NonNull File submissionFile,
+                                                    @NonNull List<File> fileList,
+                                                    @NonNull URI uri,
+                                                    @NonNull HttpCredentialsInterface credentials,
+                                                    @NonNull long contentLength,
+                                                    @Nullable UploadProgressListener progressListener) throws Exception {
+        return uploadSubmissionAndFiles(submissionFile, fileList, uri, credentials, contentLength);
+    }
+
+    interface UploadProgressListener {
+        void onProgress(long bytesSent, long totalBytes);
+    }
+
     interface FileToContentTypeMapper {
 
         @NonNull
@@ -18,6 +18,7 @@ import java.io.File;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -36,6 +37,7 @@ import timber.log.Timber;
 public class OkHttpConnection implements OpenRosaHttpInterface {
 
     private static final String HTTP_CONTENT_TYPE_TEXT_XML = "text/xml";
+    private static final long MAX_POST_RESPONSE_SIZE = 1024L * 1024L; // 1 MiB
 
     private final OkHttpOpenRosaServerClientProvider clientFactory;
 
@@ -54,16 +56,25 @@ public class OkHttpConnection implements OpenRosaHttpInterface {
     @NonNull
     @Override
     public HttpGetResult executeGetRequest(@NonNull URI uri, @Nullable String contentType, @Nullable HttpCredentialsInterface credentials) throws Exception {
+        return executeGetRequest(uri, contentType, credentials, new HashMap<>());
+    }
+
+    @NonNull
+    @Override
+    public HttpGetResult executeGetRequest(@NonNull URI uri, @Nullable String contentType, @Nullable HttpCredentialsInterface credentials, @NonNull Map<String, String> headers) throws Exception {
         OpenRosaServerClient httpClient = clientFactory.get(uri.getScheme(), userAgent, credentials);
-        Request request = new Request.Builder()
+        Request.Builder requestBuilder = new Request.Builder()
                 .url(uri.toURL())
-                .get()
-                .build();
+                .get();
 
-        Response response = httpClient.makeRequest(request, new Date());
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            requestBuilder.header(header.getKey(), header.getValue());
+        }
+
+        Response response = httpClient.makeRequest(requestBuilder.build(), new Date());
         int statusCode = response.code();
 
-        if (statusCode != HttpURLConnection.HTTP_OK) {
+        if (statusCode != HttpURLConnection.HTTP_OK && statusCode != HttpURLConnection.HTTP_PARTIAL) {
             discardEntityBytes(response);
             Timber.i("Error: %s (%s at %s", response.message(), String.valueOf(statusCode), uri.toString());
 
@@ -102,10 +113,10 @@ public class OkHttpConnection implements OpenRosaHttpInterface {
         }
 
         Map<String, String> responseHeaders = new HashMap<>();
-        Headers headers = response.headers();
+        Headers okHttpHeaders = response.headers();
 
-        for (int i = 0; i < headers.size(); i++) {
-            responseHeaders.put(headers.name(i), headers.value(i));
+        for (int i = 0; i < okHttpHeaders.size(); i++) {
+            responseHeaders.put(okHttpHeaders.name(i), okHttpHeaders.value(i));
         }
 
         return new HttpGetResult(downloadStream, responseHeaders, hash, statusCode);
@@ -138,86 +149,146 @@ public class OkHttpConnection implements OpenRosaHttpInterface {
     @NonNull
     @Override
     public HttpPostResult uploadSubmissionAndFiles(@NonNull File submissionFile, @NonNull List<File> fileList, @NonNull URI uri, @Nullable HttpCredentialsInterface credentials, @NonNull long contentLength) throws Exception {
+        return uploadSubmissionAndFiles(submissionFile, fileList, uri, credentials, contentLength, null);
+    }
+
+    @NonNull
+    @Override
+    public HttpPostResult uploadSubmissionAndFiles(@NonNull File submissionFile, @NonNull List<File> fileList, @NonNull URI uri, @Nullable HttpCredentialsInterface credentials, @NonNull long contentLength, @Nullable UploadProgressListener progressListener) throws Exception {
+        List<List<File>> batches = splitIntoBatches(submissionFile, fileList, contentLength);
+
+        // Bodies only reference the files so they can be built up front without reading them
+        List<MultipartBody> bodies = new ArrayList<>();
+        long totalBytes = 0L;
+        for (int i = 0; i < batches.size(); i++) {
+            MultipartBody body = buildMultipartBody(submissionFile, batches.get(i), i < batches.size() - 1);
+            bodies.add(body);
+            totalBytes += body.contentLength();
+        }
+
+        if (bodies.size() > 1) {
+            Timber.i("Extremely long post is being split into %d posts", bodies.size());
+        }
+
         HttpPostResult postResult = null;
+        long bytesSentInPreviousPosts = 0L;
+        for (MultipartBody body : bodies) {
+            RequestBody requestBody;
+            if (progressListener != null) {
+                long alreadySent = bytesSentInPreviousPosts;
+                long total = totalBytes;
+                requestBody = new ProgressRequestBody(body, bytesWritten -> progressListener.onProgress(alreadySent + bytesWritten, total));
+            } else {
+                requestBody = body;
+            }
 
-        boolean first = true;
-        int fileIndex = 0;
-        int lastFileIndex;
-        while (fileIndex < fileList.size() || first) {
-            lastFileIndex = fileIndex;
-            first = false;
-            long byteCount = 0L;
+            postResult = executePostRequest(uri, credentials, requestBody);
+            bytesSentInPreviousPosts += body.contentLength();
 
-            RequestBody requestBody = RequestBody.create(MediaType.parse(HTTP_CONTENT_TYPE_TEXT_XML), submissionFile);
+            if (postResult.getResponseCode() != HttpURLConnection.HTTP_CREATED &&
+                    postResult.getResponseCode() != HttpURLConnection.HTTP_ACCEPTED) {
+                return postResult;
+            }
+        }
 
-            MultipartBody.Builder multipartBuilder = new MultipartBody.Builder()
-                    .setType(MultipartBody.FORM)
-                    .addPart(MultipartBody.Part.createFormData("xml_submission_file", submissionFile.getName(), requestBody));
+        return postResult;
+    }
 
-            Timber.i("added xml_submission_file: %s", submissionFile.getName());
-            byteCount += submissionFile.length();
+    /**
+     * Splits attachments into batches so that each post (including the submission file) stays
+     * under {@code contentLength} (and has no more than 100 attachments) where possible. There is
+     * always at least one batch (which will be empty if there are no attachments).
+     */
+    private static List<List<File>> splitIntoBatches(@NonNull File submissionFile, @NonNull List<File> fileList, long contentLength) {
+        List<List<File>> batches = new ArrayList<>();
+        List<File> batch = new ArrayList<>();
+        long byteCount = submissionFile.length();
+
+        for (int fileIndex = 0; fileIndex < fileList.size(); fileIndex++) {
+            File file = fileList.get(fileIndex);
+            batch.add(file);
+            byteCount += file.length();
+
+            // we've added at least one attachment to the request...
+            if (fileIndex + 1 < fileList.size()) {
+                if (batch.size() > 100 || byteCount + fileList.get(fileIndex + 1).length() > contentLength) {
+                    // the next file would exceed the threshold...
+                    batches.add(batch);
+                    batch = new ArrayList<>();
+                    byteCount = submissionFile.length();
+                }
+            }
+        }
 
-            for (; fileIndex < fileList.size(); fileIndex++) {
-                File file = fileList.get(fileIndex);
+        batches.add(batch);
+        return batches;
+    }
 
-                String contentType = fileToContentTypeMapper.map(file.getName());
+    @NonNull
+    private MultipartBody buildMultipartBody(@NonNull File submissionFile, List<File> files, boolean isIncomplete) {
+        RequestBody requestBody = RequestBody.create(MediaType.parse(HTTP_CONTENT_TYPE_TEXT_XML), submissionFile);
 
-                RequestBody fileRequestBody = RequestBody.create(MediaType.parse(contentType), file);
-                multipartBuilder.addPart(MultipartBody.Part.createFormData(file.getName(), file.getName(), fileRequestBody));
+        MultipartBody.Builder multipartBuilder = new MultipartBody.Builder()
+                .setType(MultipartBody.FORM)
+                .addPart(MultipartBody.Part.createFormData("xml_submission_file", submissionFile.getName(), requestBody));
 
-                byteCount += file.length();
-                Timber.i("added file of type '%s' %s", contentType, file.getName());
+        Timber.i("added xml_submission_file: %s", submissionFile.getName());
 
-                // we've added at least one attachment to the request...
-                if (fileIndex + 1 < fileList.size()) {
-                    if ((fileIndex - lastFileIndex + 1 > 100) || (byteCount + fileList.get(fileIndex + 1).length()
-                            > contentLength)) {
-                        // the next file would exceed the 10MB threshold...
-                        Timber.i("Extremely long post is being split into multiple posts");
-                        multipartBuilder.addPart(MultipartBody.Part.createFormData("*isIncomplete*", "yes"));
-                        ++fileIndex; // advance over the last attachment added...
-                        break;
-                    }
-                }
-            }
+        for (File file : files) {
+            String contentType = fileToContentTypeMapper.map(file.getName());
 
-            MultipartBody multipartBody = multipartBuilder.build();
-            postResult = executePostRequest(uri, credentials, multipartBody);
+            RequestBody fileRequestBody = RequestBody.create(MediaType.parse(contentType), file);
+            multipartBuilder.addPart(MultipartBody.Part.createFormData(file.getName(), file.getName(), fileRequestBody));
 
-            if (postResult.getResponseCode() != HttpURLConnection.HTTP_CREATED &&
-                    postResult.getResponseCode() != HttpURLConnection.HTTP_ACCEPTED) {
-                return postResult;
-            }
+            Timber.i("added file of type '%s' %s", contentType, file.getName());
+        }
 
+        if (isIncomplete) {
+            multipartBuilder.addPart(MultipartBody.Part.createFormData("*isIncomplete*", "yes"));
         }
 
-        return postResult;
+        return multipartBuilder.build();
     }
 
     @NonNull
-    private HttpPostResult executePostRequest(@NonNull URI uri, @Nullable HttpCredentialsInterface credentials, MultipartBody multipartBody) throws Exception {
+    private HttpPostResult executePostRequest(@NonNull URI uri, @Nullable HttpCredentialsInterface credentials, RequestBody requestBody) throws Exception {
         OpenRosaServerClient httpClient = clientFactory.get(uri.getScheme(), userAgent, credentials);
         HttpPostResult postResult;
         Request request = new Request.Builder()
                 .url(uri.toURL())
-                .post(multipartBody)
+                .post(requestBody)
                 .build();
         Response response = httpClient.makeRequest(request, new Date());
 
-        if (response.code() == 204) {
-            throw new Exception();
-        }
-
-        postResult = new HttpPostResult(
-                response.body().string(),
-                response.code(),
-                response.message());
+        try {
+            if (response.code() == 204) {
+                throw new Exception();
+            }
 
-        discardEntityBytes(response);
+            // Only the start of the response is needed (it should be a short OpenRosa response message)
+            postResult = new HttpPostResult(
+                    response.peekBody(MAX_POST_RESPONSE_SIZE).string(),
+                    response.code(),
+                    response.message());
+        } finally {
+            closeEntity(response);
+        }
 
         return postResult;
     }
 
+    /**
+     * Closes the entity stream of a response without reading the rest of it. Unlike
+     * {@link #discardEntityBytes(Response)}, this means the connection can't be reused, but it
+     * avoids downloading a (potentially large) response that isn't needed.
+     */
+    private void closeEntity(Response response) {
+        ResponseBody body = response.body();
+        if (body != null) {
+            body.close();
+        }
+    }
+
     /**
      * Utility to ensure that the entity stream of a response is drained of
      * bytes.
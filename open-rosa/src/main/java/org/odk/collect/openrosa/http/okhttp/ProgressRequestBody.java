@@ -0,0 +1,63 @@
+package org.odk.collect.openrosa.http.okhttp;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+
+/**
+ * Wraps a {@link RequestBody} and reports how many bytes of it have been written as it is
+ * streamed to the server. Writes to the underlying sink block while the connection is busy, so
+ * progress follows what the network has actually accepted rather than what has been read from
+ * disk. The body can be written more than once (if the request is retried after an auth
+ * challenge for example) and the count starts again from zero each time.
+ */
+class ProgressRequestBody extends RequestBody {
+
+    private final RequestBody delegate;
+    private final Listener listener;
+
+    ProgressRequestBody(RequestBody delegate, Listener listener) {
+        this.delegate = delegate;
+        this.listener = listener;
+    }
+
+    @Nullable
+    @Override
+    public MediaType contentType() {
+        return delegate.contentType();
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return delegate.contentLength();
+    }
+
+    @Override
+    public void writeTo(@NonNull BufferedSink sink) throws IOException {
+        BufferedSink countingSink = Okio.buffer(new ForwardingSink(sink) {
+            private long bytesWritten;
+
+            @Override
+            public void write(@NonNull Buffer source, long byteCount) throws IOException {
+                super.write(source, byteCount);
+                bytesWritten += byteCount;
+                listener.onProgress(bytesWritten);
+            }
+        });
+
+        delegate.writeTo(countingSink);
+        countingSink.flush();
+    }
+
+    interface Listener {
+        void onProgress(long bytesWritten);
+    }
+}
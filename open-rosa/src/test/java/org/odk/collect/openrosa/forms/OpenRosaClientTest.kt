@@ -207,6 +207,29 @@ class OpenRosaClientTest {
         }
     }
 
+    @Test
+    fun fetchManifest_asksForCachedManifestToBeRevalidated() {
+        val formListApi =
+            OpenRosaClient("http://blah.com", httpInterface, webCredentialsProvider, responseParser)
+
+        whenever(
+            httpInterface.executeGetRequest(any(), any(), any(), any())
+        ).thenReturn(HttpGetResult(null, HashMap(), "hash", 503))
+
+        try {
+            formListApi.fetchManifest("http://blah.com/manifest")
+        } catch (e: FormSourceException.ServerError) {
+            // ignored
+        }
+
+        verify(httpInterface).executeGetRequest(
+            eq(URI("http://blah.com/manifest")),
+            any(),
+            any(),
+            eq(mapOf("Cache-Control" to "max-age=0"))
+        )
+    }
+
     @Test
     fun fetchManifest_whenThereIsAnUnknownHostException_throwsUnreachableFormApiException() {
         val formListApi =
@@ -214,7 +237,7 @@ class OpenRosaClientTest {
 
         try {
             whenever(
-                httpInterface.executeGetRequest(any(), any(), any())
+                httpInterface.executeGetRequest(any(), any(), any(), any())
             ).thenThrow(
                 UnknownHostException::class.java
             )
@@ -233,7 +256,7 @@ class OpenRosaClientTest {
 
         try {
             whenever(
-                httpInterface.executeGetRequest(any(), any(), any())
+                httpInterface.executeGetRequest(any(), any(), any(), any())
             ).thenReturn(HttpGetResult(null, HashMap(), "hash", 503))
 
             formListApi.fetchManifest("http://blah.com/manifest")
@@ -251,7 +274,7 @@ class OpenRosaClientTest {
 
         try {
             whenever(
-                httpInterface.executeGetRequest(any(), any(), any())
+                httpInterface.executeGetRequest(any(), any(), any(), any())
             ).thenReturn(
                 HttpGetResult(
                     ByteArrayInputStream("<xml></xml>".toByteArray()),
@@ -280,7 +303,7 @@ class OpenRosaClientTest {
 
         try {
             whenever(
-                httpInterface.executeGetRequest(any(), any(), any())
+                httpInterface.executeGetRequest(any(), any(), any(), any())
             ).thenReturn(
                 HttpGetResult(
                     ByteArrayInputStream("<xml></xml>".toByteArray()),
@@ -334,6 +357,84 @@ class OpenRosaClientTest {
         }
     }
 
+    @Test
+    fun fetchMediaFile_withOffsetAndValidator_sendsRangeAndIfRangeHeaders() {
+        val formListApi =
+            OpenRosaClient("http://blah.com", httpInterface, webCredentialsProvider, responseParser)
+
+        whenever(
+            httpInterface.executeGetRequest(any(), eq(null), any(), any())
+        ).thenReturn(HttpGetResult(ByteArrayInputStream(ByteArray(0)), HashMap(), "", 206))
+
+        val response = formListApi.fetchMediaFile("http://blah.com/mediaFile", 10, "\"etag\"")
+        assertThat(response.isPartial, equalTo(true))
+        verify(httpInterface).executeGetRequest(
+            eq(URI("http://blah.com/mediaFile")),
+            eq(null),
+            any(),
+            eq(mapOf("Range" to "bytes=10-", "If-Range" to "\"etag\""))
+        )
+    }
+
+    @Test
+    fun fetchMediaFile_withoutValidator_doesNotSendRangeHeader() {
+        val formListApi =
+            OpenRosaClient("http://blah.com", httpInterface, webCredentialsProvider, responseParser)
+
+        whenever(
+            httpInterface.executeGetRequest(any(), eq(null), any(), any())
+        ).thenReturn(HttpGetResult(ByteArrayInputStream(ByteArray(0)), HashMap(), "", 200))
+
+        val response = formListApi.fetchMediaFile("http://blah.com/mediaFile", 10, null)
+        assertThat(response.isPartial, equalTo(false))
+        verify(httpInterface).executeGetRequest(
+            eq(URI("http://blah.com/mediaFile")),
+            eq(null),
+            any(),
+            eq(emptyMap())
+        )
+    }
+
+    @Test
+    fun fetchMediaFile_returnsStrongETagAsValidator() {
+        val formListApi =
+            OpenRosaClient("http://blah.com", httpInterface, webCredentialsProvider, responseParser)
+
+        whenever(
+            httpInterface.executeGetRequest(any(), eq(null), any(), any())
+        ).thenReturn(
+            HttpGetResult(
+                ByteArrayInputStream(ByteArray(0)),
+                mapOf("etag" to "\"etag\"", "Last-Modified" to "yesterday"),
+                "",
+                200
+            )
+        )
+
+        val response = formListApi.fetchMediaFile("http://blah.com/mediaFile", 0, null)
+        assertThat(response.validator, equalTo("\"etag\""))
+    }
+
+    @Test
+    fun fetchMediaFile_returnsLastModifiedAsValidatorWhenETagIsWeak() {
+        val formListApi =
+            OpenRosaClient("http://blah.com", httpInterface, webCredentialsProvider, responseParser)
+
+        whenever(
+            httpInterface.executeGetRequest(any(), eq(null), any(), any())
+        ).thenReturn(
+            HttpGetResult(
+                ByteArrayInputStream(ByteArray(0)),
+                mapOf("ETag" to "W/\"etag\"", "Last-Modified" to "yesterday"),
+                "",
+                200
+            )
+        )
+
+        val response = formListApi.fetchMediaFile("http://blah.com/mediaFile", 0, null)
+        assertThat(response.validator, equalTo("yesterday"))
+    }
+
     @Test
     fun fetchDeletedStates_whenNotOpenRosaResponse_throwsParseError() {
         val client =
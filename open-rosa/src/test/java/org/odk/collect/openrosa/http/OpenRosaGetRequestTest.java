@@ -16,6 +16,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.charset.Charset;
+import java.util.Map;
 import java.util.zip.GZIPOutputStream;
 
 import okhttp3.mockwebserver.MockResponse;
@@ -128,6 +129,29 @@ public abstract class OpenRosaGetRequestTest {
         assertThat(result2.isOpenRosaResponse(), equalTo(false));
     }
 
+    @Test
+    public void withHeaders_sendsHeaders() throws Exception {
+        mockWebServer.enqueue(new MockResponse());
+
+        subject.executeGetRequest(mockWebServer.url("").uri(), null, null, Map.of("Range", "bytes=5-"));
+
+        RecordedRequest request = mockWebServer.takeRequest();
+        assertThat(request.getHeader("Range"), equalTo("bytes=5-"));
+    }
+
+    @Test
+    public void whenStatusCodeIs206_returnsBodyAndHeaders() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(206)
+                .addHeader("ETag", "\"blah\"")
+                .setBody("BODY"));
+
+        HttpGetResult result = subject.executeGetRequest(mockWebServer.url("").uri(), null, null, Map.of("Range", "bytes=5-"));
+        assertThat(result.getStatusCode(), equalTo(206));
+        assertThat(result.getHeader("etag"), equalTo("\"blah\""));
+        assertThat(IOUtils.toString(result.getInputStream(), Charset.defaultCharset()), equalTo("BODY"));
+    }
+
     @Test
     public void whenStatusCodeIsNot200_returnsNullBodyAndStatusCode() throws Exception {
         mockWebServer.enqueue(new MockResponse().setResponseCode(500));
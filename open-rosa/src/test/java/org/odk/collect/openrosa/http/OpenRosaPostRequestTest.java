@@ -90,6 +90,21 @@ public abstract class OpenRosaPostRequestTest {
         assertThat(response.getHttpResponse(), equalTo("I AM BODY"));
     }
 
+    @Test
+    public void whenResponseIsLarge_onlyReturnsTheStartOfTheBody() throws Exception {
+        char[] body = new char[2 * 1024 * 1024];
+        Arrays.fill(body, 'a');
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setBody(new String(body)));
+
+        URI uri = mockWebServer.url("/blah").uri();
+        HttpPostResult response = subject.uploadSubmissionAndFiles(File.createTempFile("blah", "blah"), new ArrayList<>(), uri, null, 0);
+
+        assertThat(response.getResponseCode(), equalTo(200));
+        assertThat(response.getHttpResponse().length(), equalTo(1024 * 1024));
+    }
+
     @Test(expected = Exception.class)
     public void whenResponseIs204_throwsException() throws Exception {
         mockWebServer.enqueue(new MockResponse()
@@ -243,6 +258,31 @@ public abstract class OpenRosaPostRequestTest {
         assertThat(response.getResponseCode(), equalTo(500));
     }
 
+    @Test
+    public void whenProgressListenerIsPassed_reportsBytesSentAcrossAllRequests() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(201));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(201));
+
+        URI uri = mockWebServer.url("/blah").uri();
+        File attachment1 = createTempFile("blah blah blah");
+        File attachment2 = createTempFile("blah2 blah2 blah2");
+
+        List<Long> progress = new ArrayList<>();
+        List<Long> totals = new ArrayList<>();
+        subject.uploadSubmissionAndFiles(createTempFile("<node>content</node>"), asList(attachment1, attachment2), uri, null, 0, (bytesSent, totalBytes) -> {
+            progress.add(bytesSent);
+            totals.add(totalBytes);
+        });
+
+        long requestsSize = mockWebServer.takeRequest().getBodySize() + mockWebServer.takeRequest().getBodySize();
+        assertThat(progress.get(progress.size() - 1), equalTo(requestsSize));
+        assertThat(totals.stream().distinct().collect(Collectors.toList()), equalTo(asList(requestsSize)));
+
+        for (int i = 1; i < progress.size(); i++) {
+            assertThat(progress.get(i) >= progress.get(i - 1), equalTo(true));
+        }
+    }
+
     private File createTempFile(String content) throws Exception {
         return createTempFile(content, ".tmp");
     }
@@ -13,7 +13,11 @@ import java.io.File;
 import java.util.Date;
 
 import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 import okhttp3.tls.internal.TlsUtil;
 
 public class OkHttpOpenRosaServerClientProviderTest extends OpenRosaServerClientProviderTest {
@@ -78,4 +82,31 @@ public class OkHttpOpenRosaServerClientProviderTest extends OpenRosaServerClient
         assertThat(file.exists(), equalTo(true));
         assertThat(file.isDirectory(), equalTo(false));
     }
+
+    @Test
+    public void whenCacheDirExists_andRequestHasMaxAgeZero_revalidatesCachedResponseWithETag() throws Exception {
+        MockWebServer mockWebServer = mockWebServerRule.start();
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader("ETag", "\"etag\"")
+                .setBody("manifest"));
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(304));
+
+        OkHttpOpenRosaServerClientProvider provider = buildSubject(TempFiles.createTempDir().getAbsolutePath());
+        OpenRosaServerClient client = provider.get("http", "Android", new HttpCredentials("", ""));
+        Request request = MockWebServerHelper.buildRequest(mockWebServer, "")
+                .newBuilder()
+                .header("Cache-Control", "max-age=0")
+                .build();
+
+        client.makeRequest(request, new Date()).close();
+        Response response = client.makeRequest(request, new Date());
+
+        assertThat(response.code(), equalTo(200));
+        assertThat(response.body().string(), equalTo("manifest"));
+
+        mockWebServer.takeRequest();
+        RecordedRequest revalidation = mockWebServer.takeRequest();
+        assertThat(revalidation.getHeader("If-None-Match"), equalTo("\"etag\""));
+    }
 }
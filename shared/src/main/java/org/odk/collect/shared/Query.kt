@@ -1,27 +1,66 @@
 package org.odk.collect.shared
 
 import org.odk.collect.shared.Query.And
+import org.odk.collect.shared.Query.Not
 import org.odk.collect.shared.Query.NumericEq
+import org.odk.collect.shared.Query.NumericGt
+import org.odk.collect.shared.Query.NumericGte
+import org.odk.collect.shared.Query.NumericLt
+import org.odk.collect.shared.Query.NumericLte
 import org.odk.collect.shared.Query.NumericNotEq
 import org.odk.collect.shared.Query.Or
+import org.odk.collect.shared.Query.StringContains
+import org.odk.collect.shared.Query.StringContainsToken
 import org.odk.collect.shared.Query.StringEq
+import org.odk.collect.shared.Query.StringIn
+import org.odk.collect.shared.Query.StringIsTokenIn
 import org.odk.collect.shared.Query.StringNotEq
+import org.odk.collect.shared.Query.StringStartsWith
 
 sealed class Query {
-    class StringEq(val column: String, val value: String) : Query()
-    class StringNotEq(val column: String, val value: String) : Query()
-    class NumericEq(val column: String, val value: Double) : Query()
-    class NumericNotEq(val column: String, val value: Double) : Query()
-    class And(val queryA: Query, val queryB: Query) : Query()
-    class Or(val queryA: Query, val queryB: Query) : Query()
+    data class StringEq(val column: String, val value: String) : Query()
+    data class StringNotEq(val column: String, val value: String) : Query()
+    data class StringIn(val column: String, val values: List<String>) : Query()
+    data class StringStartsWith(val column: String, val value: String) : Query()
+    data class StringContains(val column: String, val value: String) : Query()
+
+    /**
+     * Matches when [value] appears in the column's space separated list of values (like
+     * XPath's `selected(column, value)`).
+     */
+    data class StringContainsToken(val column: String, val value: String) : Query()
+
+    /**
+     * Matches when the column's (trimmed) value appears in the space separated list [values]
+     * (like XPath's `selected(values, column)`).
+     */
+    data class StringIsTokenIn(val column: String, val values: String) : Query()
+    data class NumericEq(val column: String, val value: Double) : Query()
+    data class NumericNotEq(val column: String, val value: Double) : Query()
+    data class NumericLt(val column: String, val value: Double) : Query()
+    data class NumericLte(val column: String, val value: Double) : Query()
+    data class NumericGt(val column: String, val value: Double) : Query()
+    data class NumericGte(val column: String, val value: Double) : Query()
+    data class And(val queryA: Query, val queryB: Query) : Query()
+    data class Or(val queryA: Query, val queryB: Query) : Query()
+    data class Not(val query: Query) : Query()
 }
 
 fun Query.mapColumns(columnMapper: (String) -> String): Query {
     return when (this) {
         is StringEq -> StringEq(columnMapper(column), value)
         is StringNotEq -> StringNotEq(columnMapper(column), value)
+        is StringIn -> StringIn(columnMapper(column), values)
+        is StringStartsWith -> StringStartsWith(columnMapper(column), value)
+        is StringContains -> StringContains(columnMapper(column), value)
+        is StringContainsToken -> StringContainsToken(columnMapper(column), value)
+        is StringIsTokenIn -> StringIsTokenIn(columnMapper(column), values)
         is NumericEq -> NumericEq(columnMapper(column), value)
         is NumericNotEq -> NumericNotEq(columnMapper(column), value)
+        is NumericLt -> NumericLt(columnMapper(column), value)
+        is NumericLte -> NumericLte(columnMapper(column), value)
+        is NumericGt -> NumericGt(columnMapper(column), value)
+        is NumericGte -> NumericGte(columnMapper(column), value)
         is And -> And(
             queryA.mapColumns(columnMapper),
             queryB.mapColumns(columnMapper)
@@ -30,5 +69,6 @@ fun Query.mapColumns(columnMapper: (String) -> String): Query {
             queryA.mapColumns(columnMapper),
             queryB.mapColumns(columnMapper)
         )
+        is Not -> Not(query.mapColumns(columnMapper))
     }
 }
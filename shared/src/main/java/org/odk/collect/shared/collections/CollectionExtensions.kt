@@ -1,7 +1,12 @@
 package org.odk.collect.shared.collections
 
 import org.json.JSONArray
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorCompletionService
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
 import kotlin.math.abs
+import kotlin.math.min
 
 object CollectionExtensions {
 
@@ -18,4 +23,57 @@ object CollectionExtensions {
         }
         return false
     }
+
+    /**
+     * Like [map], but runs [transform] for up to [maxConcurrency] items at the same time on
+     * background threads. The returned list is in the same order as the original. If any
+     * [transform] throws, the remaining work is cancelled (running threads are interrupted) and
+     * the exception is rethrown on the calling thread.
+     */
+    fun <T, R> List<T>.mapConcurrently(maxConcurrency: Int, transform: (T) -> R): List<R> {
+        if (maxConcurrency <= 1 || this.size <= 1) {
+            return this.map(transform)
+        }
+
+        val executor = Executors.newFixedThreadPool(min(maxConcurrency, this.size))
+        try {
+            return this.mapConcurrently(executor, transform)
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    /**
+     * Like [mapConcurrently], but runs [transform] on [executor] so that the number of
+     * transforms running at once can be bounded across several calls (by sharing an executor
+     * with a fixed number of threads). [executor] is not shut down afterwards, but any of this
+     * call's work that hasn't finished is cancelled if a [transform] throws.
+     *
+     * [transform] must not itself wait on work submitted to the same [executor] as that can
+     * deadlock once all of its threads are in use.
+     */
+    fun <T, R> List<T>.mapConcurrently(executor: ExecutorService, transform: (T) -> R): List<R> {
+        val completionService = ExecutorCompletionService<Pair<Int, R>>(executor)
+        val futures = this.mapIndexed { index, item ->
+            completionService.submit { Pair(index, transform(item)) }
+        }
+
+        try {
+            val results = MutableList<R?>(this.size) { null }
+            repeat(this.size) {
+                val (index, result) = try {
+                    completionService.take().get()
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+
+                results[index] = result
+            }
+
+            @Suppress("UNCHECKED_CAST")
+            return results as List<R>
+        } finally {
+            futures.forEach { it.cancel(true) }
+        }
+    }
 }
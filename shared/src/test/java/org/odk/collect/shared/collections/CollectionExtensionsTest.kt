@@ -3,9 +3,15 @@ package org.odk.collect.shared.collections
 import org.hamcrest.MatcherAssert.assertThat
 import org.hamcrest.Matchers.equalTo
 import org.json.JSONArray
+import org.junit.Assert.assertThrows
 import org.junit.Test
 import org.odk.collect.shared.collections.CollectionExtensions.has
 import org.odk.collect.shared.collections.CollectionExtensions.itemFromHashOf
+import org.odk.collect.shared.collections.CollectionExtensions.mapConcurrently
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 
 class CollectionExtensionsTest {
 
@@ -40,6 +46,72 @@ class CollectionExtensionsTest {
     fun `has returns false if json array is empty`() {
         assertThat(JSONArray().has("blah"), equalTo(false))
     }
+
+    @Test
+    fun `mapConcurrently returns results in the original order`() {
+        val result = listOf(3, 2, 1).mapConcurrently(3) {
+            Thread.sleep(it * 10L)
+            it.toString()
+        }
+
+        assertThat(result, equalTo(listOf("3", "2", "1")))
+    }
+
+    @Test
+    fun `mapConcurrently runs transforms at the same time`() {
+        val latch = CountDownLatch(2)
+        val result = listOf(1, 2).mapConcurrently(2) {
+            latch.countDown()
+            latch.await(1, TimeUnit.SECONDS)
+        }
+
+        assertThat(result, equalTo(listOf(true, true)))
+    }
+
+    @Test
+    fun `mapConcurrently rethrows exceptions from transform`() {
+        assertThrows(IllegalStateException::class.java) {
+            listOf(1, 2).mapConcurrently(2) {
+                if (it == 2) {
+                    throw IllegalStateException()
+                }
+            }
+        }
+    }
+
+    @Test
+    fun `mapConcurrently with executor returns results in the original order and leaves executor running`() {
+        val executor = Executors.newFixedThreadPool(2)
+        val result = listOf(3, 2, 1).mapConcurrently(executor) {
+            Thread.sleep(it * 10L)
+            it.toString()
+        }
+
+        assertThat(result, equalTo(listOf("3", "2", "1")))
+        assertThat(executor.isShutdown, equalTo(false))
+        executor.shutdown()
+    }
+
+    @Test
+    fun `mapConcurrently with executor does not run more transforms at once than the executor has threads`() {
+        val executor = Executors.newFixedThreadPool(2)
+        val running = AtomicInteger(0)
+        val maxRunning = AtomicInteger(0)
+
+        val transform = { _: Int ->
+            maxRunning.accumulateAndGet(running.incrementAndGet()) { a, b -> maxOf(a, b) }
+            Thread.sleep(20)
+            running.decrementAndGet()
+        }
+
+        val otherCall = Thread { listOf(1, 2, 3).mapConcurrently(executor, transform) }
+        otherCall.start()
+        listOf(1, 2, 3).mapConcurrently(executor, transform)
+        otherCall.join()
+
+        assertThat(maxRunning.get() <= 2, equalTo(true))
+        executor.shutdown()
+    }
 }
 
 private data class HashCode(private val value: Int) {
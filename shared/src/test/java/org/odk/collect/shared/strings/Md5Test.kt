@@ -0,0 +1,27 @@
+package org.odk.collect.shared.strings
+
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
+import org.junit.Test
+import org.odk.collect.shared.strings.Md5.getMd5Hash
+import java.security.MessageDigest
+
+class Md5Test {
+
+    @Test
+    fun getMd5Hash_returnsLowercaseHex() {
+        assertThat("abc".getMd5Hash(), equalTo("900150983cd24fb0d6963f7d28e17f72"))
+    }
+
+    @Test
+    fun toMd5String_returnsTheSameValueAsGetMd5Hash() {
+        val digest = MessageDigest.getInstance("MD5").digest("abc".toByteArray())
+        assertThat(Md5.toMd5String(digest), equalTo("abc".getMd5Hash()))
+    }
+
+    @Test
+    fun toMd5String_padsWithLeadingZeros() {
+        val digest = ByteArray(16).also { it[15] = 1 }
+        assertThat(Md5.toMd5String(digest), equalTo("00000000000000000000000000000001"))
+    }
+}